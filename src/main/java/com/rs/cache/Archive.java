@@ -97,16 +97,21 @@ public class Archive {
 			case Constants.BZIP2_COMPRESSION:
 			case Constants.GZIP_COMPRESSION:
 				int uncompressedLength = stream.readInt();
-				if (uncompressedLength <= 0 || uncompressedLength > 1000000000) {
+				if (uncompressedLength <= 0 || uncompressedLength > 1000000000 || length > stream.getRemaining()) {
 					data = null;
 					break;
 				}
-				byte[] compressed = new byte[length];
-				stream.readBytes(compressed, 0, length);
-				data = (compression == Constants.BZIP2_COMPRESSION ? CompressionUtils.bunzip2(compressed) : CompressionUtils.gunzip(compressed));
-				
-				if (data.length != uncompressedLength) {
-					throw new Exception("Length mismatch. [ " + data.length + ", " + uncompressedLength + " ]");
+				boolean bzip2 = compression == Constants.BZIP2_COMPRESSION;
+				if (bzip2 ? uncompressedLength > CompressionUtils.maxBunzip2Length(stream.getBuffer(), stream.getOffset(), length) : uncompressedLength != CompressionUtils.gunzipLength(stream.getBuffer(), stream.getOffset(), length)) {
+					data = null;
+					throw new Exception("Corrupt archive header. [ " + length + ", " + uncompressedLength + " ]");
+				}
+				data = new byte[uncompressedLength];
+				int read = bzip2 ? CompressionUtils.bunzip2(stream.getBuffer(), stream.getOffset(), length, data) : CompressionUtils.gunzip(stream.getBuffer(), stream.getOffset(), length, data);
+				stream.skip(length);
+				if (read != uncompressedLength) {
+					data = null;
+					throw new Exception("Length mismatch. [ " + read + ", " + uncompressedLength + " ]");
 				}
 				
 				revision = -1;
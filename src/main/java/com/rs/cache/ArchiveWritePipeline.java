@@ -0,0 +1,163 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.rs.cache.utils.CacheUtil;
+import com.rs.cache.utils.Whirlpool;
+import com.rs.lib.util.Logger;
+
+/*
+ * Compresses, encrypts and hashes archives on a pool of workers while a single
+ * writer thread appends the finished containers to the index's main file in
+ * whatever order they complete. The reference table is left for the caller
+ * to rewrite once every archive is in.
+ */
+public final class ArchiveWritePipeline {
+
+	private record Compressed(int archiveId, ArchiveReference reference, byte[] closedArchive, int crc, byte[] whirlpool, int length) {}
+
+	private static final Compressed END = new Compressed(-1, null, null, 0, null, 0);
+
+	private final Index index;
+	private final ExecutorService workers;
+	private final BlockingQueue<Compressed> compressed;
+	private final Thread writer;
+	private volatile boolean failed;
+	private boolean finished;
+
+	private final long start = System.nanoTime();
+	private long nanos;
+	private final AtomicLong archives = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	public ArchiveWritePipeline(Index index) {
+		this(index, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ArchiveWritePipeline(Index index, int threads) {
+		this.index = index;
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.compressed = new ArrayBlockingQueue<>(Math.max(1, threads) * 4);
+		this.writer = new Thread(this::write, "Archive Writer-" + index.getId());
+		writer.start();
+	}
+
+	/*
+	 * the archive's reference must already be in the table, its revision is
+	 * bumped here on the calling thread
+	 */
+	public void submit(int archiveId, int compression, byte[] archiveData, int[] keys) {
+		if (finished)
+			throw new IllegalStateException("Pipeline already finished.");
+		ArchiveReference reference = index.getTable().getArchives()[archiveId];
+		reference.updateRevision();
+		int revision = reference.getRevision();
+		workers.execute(() -> {
+			try {
+				Archive archive = new Archive(archiveId, compression, revision, archiveData);
+				archive.setKeys(keys);
+				byte[] closedArchive = archive.compress();
+				int crc = CacheUtil.getCrcChecksum(closedArchive, closedArchive.length - 2);
+				byte[] whirlpool = Whirlpool.getWhirlpool(closedArchive, 0, closedArchive.length - 2);
+				compressed.put(new Compressed(archiveId, reference, closedArchive, crc, whirlpool, archiveData.length));
+			} catch (Throwable e) {
+				Logger.handle(e);
+				failed = true;
+			}
+		});
+	}
+
+	private void write() {
+		try {
+			Compressed archive;
+			while ((archive = compressed.take()) != END) {
+				if (!index.getMainFile().putArchiveData(archive.archiveId, archive.closedArchive)) {
+					Logger.log("ArchiveWritePipeline", "Failed writing archive " + archive.archiveId + " of index " + index.getId() + ".");
+					failed = true;
+					continue;
+				}
+				archive.reference.setCrc(archive.crc);
+				archive.reference.setWhirpool(archive.whirlpool);
+				index.resetCachedFiles(archive.archiveId);
+				archives.incrementAndGet();
+				bytes.addAndGet(archive.length);
+				compressedBytes.addAndGet(archive.closedArchive.length);
+			}
+		} catch (InterruptedException e) {
+			failed = true;
+		}
+	}
+
+	/*
+	 * waits for every submitted archive to be written, false if any failed
+	 */
+	public boolean finish() {
+		if (finished)
+			return !failed;
+		finished = true;
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			compressed.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failed = true;
+		}
+		nanos = System.nanoTime() - start;
+		Logger.log("ArchiveWritePipeline", "Index " + index.getId() + ": " + this);
+		return !failed;
+	}
+
+	public long getArchivesWritten() {
+		return archives.get();
+	}
+
+	public long getBytesWritten() {
+		return bytes.get();
+	}
+
+	public long getCompressedBytesWritten() {
+		return compressedBytes.get();
+	}
+
+	public double getArchivesPerSecond() {
+		long time = finished ? nanos : System.nanoTime() - start;
+		return time == 0 ? 0 : archives.get() * 1e9 / time;
+	}
+
+	/*
+	 * uncompressed megabytes per second
+	 */
+	public double getMegabytesPerSecond() {
+		long time = finished ? nanos : System.nanoTime() - start;
+		return time == 0 ? 0 : bytes.get() * 1e9 / time / (1024 * 1024);
+	}
+
+	@Override
+	public String toString() {
+		return "Wrote " + getArchivesWritten() + " archives (" + getBytesWritten() + " bytes, " + getCompressedBytesWritten() + " compressed), " + String.format("%.0f", getArchivesPerSecond()) + " archives/s, " + String.format("%.1f", getMegabytesPerSecond()) + " MB/s";
+	}
+}
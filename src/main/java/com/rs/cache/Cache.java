@@ -27,6 +27,14 @@ public final class Cache {
 	}
 	
 	public static void init(String path) throws IOException {
-		STORE = new Store(path, false);
+		init(path, false);
+	}
+
+	/*
+	 * mapped stores serve reads straight from memory mapped files with no
+	 * locking, writes still go through the file channels
+	 */
+	public static void init(String path, boolean mapped) throws IOException {
+		STORE = new Store(path, false, mapped);
 	}
 }
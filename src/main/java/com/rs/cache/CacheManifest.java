@@ -0,0 +1,174 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.util.Arrays;
+
+/*
+ * Snapshot of every reference table's archive and file ids taken when the
+ * store opens. Lookups are plain array reads, the store swaps in a rebuilt
+ * entry whenever an index's table is rewritten.
+ */
+public final class CacheManifest {
+
+	private final IndexManifest[] indexes;
+
+	private CacheManifest(IndexManifest[] indexes) {
+		this.indexes = indexes;
+	}
+
+	static CacheManifest build(Store store) {
+		Index[] storeIndexes = store.getIndices();
+		IndexManifest[] indexes = new IndexManifest[storeIndexes.length];
+		for (int i = 0; i < storeIndexes.length; i++)
+			if (storeIndexes[i] != null && storeIndexes[i].getTable() != null)
+				indexes[i] = new IndexManifest(storeIndexes[i]);
+		return new CacheManifest(indexes);
+	}
+
+	/*
+	 * copy with the entry for the given index rebuilt from its current table
+	 */
+	CacheManifest with(Index index) {
+		int id = index.getId();
+		IndexManifest[] indexes = Arrays.copyOf(this.indexes, Math.max(this.indexes.length, id + 1));
+		indexes[id] = index.getTable() == null ? null : new IndexManifest(index);
+		return new CacheManifest(indexes);
+	}
+
+	public IndexManifest get(IndexType type) {
+		return get(type.ordinal());
+	}
+
+	public IndexManifest get(int indexId) {
+		if (indexId < 0 || indexId >= indexes.length)
+			return null;
+		return indexes[indexId];
+	}
+
+	public int getIndexCount() {
+		return indexes.length;
+	}
+
+	/*
+	 * number of ids a definition loader needs to cover, the last archive's
+	 * last file id plus one
+	 */
+	public int getDefinitionsSize(IndexType indexType, ArchiveType type) {
+		IndexManifest index = get(indexType);
+		if (index == null)
+			return 0;
+		return index.getLastArchiveId() * type.filesPerContainer() + index.getLastFileId(index.getLastArchiveId()) + 1;
+	}
+
+	public boolean definitionExists(IndexType indexType, ArchiveType type, int id) {
+		IndexManifest index = get(indexType);
+		return id >= 0 && index != null && index.fileExists(type.archiveId(id), type.fileId(id));
+	}
+
+	public static final class IndexManifest {
+
+		private final int id;
+		private final int revision;
+		private final int crc;
+		private final int[] validArchiveIds;
+		private final int[] lastFileIds;
+		private final int[] validFilesCounts;
+		private final int[] fileBitOffsets;
+		private final long[] fileBits;
+
+		private IndexManifest(Index index) {
+			ReferenceTable table = index.getTable();
+			ArchiveReference[] archives = table.getArchives();
+			id = index.getId();
+			revision = table.getRevision();
+			crc = index.getCRC();
+			validArchiveIds = table.getValidArchiveIds().clone();
+			lastFileIds = new int[archives.length];
+			validFilesCounts = new int[archives.length];
+			fileBitOffsets = new int[archives.length + 1];
+			for (int archiveId = 0; archiveId < archives.length; archiveId++) {
+				ArchiveReference archive = archives[archiveId];
+				lastFileIds[archiveId] = archive == null ? -1 : archive.getFiles().length - 1;
+				validFilesCounts[archiveId] = archive == null ? -1 : archive.getValidFileIds().length;
+				fileBitOffsets[archiveId + 1] = fileBitOffsets[archiveId] + lastFileIds[archiveId] + 1;
+			}
+			fileBits = new long[(fileBitOffsets[archives.length] + 63) >> 6];
+			for (int archiveId = 0; archiveId < archives.length; archiveId++) {
+				if (archives[archiveId] == null)
+					continue;
+				FileReference[] files = archives[archiveId].getFiles();
+				for (int fileId = 0; fileId < files.length; fileId++) {
+					if (files[fileId] == null)
+						continue;
+					int bit = fileBitOffsets[archiveId] + fileId;
+					fileBits[bit >> 6] |= 1L << bit;
+				}
+			}
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public int getRevision() {
+			return revision;
+		}
+
+		public int getCRC() {
+			return crc;
+		}
+
+		public int getLastArchiveId() {
+			return lastFileIds.length - 1;
+		}
+
+		public int getValidArchivesCount() {
+			return validArchiveIds.length;
+		}
+
+		/*
+		 * shared, don't modify
+		 */
+		public int[] getValidArchiveIds() {
+			return validArchiveIds;
+		}
+
+		public boolean archiveExists(int archiveId) {
+			return archiveId >= 0 && archiveId < lastFileIds.length && lastFileIds[archiveId] != -1;
+		}
+
+		public int getLastFileId(int archiveId) {
+			if (archiveId < 0 || archiveId >= lastFileIds.length)
+				return -1;
+			return lastFileIds[archiveId];
+		}
+
+		public int getValidFilesCount(int archiveId) {
+			if (archiveId < 0 || archiveId >= validFilesCounts.length)
+				return -1;
+			return validFilesCounts[archiveId];
+		}
+
+		public boolean fileExists(int archiveId, int fileId) {
+			if (fileId < 0 || fileId > getLastFileId(archiveId))
+				return false;
+			int bit = fileBitOffsets[archiveId] + fileId;
+			return (fileBits[bit >> 6] & (1L << bit)) != 0;
+		}
+	}
+}
@@ -25,44 +25,101 @@ public final class Huffman {
 	private int[] huffmanAlgorithm1;
 	private byte[] huffmanAlgorithm2;
 	private int[] huffmanAlgorithm3;
+
+	/*
+	 * decoding walks the tree four bits at a time. For every tree position and
+	 * nibble these hold the position reached and how many symbols were
+	 * completed (or -1 for a path off the tree), and the completed symbols
+	 * packed lowest byte first.
+	 */
+	private int[] decodeTransitions;
+	private int[] decodeSymbols;
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	private static final class Scratch {
+		private byte[] data = new byte[256];
+		private char[] chars = new char[256];
+
+		private Scratch ensure(int length) {
+			if (data.length < length) {
+				data = new byte[length];
+				chars = new char[length];
+			}
+			return this;
+		}
+	}
 	
 	public Huffman(Store store) {
 		loadAlgorithmValues(store);
 	}
+
+	public Huffman(byte[] huffmanFile) {
+		loadAlgorithmValues(huffmanFile);
+	}
 	
 	public int sendEncryptMessage(OutputStream stream, String message) {
 		try {
 			int startOffset = stream.getOffset();
-			byte[] messageData = Utils.getFormatedMessage(message);
-			stream.writeSmart(messageData.length);
-			stream.checkCapacityPosition(stream.getOffset() + message.length() * 2);
-			stream.skip(encryptMessage(stream.getOffset(), messageData.length, stream.getBuffer(), 0, messageData));
+			stream.writeSmart(message.length());
+			encodeMessage(message, stream);
 			return stream.getOffset() - startOffset;
 		} catch (Throwable e) {
 			return -1;
 		}
 	}
 
+	/*
+	 * writes the message as cp1252 huffman codes with no length prefix,
+	 * returns the number of bytes written
+	 */
+	public int encodeMessage(CharSequence message, OutputStream stream) {
+		int length = message.length();
+		byte[] data = SCRATCH.get().ensure(length).data;
+		Utils.getFormatedMessage(message, data, 0);
+		stream.checkCapacityPosition(stream.getOffset() + length * 4 + 1);
+		int written = encode(data, 0, length, stream.getBuffer(), stream.getOffset());
+		stream.skip(written);
+		return written;
+	}
+
 	public final String readEncryptedMessage(InputStream stream) {
 		return readEncryptedMessage(32767, stream);
 	}
 
 	public final String readEncryptedMessage(int maxLength, InputStream stream) {
+		return readMessage(maxLength, stream, false);
+	}
+
+	/*
+	 * same as readEncryptedMessage with the sentence casing of
+	 * Utils.fixChatMessage applied
+	 */
+	public final String readChatMessage(int maxLength, InputStream stream) {
+		return readMessage(maxLength, stream, true);
+	}
+
+	private String readMessage(int maxLength, InputStream stream, boolean fixCase) {
 		try {
-			int messageDataLength = stream.readUnsignedSmart();
-			if (messageDataLength > maxLength)
-				messageDataLength = maxLength;
-			byte[] messageData = new byte[messageDataLength];
-			stream.skip(decryptMessage(messageData, messageDataLength, stream.getBuffer(), stream.getOffset(), 0));
-			String message = Utils.getUnformatedMessage(messageDataLength, 0, messageData);
-			return message;
+			int length = stream.readUnsignedSmart();
+			if (length > maxLength)
+				length = maxLength;
+			Scratch scratch = SCRATCH.get().ensure(length);
+			stream.skip(decode(stream.getBuffer(), stream.getOffset(), stream.getOffset() + stream.getRemaining(), scratch.data, 0, length));
+			int chars = Utils.getUnformatedMessage(scratch.data, 0, length, scratch.chars, 0);
+			if (fixCase)
+				Utils.fixChatMessage(scratch.chars, 0, chars);
+			return new String(scratch.chars, 0, chars);
 		} catch (Throwable e) {
 			return "";
 		}
 	}
 
 	public final void loadAlgorithmValues(Store store) {
-		byte[] huffmanFile = store.getIndex(IndexType.HUFFMAN).getFile(store.getIndex(IndexType.HUFFMAN).getArchiveId("huffman"));
+		loadAlgorithmValues(store.getIndex(IndexType.HUFFMAN).getFile(store.getIndex(IndexType.HUFFMAN).getArchiveId("huffman")));
+	}
+
+	public final void loadAlgorithmValues(byte[] huffmanFile) {
 		int fileLength = huffmanFile.length;
 		huffmanAlgorithm2 = huffmanFile;
 		huffmanAlgorithm1 = new int[fileLength];
@@ -119,140 +176,103 @@ public final class Huffman {
 					i_4_ = 1 + i_14_;
 			}
 		}
+		buildDecodeTables();
+	}
+
+	private void buildDecodeTables() {
+		int positions = huffmanAlgorithm3.length;
+		decodeTransitions = new int[positions << 4];
+		decodeSymbols = new int[positions << 4];
+		for (int position = 0; position < positions; position++) {
+			for (int nibble = 0; nibble < 16; nibble++) {
+				int node = position;
+				int count = 0;
+				int symbols = 0;
+				for (int bit = 3; bit >= 0; bit--) {
+					node = (nibble >> bit & 0x1) == 0 ? node + 1 : huffmanAlgorithm3[node];
+					if (node < 0 || node >= positions) {
+						count = -1;
+						break;
+					}
+					if (huffmanAlgorithm3[node] < 0) {
+						symbols |= (~huffmanAlgorithm3[node] & 0xff) << (count++ * 8);
+						node = 0;
+					}
+				}
+				decodeTransitions[position << 4 | nibble] = count == -1 ? -1 : count << 16 | node;
+				decodeSymbols[position << 4 | nibble] = symbols;
+			}
+		}
 	}
 
 	public final int decryptMessage(byte[] messageData, int messagedDataLength, byte[] streamBuffer, int streamOffset, int messageDataOffset) {
-		if ((messagedDataLength ^ 0xffffffff) == -1)
+		return decode(streamBuffer, streamOffset, messageData, messageDataOffset, messagedDataLength);
+	}
+
+	/*
+	 * decodes length symbols into dst, returns the number of bytes of src
+	 * consumed
+	 */
+	public int decode(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+		return decode(src, srcOffset, src.length, dst, dstOffset, length);
+	}
+
+	/*
+	 * same as above without reading src at or past srcEnd
+	 */
+	public int decode(byte[] src, int srcOffset, int srcEnd, byte[] dst, int dstOffset, int length) {
+		if (length == 0)
 			return 0;
-		int i = 0;
-		messagedDataLength += messageDataOffset;
-		int i_1_ = streamOffset;
+		int end = dstOffset + length;
+		int position = 0;
+		int offset = srcOffset;
 		for (;;) {
-			byte i_2_ = streamBuffer[i_1_];
-			if ((i_2_ ^ 0xffffffff) <= -1)
-				i++;
-			else
-				i = huffmanAlgorithm3[i];
-			int i_3_;
-			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if (messagedDataLength <= messageDataOffset)
-					break;
-				i = 0;
-			}
-			if ((i_2_ & 0x40 ^ 0xffffffff) == -1)
-				i++;
-			else
-				i = huffmanAlgorithm3[i];
-			if (((i_3_ = huffmanAlgorithm3[i]) ^ 0xffffffff) > -1) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if (messagedDataLength <= messageDataOffset)
-					break;
-				i = 0;
-			}
-			if ((0x20 & i_2_ ^ 0xffffffff) != -1)
-				i = huffmanAlgorithm3[i];
-			else
-				i++;
-			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if (messagedDataLength <= messageDataOffset)
-					break;
-				i = 0;
-			}
-			if ((0x10 & i_2_ ^ 0xffffffff) != -1)
-				i = huffmanAlgorithm3[i];
-			else
-				i++;
-			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if ((messageDataOffset ^ 0xffffffff) <= (messagedDataLength ^ 0xffffffff))
-					break;
-				i = 0;
-			}
-			if ((i_2_ & 0x8) == 0)
-				i++;
-			else
-				i = huffmanAlgorithm3[i];
-			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if (messageDataOffset >= messagedDataLength)
-					break;
-				i = 0;
-			}
-			if ((0x4 & i_2_ ^ 0xffffffff) != -1)
-				i = huffmanAlgorithm3[i];
-			else
-				i++;
-			if (((i_3_ = huffmanAlgorithm3[i]) ^ 0xffffffff) > -1) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if (messageDataOffset >= messagedDataLength)
-					break;
-				i = 0;
-			}
-			if ((0x2 & i_2_) != 0)
-				i = huffmanAlgorithm3[i];
-			else
-				i++;
-			if (((i_3_ = huffmanAlgorithm3[i]) ^ 0xffffffff) > -1) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if (messagedDataLength <= messageDataOffset)
-					break;
-				i = 0;
-			}
-			if ((0x1 & i_2_ ^ 0xffffffff) != -1)
-				i = huffmanAlgorithm3[i];
-			else
-				i++;
-			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
-				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
-				if ((messageDataOffset ^ 0xffffffff) <= (messagedDataLength ^ 0xffffffff))
-					break;
-				i = 0;
+			if (offset >= srcEnd)
+				throw new IllegalArgumentException("Huffman message runs past " + srcEnd);
+			int value = src[offset++] & 0xff;
+			for (int shift = 4; shift >= 0; shift -= 4) {
+				int index = position << 4 | (value >> shift & 0xf);
+				int transition = decodeTransitions[index];
+				if (transition == -1)
+					throw new IllegalArgumentException("Invalid huffman code at " + (offset - 1));
+				int symbols = decodeSymbols[index];
+				for (int count = transition >>> 16; count > 0; count--) {
+					dst[dstOffset++] = (byte) symbols;
+					if (dstOffset >= end)
+						return offset - srcOffset;
+					symbols >>>= 8;
+				}
+				position = transition & 0xffff;
 			}
-			i_1_++;
 		}
-		return -streamOffset + i_1_ - -1;
 	}
 
 	public final int encryptMessage(int streamOffset, int messageDataLength, byte[] streamBuffer, int messageDataOffset, byte[] messageData) {
-		int i = 0;
-		messageDataLength += messageDataOffset;
-		int i_19_ = streamOffset << 309760323;
-		for (/**/; messageDataOffset < messageDataLength; messageDataOffset++) {
-			int i_20_ = 0xff & messageData[messageDataOffset];
-			int i_21_ = huffmanAlgorithm1[i_20_];
-			int i_22_ = huffmanAlgorithm2[i_20_];
-			if (i_22_ == 0)
-				throw new RuntimeException("No codeword for data value " + i_20_);
-			int i_23_ = i_19_ >> -976077821;
-			int i_24_ = 0x7 & i_19_;
-			i &= -i_24_ >> -1041773793;
-			int i_25_ = (-1 + i_24_ - -i_22_ >> -2003626461) + i_23_;
-			i_19_ += i_22_;
-			i_24_ += 24;
-			streamBuffer[i_23_] = (byte) (i = (i | (i_21_ >>> i_24_)));
-			if (i_25_ > i_23_) {
-				i_24_ -= 8;
-				i_23_++;
-				streamBuffer[i_23_] = (byte) (i = i_21_ >>> i_24_);
-				if ((i_23_ ^ 0xffffffff) > (i_25_ ^ 0xffffffff)) {
-					i_24_ -= 8;
-					i_23_++;
-					streamBuffer[i_23_] = (byte) (i = i_21_ >>> i_24_);
-					if ((i_23_ ^ 0xffffffff) > (i_25_ ^ 0xffffffff)) {
-						i_24_ -= 8;
-						i_23_++;
-						streamBuffer[i_23_] = (byte) (i = i_21_ >>> i_24_);
-						if ((i_25_ ^ 0xffffffff) < (i_23_ ^ 0xffffffff)) {
-							i_23_++;
-							i_24_ -= 8;
-							streamBuffer[i_23_] = (byte) (i = i_21_ << -i_24_);
-						}
-					}
-				}
+		return encode(messageData, messageDataOffset, messageDataLength, streamBuffer, streamOffset);
+	}
+
+	/*
+	 * writes the codes for length symbols of src into dst, returns the number
+	 * of bytes written
+	 */
+	public int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		long bits = 0;
+		int bitCount = 0;
+		int offset = dstOffset;
+		for (int i = srcOffset; i < srcOffset + length; i++) {
+			int symbol = src[i] & 0xff;
+			int size = huffmanAlgorithm2[symbol];
+			if (size == 0)
+				throw new RuntimeException("No codeword for data value " + symbol);
+			bits = bits << size | ((huffmanAlgorithm1[symbol] >>> (32 - size)) & 0xffffffffL);
+			bitCount += size;
+			while (bitCount >= 8) {
+				bitCount -= 8;
+				dst[offset++] = (byte) (bits >>> bitCount);
 			}
 		}
-		return -streamOffset + (7 + i_19_ >> 1737794179);
+		if (bitCount > 0)
+			dst[offset++] = (byte) (bits << (8 - bitCount));
+		return offset - dstOffset;
 	}
 }
@@ -16,7 +16,11 @@
 //
 package com.rs.cache;
 
-import java.util.zip.CRC32;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.rs.cache.utils.CacheUtil;
 import com.rs.cache.utils.Constants;
@@ -26,13 +30,27 @@ import com.rs.lib.io.OutputStream;
 
 public final class Index {
 
+	public static long DEFAULT_GROUP_CACHE_BYTES = 8 * 1024 * 1024;
+
 	private MainFile mainFile;
 	private MainFile index255;
 	private ReferenceTable table;
-	private byte[][][] cachedFiles;
 	private int crc;
 	private byte[] whirlpool;
 
+	private final LinkedHashMap<Integer, byte[][]> cachedGroups = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedGroupsBytes;
+	private long maxCachedGroupsBytes = DEFAULT_GROUP_CACHE_BYTES;
+	private long groupsVersion;
+	private final AtomicLong groupHits = new AtomicLong();
+	private final AtomicLong groupMisses = new AtomicLong();
+	private final AtomicLong decompressedBytes = new AtomicLong();
+	private Consumer<Index> tableListener;
+
+	public interface FileVisitor {
+		void visit(int fileId, byte[] data);
+	}
+
 	protected Index(MainFile index255, MainFile mainFile) {
 		this.mainFile = mainFile;
 		this.index255 = index255;
@@ -43,11 +61,114 @@ public final class Index {
 		whirlpool = Whirlpool.getWhirlpool(archiveData, 0, archiveData.length);
 		Archive archive = new Archive(getId(), archiveData, null);
 		table = new ReferenceTable(archive);
-		resetCachedFiles();
 	}
 
 	public void resetCachedFiles() {
-		cachedFiles = new byte[getLastArchiveId() + 1][][];
+		synchronized (cachedGroups) {
+			groupsVersion++;
+			cachedGroups.clear();
+			cachedGroupsBytes = 0;
+		}
+	}
+
+	public void resetCachedFiles(int archiveId) {
+		synchronized (cachedGroups) {
+			groupsVersion++;
+			byte[][] files = cachedGroups.remove(archiveId);
+			if (files != null)
+				cachedGroupsBytes -= getSize(files);
+		}
+	}
+
+	public void setMaxCachedGroupsBytes(long maxCachedGroupsBytes) {
+		synchronized (cachedGroups) {
+			this.maxCachedGroupsBytes = maxCachedGroupsBytes;
+			evictGroups();
+		}
+	}
+
+	/*
+	 * split files of the archive, shared with the cache so callers must never
+	 * modify them
+	 */
+	byte[][] getGroup(int archiveId, int[] keys) {
+		long version;
+		synchronized (cachedGroups) {
+			byte[][] files = cachedGroups.get(archiveId);
+			if (files != null) {
+				groupHits.incrementAndGet();
+				return files;
+			}
+			version = groupsVersion;
+		}
+		groupMisses.incrementAndGet();
+		byte[][] files = decodeArchiveFiles(archiveId, keys);
+		long size = getSize(files);
+		if (size == 0)
+			return files;
+		synchronized (cachedGroups) {
+			if (version == groupsVersion && size <= maxCachedGroupsBytes) {
+				byte[][] old = cachedGroups.put(archiveId, files);
+				if (old != null)
+					cachedGroupsBytes -= getSize(old);
+				cachedGroupsBytes += size;
+				evictGroups();
+			}
+		}
+		return files;
+	}
+
+	private void evictGroups() {
+		Iterator<byte[][]> it = cachedGroups.values().iterator();
+		while (cachedGroupsBytes > maxCachedGroupsBytes && it.hasNext()) {
+			cachedGroupsBytes -= getSize(it.next());
+			it.remove();
+		}
+	}
+
+	private static long getSize(byte[][] files) {
+		long size = 0;
+		for (byte[] file : files)
+			if (file != null)
+				size += file.length;
+		return size;
+	}
+
+	/*
+	 * visits every file of the archive exactly once in file id order, the
+	 * data passed in is shared with the cache and must not be modified
+	 */
+	public boolean forEachFile(int archiveId, FileVisitor visitor) {
+		return forEachFile(archiveId, null, visitor);
+	}
+
+	public boolean forEachFile(int archiveId, int[] keys, FileVisitor visitor) {
+		if (!archiveExists(archiveId))
+			return false;
+		byte[][] files = getGroup(archiveId, keys);
+		for (int fileId : table.getArchives()[archiveId].getValidFileIds()) {
+			if (fileId < files.length && files[fileId] != null)
+				visitor.visit(fileId, files[fileId]);
+		}
+		return true;
+	}
+
+	public long getGroupHits() {
+		return groupHits.get();
+	}
+
+	public long getGroupMisses() {
+		return groupMisses.get();
+	}
+
+	public long getDecompressedBytes() {
+		return decompressedBytes.get();
+	}
+
+	public long getCachedGroupsBytes() {
+		synchronized (cachedGroups) {
+			return cachedGroupsBytes;
+		}
 	}
 
 	public int getLastFileId(int archiveId) {
@@ -124,11 +245,9 @@ public final class Index {
 			if (!fileExists(archiveId, fileId)) {
 				return null;
 			}
-			if (cachedFiles[archiveId] == null || cachedFiles[archiveId][fileId] == null)
-				cacheArchiveFiles(archiveId, keys);
-			byte[] file = cachedFiles[archiveId][fileId];
-			cachedFiles[archiveId][fileId] = null;
-			return file;
+			byte[][] files = getGroup(archiveId, keys);
+			byte[] file = fileId < files.length ? files[fileId] : null;
+			return file == null ? null : file.clone();
 		} catch (Throwable e) {
 			e.printStackTrace();
 			return null;
@@ -192,10 +311,9 @@ public final class Index {
 			data[data.length - 1] = (byte) revision;
 			if (!mainFile.putArchiveData(archiveId, data))
 				return false;
+			resetCachedFiles(archiveId);
 			if (rewriteTable && !rewriteTable())
 				return false;
-			if (resetCache)
-				resetCachedFiles();
 			return true;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -218,102 +336,107 @@ public final class Index {
 	public boolean removeFile(int archiveId, int fileId, int compression, int[] keys) {
 		if (!fileExists(archiveId, fileId))
 			return false;
-		cacheArchiveFiles(archiveId, keys);
+		byte[][] files = getGroup(archiveId, keys);
 		ArchiveReference reference = table.getArchives()[archiveId];
 		reference.removeFileReference(fileId);
-		int filesCount = getValidFilesCount(archiveId);
-		byte[] archiveData;
-		if (filesCount == 1)
-			archiveData = getFile(archiveId, reference.getValidFileIds()[0], keys);
-		else {
-			int[] filesSize = new int[filesCount];
-			OutputStream stream = new OutputStream();
-			for (int index = 0; index < filesCount; index++) {
-				int id = reference.getValidFileIds()[index];
-				byte[] fileData = getFile(archiveId, id, keys);
-				filesSize[index] = fileData.length;
-				stream.writeBytes(fileData);
-			}
-			for (int index = 0; index < filesSize.length; index++) {
-				int offset = filesSize[index];
-				if (index != 0)
-					offset -= filesSize[index - 1];
-				stream.writeInt(offset);
-			}
-			stream.writeByte(1); // 1loop
-			archiveData = new byte[stream.getOffset()];
-			stream.setOffset(0);
-			stream.getBytes(archiveData, 0, archiveData.length);
-		}
-		reference.updateRevision();
-		Archive archive = new Archive(archiveId, compression, reference.getRevision(), archiveData);
-		byte[] closedArchive = archive.compress();
-		CRC32 crc = new CRC32();
-		crc.update(closedArchive, 0, closedArchive.length - 2);
-		reference.setCrc((int) crc.getValue());
-		reference.setWhirpool(Whirlpool.getWhirlpool(closedArchive, 0, closedArchive.length - 2));
-		if (!mainFile.putArchiveData(archiveId, closedArchive))
+		if (!writeGroup(archiveId, reference, compression, packGroup(reference, files)))
 			return false;
 		if (!rewriteTable())
 			return false;
-		resetCachedFiles();
 		return true;
 	}
 
 	public boolean putFile(int archiveId, int fileId, int compression, byte[] data, int[] keys, boolean rewriteTable, boolean resetCache, int archiveName, int fileName) {
+		byte[][] files;
 		if (!archiveExists(archiveId)) {
 			table.addEmptyArchiveReference(archiveId);
-			resetCachedFiles();
-			cachedFiles[archiveId] = new byte[1][];
+			files = new byte[0][];
 		} else
-			cacheArchiveFiles(archiveId, keys);
+			files = getGroup(archiveId, keys);
 		ArchiveReference reference = table.getArchives()[archiveId];
 		if (!fileExists(archiveId, fileId))
 			reference.addEmptyFileReference(fileId);
 		reference.sortFiles();
-		int filesCount = getValidFilesCount(archiveId);
-		byte[] archiveData;
-		if (filesCount == 1)
-			archiveData = data;
-		else {
-			int[] filesSize = new int[filesCount];
-			OutputStream stream = new OutputStream();
-			for (int index = 0; index < filesCount; index++) {
-				int id = reference.getValidFileIds()[index];
-				byte[] fileData;
-				if (id == fileId)
-					fileData = data;
-				else
-					fileData = getFile(archiveId, id, keys);
-				filesSize[index] = fileData.length;
-				stream.writeBytes(fileData);
-			}
-			for (int index = 0; index < filesCount; index++) {
-				int offset = filesSize[index];
-				if (index != 0)
-					offset -= filesSize[index - 1];
-				stream.writeInt(offset);
-			}
-			stream.writeByte(1); // 1loop
-			archiveData = new byte[stream.getOffset()];
-			stream.setOffset(0);
-			stream.getBytes(archiveData, 0, archiveData.length);
+		if (archiveName != -1)
+			reference.setNameHash(archiveName);
+		if (fileName != -1)
+			reference.getFiles()[fileId].setNameHash(fileName);
+		byte[][] group = Arrays.copyOf(files, Math.max(files.length, fileId + 1));
+		group[fileId] = data;
+		if (!writeGroup(archiveId, reference, compression, packGroup(reference, group)))
+			return false;
+		if (rewriteTable && !rewriteTable())
+			return false;
+		return true;
+	}
+
+	/*
+	 * joins the valid files of the reference into one archive, a single file
+	 * is stored as is
+	 */
+	static byte[] packGroup(ArchiveReference reference, byte[][] files) {
+		int[] validFileIds = reference.getValidFileIds();
+		if (validFileIds.length == 1)
+			return files[validFileIds[0]];
+		int[] filesSize = new int[validFileIds.length];
+		OutputStream stream = new OutputStream();
+		for (int index = 0; index < validFileIds.length; index++) {
+			byte[] fileData = files[validFileIds[index]];
+			filesSize[index] = fileData.length;
+			stream.writeBytes(fileData);
+		}
+		for (int index = 0; index < filesSize.length; index++) {
+			int offset = filesSize[index];
+			if (index != 0)
+				offset -= filesSize[index - 1];
+			stream.writeInt(offset);
 		}
+		stream.writeByte(1); // 1loop
+		byte[] archiveData = new byte[stream.getOffset()];
+		stream.setOffset(0);
+		stream.getBytes(archiveData, 0, archiveData.length);
+		return archiveData;
+	}
+
+	/*
+	 * bumps the revision, compresses and writes the archive, leaving the
+	 * table itself unwritten
+	 */
+	boolean writeGroup(int archiveId, ArchiveReference reference, int compression, byte[] archiveData) {
 		reference.updateRevision();
 		Archive archive = new Archive(archiveId, compression, reference.getRevision(), archiveData);
 		byte[] closedArchive = archive.compress();
 		reference.setCrc(CacheUtil.getCrcChecksum(closedArchive, closedArchive.length - 2));
 		reference.setWhirpool(Whirlpool.getWhirlpool(closedArchive, 0, closedArchive.length - 2));
-		if (archiveName != -1)
-			reference.setNameHash(archiveName);
-		if (fileName != -1)
-			reference.getFiles()[fileId].setNameHash(fileName);
 		if (!mainFile.putArchiveData(archiveId, closedArchive))
 			return false;
-		if (rewriteTable && !rewriteTable())
+		resetCachedFiles(archiveId);
+		return true;
+	}
+
+	/*
+	 * stages changes to many files that are written once per archive with a
+	 * single table rewrite on commit
+	 */
+	public IndexTransaction begin() {
+		return new IndexTransaction(this);
+	}
+
+	byte[] getTableData() {
+		return index255.getArchiveData(getId());
+	}
+
+	/*
+	 * puts back a table read with getTableData and decodes it again
+	 */
+	boolean restoreTable(byte[] archiveData) {
+		if (!index255.putArchiveData(getId(), archiveData))
 			return false;
-		if (resetCache)
-			resetCachedFiles();
+		int[] keys = table.getKeys();
+		crc = CacheUtil.getCrcChecksum(archiveData, archiveData.length);
+		whirlpool = Whirlpool.getWhirlpool(archiveData, 0, archiveData.length);
+		table = new ReferenceTable(new Archive(getId(), archiveData, null));
+		table.setKeys(keys);
 		return true;
 	}
 
@@ -338,10 +461,9 @@ public final class Index {
 		reference.setWhirpool(Whirlpool.getWhirlpool(closedArchive, 0, closedArchive.length - 2));
 		if (!mainFile.putArchiveData(archiveId, closedArchive))
 			return false;
+		resetCachedFiles(archiveId);
 		if (rewriteTable && !rewriteTable())
 			return false;
-		if (resetCache)
-			resetCachedFiles();
 		return true;
 
 	}
@@ -354,9 +476,18 @@ public final class Index {
 			return false;
 		crc = (int) hashes[0];
 		whirlpool = (byte[]) hashes[1];
+		if (tableListener != null)
+			tableListener.accept(this);
 		return true;
 	}
 
+	/*
+	 * called after every successful rewriteTable
+	 */
+	void setTableListener(Consumer<Index> tableListener) {
+		this.tableListener = tableListener;
+	}
+
 	public void setKeys(int[] keys) {
 		table.setKeys(keys);
 	}
@@ -365,18 +496,33 @@ public final class Index {
 		return table.getKeys();
 	}
 
-	private void cacheArchiveFiles(int archiveId, int[] keys) {
+	/*
+	 * decodes every file of the archive at once without touching the cached
+	 * files, safe to call from any thread
+	 */
+	public byte[][] getFiles(int archiveId) {
+		return getFiles(archiveId, null);
+	}
+
+	public byte[][] getFiles(int archiveId, int[] keys) {
+		if (!archiveExists(archiveId))
+			return null;
+		return decodeArchiveFiles(archiveId, keys);
+	}
+
+	private byte[][] decodeArchiveFiles(int archiveId, int[] keys) {
 		Archive archive = getArchive(archiveId, keys);
 		int lastFileId = getLastFileId(archiveId);
-		cachedFiles[archiveId] = new byte[lastFileId + 1][];
+		byte[][] files = new byte[lastFileId + 1][];
 		if (archive == null)
-			return;
+			return files;
 		byte[] data = archive.getData();
 		if (data == null)
-			return;
+			return files;
+		decompressedBytes.addAndGet(data.length);
 		int filesCount = getValidFilesCount(archiveId);
 		if (filesCount == 1)
-			cachedFiles[archiveId][lastFileId] = data;
+			files[lastFileId] = data;
 		else {
 			int readPosition = data.length;
 			int amtOfLoops = data[--readPosition] & 0xff;
@@ -407,8 +553,9 @@ public final class Index {
 			}
 			int count = 0;
 			for (int fileId : table.getArchives()[archiveId].getValidFileIds())
-				cachedFiles[archiveId][fileId] = filesData[count++];
+				files[fileId] = filesData[count++];
 		}
+		return files;
 	}
 	
 	public IndexType getRef() {
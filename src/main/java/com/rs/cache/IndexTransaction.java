@@ -0,0 +1,191 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.rs.cache.utils.Constants;
+import com.rs.lib.util.Logger;
+
+/*
+ * Changes staged against one index. Nothing touches the cache until commit,
+ * which writes every changed archive once and the reference table once. If
+ * any write fails the archives and the table written so far are put back.
+ */
+public final class IndexTransaction {
+
+	private final Index index;
+	private final Map<Integer, StagedArchive> staged = new TreeMap<>();
+	private int compression = Constants.GZIP_COMPRESSION;
+	private int threads = 1;
+	private boolean done;
+
+	private static final class StagedArchive {
+		private final TreeMap<Integer, byte[]> files = new TreeMap<>();
+		private int[] keys;
+		private int nameHash = -1;
+		private final Map<Integer, Integer> fileNameHashes = new TreeMap<>();
+	}
+
+	IndexTransaction(Index index) {
+		this.index = index;
+	}
+
+	public IndexTransaction setCompression(int compression) {
+		this.compression = compression;
+		return this;
+	}
+
+	/*
+	 * more than one thread compresses and hashes the archives through an
+	 * ArchiveWritePipeline
+	 */
+	public IndexTransaction setThreads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	public IndexTransaction putArchive(int archiveId, byte[] data) {
+		return putFile(archiveId, 0, data);
+	}
+
+	public IndexTransaction putFile(int archiveId, int fileId, byte[] data) {
+		return putFile(archiveId, fileId, data, null, -1, -1);
+	}
+
+	public IndexTransaction putFile(int archiveId, int fileId, byte[] data, int[] keys, int archiveName, int fileName) {
+		if (data == null)
+			throw new IllegalArgumentException("Cannot stage null data for " + archiveId + ", " + fileId + ", use removeFile.");
+		StagedArchive archive = stage(archiveId, keys);
+		archive.files.put(fileId, data);
+		if (archiveName != -1)
+			archive.nameHash = archiveName;
+		if (fileName != -1)
+			archive.fileNameHashes.put(fileId, fileName);
+		return this;
+	}
+
+	public IndexTransaction removeFile(int archiveId, int fileId) {
+		return removeFile(archiveId, fileId, null);
+	}
+
+	public IndexTransaction removeFile(int archiveId, int fileId, int[] keys) {
+		StagedArchive archive = stage(archiveId, keys);
+		archive.files.put(fileId, null);
+		archive.fileNameHashes.remove(fileId);
+		return this;
+	}
+
+	private StagedArchive stage(int archiveId, int[] keys) {
+		if (done)
+			throw new IllegalStateException("Transaction already finished.");
+		StagedArchive archive = staged.computeIfAbsent(archiveId, id -> new StagedArchive());
+		if (keys != null)
+			archive.keys = keys;
+		return archive;
+	}
+
+	public int getStagedArchivesCount() {
+		return staged.size();
+	}
+
+	/*
+	 * drops everything staged so far without touching the cache
+	 */
+	public void rollback() {
+		staged.clear();
+		done = true;
+	}
+
+	public boolean commit() {
+		if (done)
+			throw new IllegalStateException("Transaction already finished.");
+		done = true;
+		if (staged.isEmpty())
+			return true;
+		byte[] tableData = index.getTableData();
+		if (tableData == null)
+			return false;
+		Map<Integer, byte[]> originals = new LinkedHashMap<>();
+		MainFile mainFile = index.getMainFile();
+		ReferenceTable table = index.getTable();
+		ArchiveWritePipeline pipeline = threads > 1 ? new ArchiveWritePipeline(index, threads) : null;
+		try {
+			for (Map.Entry<Integer, StagedArchive> entry : staged.entrySet()) {
+				int archiveId = entry.getKey();
+				StagedArchive archive = entry.getValue();
+				byte[][] files;
+				if (index.archiveExists(archiveId)) {
+					originals.put(archiveId, mainFile.getArchiveData(archiveId));
+					files = index.getGroup(archiveId, archive.keys);
+				} else if (archive.files.values().stream().anyMatch(Objects::nonNull)) {
+					table.addEmptyArchiveReference(archiveId);
+					files = new byte[0][];
+				} else
+					continue;
+				ArchiveReference reference = table.getArchives()[archiveId];
+				files = Arrays.copyOf(files, Math.max(files.length, archive.files.lastKey() + 1));
+				for (Map.Entry<Integer, byte[]> file : archive.files.entrySet()) {
+					int fileId = file.getKey();
+					boolean exists = fileId < reference.getFiles().length && reference.getFiles()[fileId] != null;
+					if (file.getValue() == null) {
+						if (exists)
+							reference.removeFileReference(fileId);
+					} else if (!exists)
+						reference.addEmptyFileReference(fileId);
+					files[fileId] = file.getValue();
+				}
+				reference.sortFiles();
+				if (archive.nameHash != -1)
+					reference.setNameHash(archive.nameHash);
+				for (Map.Entry<Integer, Integer> name : archive.fileNameHashes.entrySet())
+					reference.getFiles()[name.getKey()].setNameHash(name.getValue());
+				if (pipeline != null)
+					pipeline.submit(archiveId, compression, Index.packGroup(reference, files), null);
+				else if (!index.writeGroup(archiveId, reference, compression, Index.packGroup(reference, files)))
+					throw new IllegalStateException("Failed writing archive " + archiveId + ".");
+			}
+			if (pipeline != null && !pipeline.finish())
+				throw new IllegalStateException("Failed writing archives.");
+			if (!index.rewriteTable())
+				throw new IllegalStateException("Failed writing reference table.");
+			return true;
+		} catch (Exception e) {
+			Logger.handle(e);
+			if (pipeline != null)
+				pipeline.finish();
+			restore(tableData, originals);
+			return false;
+		}
+	}
+
+	private void restore(byte[] tableData, Map<Integer, byte[]> originals) {
+		for (Map.Entry<Integer, byte[]> original : originals.entrySet()) {
+			if (original.getValue() != null)
+				index.getMainFile().putArchiveData(original.getKey(), original.getValue());
+			index.resetCachedFiles(original.getKey());
+		}
+		for (int archiveId : staged.keySet())
+			index.resetCachedFiles(archiveId);
+		if (!index.restoreTable(tableData))
+			Logger.log("IndexTransaction", "Failed restoring reference table of index " + index.getId() + ".");
+	}
+}
@@ -0,0 +1,179 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Fully framed js5 responses kept in direct buffers, evicted least recently
+ * used first once the total size passes maxBytes.
+ */
+public final class JS5ResponseCache {
+
+	private final long maxBytes;
+	private final LinkedHashMap<Long, ByteBuffer> responses = new LinkedHashMap<>(1024, 0.75f, true);
+	private long cachedBytes;
+	private long invalidations;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong hitBytes = new AtomicLong();
+
+	public JS5ResponseCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	private static long key(int indexId, int archiveId, boolean priority) {
+		return ((long) indexId << 33) | ((archiveId & 0xffffffffL) << 1) | (priority ? 1 : 0);
+	}
+
+	/*
+	 * returns a private view of the cached response or null on a miss
+	 */
+	public ByteBuffer get(int indexId, int archiveId, boolean priority) {
+		ByteBuffer response;
+		synchronized (this) {
+			response = responses.get(key(indexId, archiveId, priority));
+		}
+		if (response == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		hitBytes.addAndGet(response.capacity());
+		return response.duplicate();
+	}
+
+	/*
+	 * stamp to pass into put so a response read before an invalidation is
+	 * never cached after it
+	 */
+	public synchronized long getStamp() {
+		return invalidations;
+	}
+
+	public ByteBuffer put(int indexId, int archiveId, boolean priority, byte[] framed, long stamp) {
+		ByteBuffer response = ByteBuffer.allocateDirect(framed.length);
+		response.put(framed).flip();
+		if (framed.length > maxBytes)
+			return response.duplicate();
+		synchronized (this) {
+			if (stamp != invalidations)
+				return response.duplicate();
+			ByteBuffer old = responses.put(key(indexId, archiveId, priority), response);
+			if (old != null)
+				cachedBytes -= old.capacity();
+			cachedBytes += framed.length;
+			Iterator<ByteBuffer> it = responses.values().iterator();
+			while (cachedBytes > maxBytes && it.hasNext()) {
+				cachedBytes -= it.next().capacity();
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+		return response.duplicate();
+	}
+
+	public synchronized void invalidate(int indexId, int archiveId) {
+		invalidations++;
+		remove(key(indexId, archiveId, true));
+		remove(key(indexId, archiveId, false));
+	}
+
+	public synchronized void clear() {
+		invalidations++;
+		responses.clear();
+		cachedBytes = 0;
+	}
+
+	private void remove(long key) {
+		ByteBuffer old = responses.remove(key);
+		if (old != null)
+			cachedBytes -= old.capacity();
+	}
+
+	/*
+	 * index, archive id, settings and length header followed by the container
+	 * with a 0xff marker starting every 512 byte block
+	 */
+	public static byte[] frame(int indexId, int archiveId, byte[] archive, boolean priority) {
+		int compression = archive[0] & 0xff;
+		int length = ((archive[1] & 0xff) << 24) + ((archive[2] & 0xff) << 16) + ((archive[3] & 0xff) << 8) + (archive[4] & 0xff);
+		int settings = compression;
+		if (!priority)
+			settings |= 0x80;
+		int realLength = compression != 0 ? length + 4 : length;
+		int markers = realLength > 502 ? (realLength - 502 + 510) / 511 : 0;
+		byte[] framed = new byte[10 + realLength + markers];
+		framed[0] = (byte) indexId;
+		framed[1] = (byte) (archiveId >> 24);
+		framed[2] = (byte) (archiveId >> 16);
+		framed[3] = (byte) (archiveId >> 8);
+		framed[4] = (byte) archiveId;
+		framed[5] = (byte) settings;
+		System.arraycopy(archive, 1, framed, 6, 4);
+		int position = 10;
+		int source = 5;
+		int end = realLength + 5;
+		while (source < end) {
+			if (position % 512 == 0)
+				framed[position++] = (byte) 255;
+			int blockSize = Math.min(end - source, 512 - position % 512);
+			System.arraycopy(archive, source, framed, position, blockSize);
+			position += blockSize;
+			source += blockSize;
+		}
+		return framed;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getHitBytes() {
+		return hitBytes.get();
+	}
+
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	public synchronized int getCachedResponses() {
+		return responses.size();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "[hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", responses=" + getCachedResponses() + ", cachedBytes=" + getCachedBytes() + ", hitBytes=" + getHitBytes() + "]";
+	}
+}
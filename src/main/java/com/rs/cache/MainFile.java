@@ -38,6 +38,9 @@ public final class MainFile {
 	private int id;
 	private FileChannel index;
 	private FileChannel data;
+	private volatile MappedCacheFile mappedIndex;
+	private volatile MappedCacheFile mappedData;
+	private volatile JS5ResponseCache responseCache;
 
 	protected MainFile(int id, RandomAccessFile data, RandomAccessFile index) throws IOException {
 		this.id = id;
@@ -45,6 +48,21 @@ public final class MainFile {
 		this.index = index.getChannel();
 	}
 
+	protected void map(MappedCacheFile mappedData) throws IOException {
+		synchronized (data) {
+			this.mappedIndex = new MappedCacheFile(index);
+			this.mappedData = mappedData;
+		}
+	}
+
+	public boolean isMapped() {
+		return mappedIndex != null;
+	}
+
+	protected void setResponseCache(JS5ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
 	public Archive getArchive(int id) {
 		return getArchive(id, null);
 	}
@@ -57,6 +75,9 @@ public final class MainFile {
 	}
 
 	public byte[] getArchiveData(int archiveId) {
+		MappedCacheFile mappedIndex = this.mappedIndex;
+		if (mappedIndex != null)
+			return getMappedArchiveData(archiveId, mappedIndex, mappedData);
 		synchronized (data) {
 			try {
 				tempBuffer.position(0).limit(IDX_BLOCK_LEN);
@@ -117,6 +138,61 @@ public final class MainFile {
 		}
 	}
 
+	private byte[] getMappedArchiveData(int archiveId, MappedCacheFile index, MappedCacheFile data) {
+		try {
+			long indexPosition = (long) archiveId * IDX_BLOCK_LEN;
+			if (archiveId < 0 || indexPosition + IDX_BLOCK_LEN > index.size())
+				return null;
+			int size = index.getMediumInt(indexPosition);
+			int block = index.getMediumInt(indexPosition + 3);
+			long blocksCount = data.size() / TOTAL_BLOCK_LEN;
+			if (size < 0)
+				return null;
+			if (block <= 0 || block > blocksCount)
+				return null;
+			byte[] file = new byte[size];
+			int offset = 0;
+			int chunk = 0;
+			boolean expanded = archiveId > 0xffff;
+			int blockLen = expanded ? EXPANDED_BLOCK_LEN : BLOCK_LEN;
+			int headerLen = expanded ? EXPANDED_HEADER_LEN : HEADER_LEN;
+			while (offset < size) {
+				if (block == 0)
+					return null;
+				int blockSize = size - offset > blockLen ? blockLen : size - offset;
+				long position = (long) block * TOTAL_BLOCK_LEN;
+				if (position + headerLen + blockSize > data.size())
+					return null;
+
+				int currentFile, currentChunk, nextBlock, currentIndex;
+
+				if (expanded) {
+					currentFile = data.getInt(position);
+					position += 4;
+				} else {
+					currentFile = data.getUnsignedShort(position);
+					position += 2;
+				}
+				currentChunk = data.getUnsignedShort(position);
+				nextBlock = data.getMediumInt(position + 2);
+				currentIndex = data.getUnsignedByte(position + 5);
+
+				if ((archiveId != currentFile && !expanded) || chunk != currentChunk || id != currentIndex)
+					return null;
+				if (nextBlock < 0 || nextBlock > blocksCount)
+					return null;
+
+				data.get(position + 6, file, offset, blockSize);
+				offset += blockSize;
+				block = nextBlock;
+				chunk++;
+			}
+			return file;
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
 	private static int getMediumInt(ByteBuffer buffer) {
 		return ((buffer.get() & 0xff) << 16) | ((buffer.get() & 0xff) << 8) | (buffer.get() & 0xff);
 	}
@@ -239,6 +315,12 @@ public final class MainFile {
 					chunk++;
 				}
 
+				if (mappedIndex != null) {
+					mappedIndex.remap();
+					mappedData.remap();
+				}
+				if (responseCache != null)
+					responseCache.invalidate(id, archiveId);
 				return true;
 			} catch (Exception ex) {
 				return false;
@@ -0,0 +1,81 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/*
+ * Read-only view of a cache file. Only absolute gets are used so any number of
+ * threads can read at once without sharing a position or a scratch buffer.
+ */
+final class MappedCacheFile {
+
+	/*
+	 * Multiple of both the 6 byte index entry and the 520 byte sector so
+	 * neither ever straddles two segments.
+	 */
+	private static final int SEGMENT_LEN = (Integer.MAX_VALUE / 1560) * 1560;
+
+	private final FileChannel channel;
+	private volatile Mapping mapping;
+
+	private record Mapping(MappedByteBuffer[] segments, long size) {}
+
+	MappedCacheFile(FileChannel channel) throws IOException {
+		this.channel = channel;
+		remap();
+	}
+
+	synchronized void remap() throws IOException {
+		long size = channel.size();
+		if (mapping != null && mapping.size == size)
+			return;
+		MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_LEN - 1) / SEGMENT_LEN)];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long) i * SEGMENT_LEN;
+			segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_LEN, size - start));
+		}
+		mapping = new Mapping(segments, size);
+	}
+
+	long size() {
+		return mapping.size;
+	}
+
+	int getUnsignedByte(long position) {
+		return mapping.segments[(int) (position / SEGMENT_LEN)].get((int) (position % SEGMENT_LEN)) & 0xff;
+	}
+
+	int getUnsignedShort(long position) {
+		return (getUnsignedByte(position) << 8) | getUnsignedByte(position + 1);
+	}
+
+	int getMediumInt(long position) {
+		return (getUnsignedByte(position) << 16) | (getUnsignedByte(position + 1) << 8) | getUnsignedByte(position + 2);
+	}
+
+	int getInt(long position) {
+		return (getUnsignedByte(position) << 24) | getMediumInt(position + 1);
+	}
+
+	void get(long position, byte[] dst, int offset, int length) {
+		mapping.segments[(int) (position / SEGMENT_LEN)].get((int) (position % SEGMENT_LEN), dst, offset, length);
+	}
+}
@@ -32,28 +32,47 @@ public final class Store {
 	private MainFile index255;
 	private String path;
 	private RandomAccessFile data;
+	private MappedCacheFile mappedData;
+	private JS5ResponseCache responseCache;
 	private Huffman huffman;
+	private volatile CacheManifest manifest;
 	
-	public Store(String path, boolean newProtocol) throws IOException {
+	public Store(String path, boolean newProtocol, boolean mapped) throws IOException {
 		this.path = path;
 		data = new RandomAccessFile(path + "main_file_cache.dat2", "rw");
-		index255 = new MainFile(255, data, new RandomAccessFile(path + "main_file_cache.idx255", "rw"));
+		if (mapped)
+			mappedData = new MappedCacheFile(data.getChannel());
+		index255 = openMainFile(255);
 		int idxsCount = index255.getArchivesCount();
 		indexes = new Index[idxsCount];
 		for (int id = 0; id < idxsCount; id++) {
 			if (id == 47)
 				continue;
-			Index index = new Index(index255, new MainFile(id, data, new RandomAccessFile(path + "main_file_cache.idx" + id, "rw")));
+			Index index = new Index(index255, openMainFile(id));
 			if (index.getTable() == null)
 				continue;
+			index.setTableListener(this::tableRewritten);
 			indexes[id] = index;
 		}
+		manifest = CacheManifest.build(this);
 		huffman = new Huffman(this);
 	}
+
+	public Store(String path, boolean newProtocol) throws IOException {
+		this(path, newProtocol, false);
+	}
 	
 	public Store(String path) throws IOException {
 		this(path, false);
 	}
+
+	private MainFile openMainFile(int id) throws IOException {
+		MainFile file = new MainFile(id, data, new RandomAccessFile(path + "main_file_cache.idx" + id, "rw"));
+		if (mappedData != null)
+			file.map(mappedData);
+		file.setResponseCache(responseCache);
+		return file;
+	}
 	
 	public final byte[] getChecksumContainer(BigInteger rsaExp, BigInteger rsaMod) {
 		byte[] checksumTable = getChecksumTable(rsaExp, rsaMod);
@@ -129,7 +148,47 @@ public final class Store {
 		stream.getBytes(archiveData, 0, archiveData.length);
 		Archive archive = new Archive(id, tableCompression, -1, archiveData);
 		index255.putArchiveData(id, archive.compress());
-		indexes[id] = new Index(index255, new MainFile(id, data, new RandomAccessFile(path + "main_file_cache.idx" + id, "rw")));
+		Index index = new Index(index255, openMainFile(id));
+		index.setTableListener(this::tableRewritten);
+		indexes[id] = index;
+		tableRewritten(index);
+	}
+
+	private synchronized void tableRewritten(Index index) {
+		manifest = manifest.with(index);
+	}
+
+	/*
+	 * immutable view of the reference tables, replaced whenever one is
+	 * rewritten through this store
+	 */
+	public CacheManifest getManifest() {
+		return manifest;
+	}
+
+	/*
+	 * keeps up to maxBytes of framed js5 responses off heap, any archive
+	 * written through this store drops its cached responses
+	 */
+	public JS5ResponseCache enableResponseCache(long maxBytes) {
+		responseCache = new JS5ResponseCache(maxBytes);
+		index255.setResponseCache(responseCache);
+		for (Index index : indexes)
+			if (index != null)
+				index.getMainFile().setResponseCache(responseCache);
+		return responseCache;
+	}
+
+	public JS5ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public boolean isMapped() {
+		return mappedData != null;
 	}
 
 	public Huffman getHuffman() {
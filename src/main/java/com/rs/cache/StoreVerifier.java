@@ -0,0 +1,299 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import com.rs.cache.utils.CompressionUtils;
+import com.rs.cache.utils.Constants;
+import com.rs.cache.utils.Whirlpool;
+import com.rs.lib.util.Logger;
+
+/*
+ * Checks every archive of a store against its reference table. The cache
+ * files are opened read only and memory mapped apart from the store's own
+ * channels so a live store can be verified without taking its locks.
+ */
+public final class StoreVerifier {
+
+	private static final int IDX_BLOCK_LEN = 6;
+	private static final int TOTAL_BLOCK_LEN = 520;
+
+	public enum Check {
+		SECTOR_CHAIN, CRC, WHIRLPOOL, DECOMPRESSION
+	}
+
+	public record Failure(int indexId, int archiveId, Check check, String detail) {
+		@Override
+		public String toString() {
+			return "[" + indexId + ", " + archiveId + "] " + check + ": " + detail;
+		}
+	}
+
+	public static final class Report {
+		private final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+		private final AtomicLong checked = new AtomicLong();
+		private final AtomicLong skipped = new AtomicLong();
+		private final AtomicLong bytes = new AtomicLong();
+		private long nanos;
+
+		public List<Failure> getFailures() {
+			synchronized (failures) {
+				return new ArrayList<>(failures);
+			}
+		}
+
+		public boolean isValid() {
+			return failures.isEmpty();
+		}
+
+		public long getArchivesChecked() {
+			return checked.get();
+		}
+
+		/*
+		 * archives left out by an incremental run since their revision and crc
+		 * were already verified
+		 */
+		public long getArchivesSkipped() {
+			return skipped.get();
+		}
+
+		public long getBytesRead() {
+			return bytes.get();
+		}
+
+		public long getMillis() {
+			return nanos / 1000000L;
+		}
+
+		public double getArchivesPerSecond() {
+			return nanos == 0 ? 0 : checked.get() * 1e9 / nanos;
+		}
+
+		public double getMegabytesPerSecond() {
+			return nanos == 0 ? 0 : bytes.get() * 1e9 / nanos / (1024 * 1024);
+		}
+
+		@Override
+		public String toString() {
+			return "Checked " + getArchivesChecked() + " archives (" + getArchivesSkipped() + " skipped, " + failures.size() + " failures) in " + getMillis() + "ms, " + String.format("%.0f", getArchivesPerSecond()) + " archives/s, " + String.format("%.1f", getMegabytesPerSecond()) + " MB/s";
+		}
+	}
+
+	private final Store store;
+
+	public StoreVerifier(Store store) {
+		this.store = store;
+	}
+
+	public Report verify() throws IOException {
+		return verify(Collections.emptyMap(), null);
+	}
+
+	/*
+	 * only rechecks archives whose revision or crc differs from the manifest
+	 * saved by the last run, then saves the archives that passed back to it
+	 */
+	public Report verify(Path manifest) throws IOException {
+		return verify(Files.exists(manifest) ? readManifest(manifest) : Collections.emptyMap(), manifest);
+	}
+
+	private Report verify(Map<Integer, long[]> verified, Path manifest) throws IOException {
+		Report report = new Report();
+		Index[] indexes = store.getIndices();
+		Map<Integer, long[]> passed = new HashMap<>();
+		long start = System.nanoTime();
+		try (FileChannel dataChannel = FileChannel.open(Paths.get(store.getPath() + "main_file_cache.dat2"), StandardOpenOption.READ)) {
+			MappedCacheFile data = new MappedCacheFile(dataChannel);
+			for (int indexId = 0; indexId < indexes.length; indexId++) {
+				Index index = indexes[indexId];
+				if (index == null)
+					continue;
+				try (FileChannel indexChannel = FileChannel.open(Paths.get(store.getPath() + "main_file_cache.idx" + indexId), StandardOpenOption.READ)) {
+					passed.put(indexId, verifyIndex(indexId, index.getTable(), new MappedCacheFile(indexChannel), data, verified.get(indexId), report));
+				}
+			}
+		}
+		report.nanos = System.nanoTime() - start;
+		if (manifest != null)
+			writeManifest(manifest, passed);
+		Logger.log("StoreVerifier", report);
+		return report;
+	}
+
+	/*
+	 * returns the archives that passed as revision << 32 | crc indexed by
+	 * archive id, 0 where an archive failed or does not exist
+	 */
+	private long[] verifyIndex(int indexId, ReferenceTable table, MappedCacheFile index, MappedCacheFile data, long[] verified, Report report) {
+		ArchiveReference[] archives = table.getArchives();
+		long[] passed = new long[archives.length];
+		IntStream.of(table.getValidArchiveIds()).parallel().forEach(archiveId -> {
+			ArchiveReference reference = archives[archiveId];
+			long stamp = ((long) reference.getRevision() << 32) | (reference.getCRC() & 0xffffffffL);
+			if (verified != null && archiveId < verified.length && verified[archiveId] == stamp && stamp != 0) {
+				passed[archiveId] = stamp;
+				report.skipped.incrementAndGet();
+				return;
+			}
+			if (verifyArchive(indexId, archiveId, reference, table.usesWhirpool(), index, data, report))
+				passed[archiveId] = stamp;
+			report.checked.incrementAndGet();
+		});
+		return passed;
+	}
+
+	private boolean verifyArchive(int indexId, int archiveId, ArchiveReference reference, boolean usesWhirlpool, MappedCacheFile index, MappedCacheFile data, Report report) {
+		byte[] archive;
+		try {
+			archive = readSectors(indexId, archiveId, index, data);
+		} catch (IllegalStateException e) {
+			report.failures.add(new Failure(indexId, archiveId, Check.SECTOR_CHAIN, e.getMessage()));
+			return false;
+		}
+		report.bytes.addAndGet(archive.length);
+		if (archive.length < 5) {
+			report.failures.add(new Failure(indexId, archiveId, Check.DECOMPRESSION, "container of " + archive.length + " bytes"));
+			return false;
+		}
+		int compression = archive[0] & 0xff;
+		int length = ((archive[1] & 0xff) << 24) | ((archive[2] & 0xff) << 16) | ((archive[3] & 0xff) << 8) | (archive[4] & 0xff);
+		int containerLength = length + (compression == Constants.NO_COMPRESSION ? 5 : 9);
+		if (length < 0 || containerLength > archive.length) {
+			report.failures.add(new Failure(indexId, archiveId, Check.DECOMPRESSION, "container length " + length + " past end of " + archive.length + " bytes"));
+			return false;
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(archive, 0, containerLength);
+		if ((int) crc.getValue() != reference.getCRC()) {
+			report.failures.add(new Failure(indexId, archiveId, Check.CRC, "expected " + reference.getCRC() + " found " + (int) crc.getValue()));
+			return false;
+		}
+		if (usesWhirlpool && reference.getWhirpool() != null && !Arrays.equals(reference.getWhirpool(), Whirlpool.getWhirlpool(archive, 0, containerLength))) {
+			report.failures.add(new Failure(indexId, archiveId, Check.WHIRLPOOL, "digest mismatch"));
+			return false;
+		}
+
+		/*
+		 * map landscapes are xtea encrypted and can't be inflated without keys
+		 */
+		if (compression == Constants.NO_COMPRESSION || indexId == IndexType.MAPS.ordinal())
+			return true;
+		int decompressedLength = ((archive[5] & 0xff) << 24) | ((archive[6] & 0xff) << 16) | ((archive[7] & 0xff) << 8) | (archive[8] & 0xff);
+		int read = -1;
+		try {
+			if (compression == Constants.GZIP_COMPRESSION)
+				read = CompressionUtils.gunzip(archive, 9, length, new byte[decompressedLength]);
+			else
+				read = CompressionUtils.bunzip2(archive, 9, length, new byte[decompressedLength]);
+		} catch (RuntimeException e) {
+		}
+		if (read != decompressedLength) {
+			report.failures.add(new Failure(indexId, archiveId, Check.DECOMPRESSION, "expected " + decompressedLength + " bytes found " + (read == -1 ? "a corrupt stream" : read)));
+			return false;
+		}
+		return true;
+	}
+
+	private static byte[] readSectors(int indexId, int archiveId, MappedCacheFile index, MappedCacheFile data) {
+		long indexPosition = (long) archiveId * IDX_BLOCK_LEN;
+		if (indexPosition + IDX_BLOCK_LEN > index.size())
+			throw new IllegalStateException("no index entry");
+		int size = index.getMediumInt(indexPosition);
+		int block = index.getMediumInt(indexPosition + 3);
+		long blocksCount = data.size() / TOTAL_BLOCK_LEN;
+		if (block <= 0 || block > blocksCount)
+			throw new IllegalStateException("first sector " + block + " out of range");
+		boolean expanded = archiveId > 0xffff;
+		int headerLen = expanded ? 10 : 8;
+		int blockLen = TOTAL_BLOCK_LEN - headerLen;
+		byte[] archive = new byte[size];
+		int offset = 0;
+		int chunk = 0;
+		while (offset < size) {
+			if (block == 0)
+				throw new IllegalStateException("chain ends at chunk " + chunk + " with " + (size - offset) + " bytes left");
+			int blockSize = Math.min(size - offset, blockLen);
+			long position = (long) block * TOTAL_BLOCK_LEN;
+			if (position + headerLen + blockSize > data.size())
+				throw new IllegalStateException("sector " + block + " past end of data file");
+			int currentFile = expanded ? data.getInt(position) : data.getUnsignedShort(position);
+			position += expanded ? 4 : 2;
+			int currentChunk = data.getUnsignedShort(position);
+			int nextBlock = data.getMediumInt(position + 2);
+			int currentIndex = data.getUnsignedByte(position + 5);
+			if (currentFile != archiveId && !expanded)
+				throw new IllegalStateException("sector " + block + " belongs to archive " + currentFile);
+			if (currentChunk != chunk)
+				throw new IllegalStateException("sector " + block + " is chunk " + currentChunk + " expected " + chunk);
+			if (currentIndex != indexId)
+				throw new IllegalStateException("sector " + block + " belongs to index " + currentIndex);
+			if (nextBlock < 0 || nextBlock > blocksCount)
+				throw new IllegalStateException("sector " + block + " links to " + nextBlock + " out of range");
+			data.get(position + 6, archive, offset, blockSize);
+			offset += blockSize;
+			block = nextBlock;
+			chunk++;
+		}
+		return archive;
+	}
+
+	private static Map<Integer, long[]> readManifest(Path manifest) throws IOException {
+		Map<Integer, long[]> verified = new HashMap<>();
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(manifest))) {
+			int indexes = in.readUnsignedByte();
+			for (int i = 0; i < indexes; i++) {
+				int indexId = in.readUnsignedByte();
+				long[] archives = new long[in.readInt()];
+				for (int archiveId = 0; archiveId < archives.length; archiveId++)
+					archives[archiveId] = in.readLong();
+				verified.put(indexId, archives);
+			}
+		}
+		return verified;
+	}
+
+	private static void writeManifest(Path manifest, Map<Integer, long[]> passed) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(manifest))) {
+			out.writeByte(passed.size());
+			for (Map.Entry<Integer, long[]> entry : passed.entrySet()) {
+				out.writeByte(entry.getKey());
+				out.writeInt(entry.getValue().length);
+				for (long stamp : entry.getValue())
+					out.writeLong(stamp);
+			}
+		}
+	}
+}
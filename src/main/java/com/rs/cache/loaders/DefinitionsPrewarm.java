@@ -0,0 +1,116 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.loaders;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+
+import com.rs.cache.ArchiveType;
+import com.rs.cache.Cache;
+import com.rs.cache.Index;
+import com.rs.cache.IndexType;
+import com.rs.lib.util.Logger;
+
+/*
+ * Decodes whole definition indexes up front, one archive per task, into dense
+ * arrays the loaders then read from without locking.
+ */
+public final class DefinitionsPrewarm {
+
+	/*
+	 * false keeps every loader decoding lazily on first lookup
+	 */
+	public static boolean EAGER = false;
+
+	private static final Map<String, Long> TIMINGS = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	public interface FileDecoder<T> {
+		T decode(int id, byte[] data);
+	}
+
+	public static void init() {
+		if (EAGER)
+			prewarm();
+	}
+
+	public static void prewarm() {
+		long start = System.nanoTime();
+		prewarm("items", ItemDefinitions::prewarm);
+		prewarm("npcs", NPCDefinitions::prewarm);
+		prewarm("objects", ObjectDefinitions::prewarm);
+		prewarm("enums", EnumDefinitions::prewarm);
+		prewarm("structs", StructDefinitions::prewarm);
+		prewarm("varbits", VarBitDefinitions::prewarm);
+		Logger.log("DefinitionsPrewarm", "Prewarmed all definitions in " + ((System.nanoTime() - start) / 1000000L) + "ms");
+	}
+
+	private static void prewarm(String type, IntSupplier loader) {
+		long start = System.nanoTime();
+		int count = loader.getAsInt();
+		long time = (System.nanoTime() - start) / 1000000L;
+		TIMINGS.put(type, time);
+		Logger.log("DefinitionsPrewarm", "Prewarmed " + count + " " + type + " in " + time + "ms");
+	}
+
+	/*
+	 * milliseconds taken per definition type by the last prewarm
+	 */
+	public static Map<String, Long> getTimings() {
+		synchronized (TIMINGS) {
+			return new LinkedHashMap<>(TIMINGS);
+		}
+	}
+
+	static int getDefinitionsSize(IndexType indexType, ArchiveType type) {
+		return Cache.STORE.getManifest().getDefinitionsSize(indexType, type);
+	}
+
+	static <T> T[] decodeIndex(IndexType indexType, ArchiveType type, T[] defs, FileDecoder<T> decoder) {
+		Index index = Cache.STORE.getIndex(indexType);
+		int filesPerContainer = type.filesPerContainer();
+		IntStream.of(index.getTable().getValidArchiveIds()).parallel().forEach(archiveId -> {
+			byte[][] files = index.getFiles(archiveId);
+			if (files == null)
+				return;
+			int baseId = archiveId * filesPerContainer;
+			for (int fileId = 0; fileId < files.length; fileId++) {
+				if (files[fileId] != null && baseId + fileId < defs.length)
+					defs[baseId + fileId] = decoder.decode(baseId + fileId, files[fileId]);
+			}
+		});
+		return decodeMissing(defs, decoder);
+	}
+
+	static <T> T[] decodeArchive(IndexType indexType, int archiveId, T[] defs, FileDecoder<T> decoder) {
+		byte[][] files = Cache.STORE.getIndex(indexType).getFiles(archiveId);
+		if (files != null)
+			IntStream.range(0, Math.min(files.length, defs.length)).parallel().filter(id -> files[id] != null).forEach(id -> defs[id] = decoder.decode(id, files[id]));
+		return decodeMissing(defs, decoder);
+	}
+
+	private static <T> T[] decodeMissing(T[] defs, FileDecoder<T> decoder) {
+		IntStream.range(0, defs.length).parallel().filter(id -> defs[id] == null).forEach(id -> defs[id] = decoder.decode(id, null));
+		return defs;
+	}
+
+	private DefinitionsPrewarm() {
+
+	}
+}
@@ -40,9 +40,10 @@ public final class EnumDefinitions {
 	public char valueTypeChar;
 	private String defaultStringValue;
 	private int defaultIntValue;
-	private HashMap<Long, Object> values;
+	private KeyedValues values;
 
 	private static final ConcurrentHashMap<Integer, EnumDefinitions> ENUMS_CACHE = new ConcurrentHashMap<Integer, EnumDefinitions>();
+	private static volatile EnumDefinitions[] PREWARMED;
 	
 	
 	public static void main(String[] args) throws IOException {
@@ -67,16 +68,29 @@ public final class EnumDefinitions {
 	}
 
 	public static final EnumDefinitions getEnum(int enumId) {
+		EnumDefinitions[] prewarmed = PREWARMED;
+		if (prewarmed != null && enumId >= 0 && enumId < prewarmed.length)
+			return prewarmed[enumId];
 		EnumDefinitions script = ENUMS_CACHE.get(enumId);
 		if (script != null)
 			return script;
-		byte[] data = Cache.STORE.getIndex(IndexType.ENUMS).getFile(ArchiveType.ENUMS.archiveId(enumId), ArchiveType.ENUMS.fileId(enumId));
-		script = new EnumDefinitions();
+		script = decode(enumId, Cache.STORE.getIndex(IndexType.ENUMS).getFile(ArchiveType.ENUMS.archiveId(enumId), ArchiveType.ENUMS.fileId(enumId)));
+		ENUMS_CACHE.put(enumId, script);
+		return script;
+
+	}
+
+	private static EnumDefinitions decode(int enumId, byte[] data) {
+		EnumDefinitions script = new EnumDefinitions();
 		if (data != null)
 			script.readValueLoop(new InputStream(data));
-		ENUMS_CACHE.put(enumId, script);
 		return script;
+	}
 
+	static int prewarm() {
+		EnumDefinitions[] defs = new EnumDefinitions[DefinitionsPrewarm.getDefinitionsSize(IndexType.ENUMS, ArchiveType.ENUMS)];
+		PREWARMED = DefinitionsPrewarm.decodeIndex(IndexType.ENUMS, ArchiveType.ENUMS, defs, EnumDefinitions::decode);
+		return defs.length;
 	}
 
 	public int getDefaultIntValue() {
@@ -88,7 +102,9 @@ public final class EnumDefinitions {
 	}
 
 	public HashMap<Long, Object> getValues() {
-		return values;
+		if (values == null)
+			return null;
+		return values.asMap();
 	}
 
 	public Object getValue(long key) {
@@ -98,11 +114,9 @@ public final class EnumDefinitions {
 	}
 
 	public long getKeyForValue(Object value) {
-		for (Long key : values.keySet()) {
-			if (values.get(key).equals(value))
-				return key;
-		}
-		return -1;
+		if (values == null)
+			return -1;
+		return values.getKeyForValue(value);
 	}
 
 	public int getSize() {
@@ -114,49 +128,54 @@ public final class EnumDefinitions {
 	public int getIntValue(long key) {
 		if (values == null)
 			return defaultIntValue;
-		Object value = values.get(key);
-		if (value == null || !(value instanceof Integer))
-			return defaultIntValue;
-		return (Integer) value;
+		return values.getInt(key, defaultIntValue);
 	}
 
 	public int getKeyIndex(long key) {
 		if (values == null)
 			return -1;
-		int i = 0;
-		for (long k : values.keySet()) {
-			if (k == key)
-				return i;
-			i++;
-		}
-		return -1;
+		return values.indexOf(key);
+	}
+
+	public long getKeyAtIndex(int i) {
+		if (values == null)
+			return -1;
+		return values.getKey(i);
+	}
+
+	public Object getValueAtIndex(int i) {
+		if (values == null)
+			return null;
+		return values.get(i);
 	}
 
 	public int getIntValueAtIndex(int i) {
 		if (values == null)
 			return -1;
-		return (int) values.values().toArray()[i];
+		return values.getInt(i);
 	}
 
 	public String getStringValue(long key) {
 		if (values == null)
 			return defaultStringValue;
-		Object value = values.get(key);
-		if (value == null || !(value instanceof String))
-			return defaultStringValue;
-		return (String) value;
+		return values.getString(key, defaultStringValue);
 	}
 
 	private void readValueLoop(InputStream stream) {
+		KeyedValues.Builder builder = null;
 		for (;;) {
 			int opcode = stream.readUnsignedByte();
 			if (opcode == 0)
 				break;
-			readValues(stream, opcode);
+			if (builder == null && opcode >= 5 && opcode <= 8)
+				builder = new KeyedValues.Builder();
+			readValues(stream, opcode, builder);
 		}
+		if (builder != null)
+			values = builder.build();
 	}
 
-	private void readValues(InputStream stream, int opcode) {
+	private void readValues(InputStream stream, int opcode, KeyedValues.Builder builder) {
 		if (opcode == 1) {
 			keyTypeChar = Utils.cp1252ToChar((byte) stream.readByte());
 			keyType = CS2Type.forJagexDesc(keyTypeChar);
@@ -170,12 +189,12 @@ public final class EnumDefinitions {
 		else if (opcode == 5 || opcode == 6 || opcode == 7 || opcode == 8) {
 			int count = stream.readUnsignedShort();
 			int loop = opcode == 7 || opcode == 8 ? stream.readUnsignedShort() : count;
-			if (values == null)
-				values = new HashMap<Long, Object>(Utils.getHashMapSize(count));
 			for (int i = 0; i < loop; i++) {
 				int key = opcode == 7 || opcode == 8 ? stream.readUnsignedShort() : stream.readInt();
-				Object value = opcode == 5 || opcode == 7 ? stream.readString() : stream.readInt();
-				values.put((long) key, value);
+				if (opcode == 5 || opcode == 7)
+					builder.putString(key, stream.readString());
+				else
+					builder.putInt(key, stream.readInt());
 			}
 		}
 	}
@@ -243,14 +262,14 @@ public final class EnumDefinitions {
 	@Override
 	public String toString() {
 		StringBuilder s = new StringBuilder();
-		if (getValues() == null)
+		if (values == null)
 			return "null";
 		s.append("<"+keyType+", "+valueType+"> - " + getDefaultStringValue() + " - " + getDefaultIntValue() + " { ");
 		s.append("\r\n");
-		for (Long l : getValues().keySet()) {
-			s.append(keyToType(l));
+		for (int i = 0; i < values.size(); i++) {
+			s.append(keyToType(values.getKey(i)));
 			s.append(" = ");
-			s.append(valToType(getValues().get(l)));
+			s.append(valToType(values.get(i)));
 			s.append("\r\n");
 		}
 		s.append("} \r\n");
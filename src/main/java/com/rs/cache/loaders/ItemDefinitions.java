@@ -21,6 +21,10 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 import com.rs.cache.ArchiveType;
 import com.rs.cache.Cache;
@@ -34,7 +38,8 @@ import com.rs.lib.util.Utils;
 
 public final class ItemDefinitions {
 
-	private static final HashMap<Integer, ItemDefinitions> ITEM_DEFINITIONS = new HashMap<>();
+	private static final ConcurrentHashMap<Integer, ItemDefinitions> ITEM_DEFINITIONS = new ConcurrentHashMap<>();
+	private static volatile ItemDefinitions[] PREWARMED;
 	private static final HashMap<Integer, Integer> EQUIP_IDS = new HashMap<Integer, Integer>();
 
 	public int id;
@@ -112,7 +117,7 @@ public final class ItemDefinitions {
 	public boolean noted;
 	public boolean lended;
 
-	private HashMap<Integer, Object> clientScriptData;
+	KeyedValues clientScriptData;
 	private HashMap<Integer, Integer> itemRequiriments;
 
 	/**
@@ -132,29 +137,19 @@ public final class ItemDefinitions {
 	public int getItemCategory() {
 		if (clientScriptData == null)
 			return -1;
-		Object protectedOnDeath = clientScriptData.get(2195);
-		if (protectedOnDeath != null && protectedOnDeath instanceof Integer)
-			return (Integer) protectedOnDeath;
-		return -1;
+		return clientScriptData.getInt(2195, -1);
 	}
 
 	public int getIdk() {
 		if (clientScriptData == null)
 			return -1;
-		Object protectedOnDeath = clientScriptData.get(1397);
-		if (protectedOnDeath != null && protectedOnDeath instanceof Integer)
-			return (Integer) protectedOnDeath;
-		return -1;
+		return clientScriptData.getInt(1397, -1);
 	}
 	
 	public static void mapEquipIds() {
-		int equipId = 0;
-		for (int itemId = 0; itemId < Utils.getItemDefinitionsSize(); itemId++) {
-			ItemDefinitions def = ItemDefinitions.getDefs(itemId);
-			if (def.getMaleWornModelId1() >= 0 || def.getFemaleWornModelId1() >= 0) {
-				EQUIP_IDS.put(itemId, equipId++);
-			}
-		}
+		int[] equippable = ReverseLookups.get().getEquippableItems();
+		for (int equipId = 0; equipId < equippable.length; equipId++)
+			EQUIP_IDS.put(equippable[equipId], equipId);
 	}
 	
 	public int getEquipId() {
@@ -177,6 +172,9 @@ public final class ItemDefinitions {
 	}
 
 	public static final ItemDefinitions getItemDefinitions(int itemId, boolean loadTemplates) {
+		ItemDefinitions[] prewarmed = PREWARMED;
+		if (prewarmed != null && itemId >= 0 && itemId < prewarmed.length)
+			return prewarmed[itemId];
 		ItemDefinitions def = ITEM_DEFINITIONS.get(itemId);
 		if (def == null) {
 			def = new ItemDefinitions(itemId, loadTemplates);
@@ -186,8 +184,30 @@ public final class ItemDefinitions {
 	}
 
 	public static final void clearItemsDefinitions() {
+		PREWARMED = null;
 		ITEM_DEFINITIONS.clear();
 	}
+
+	/*
+	 * templated items copy from the untemplated definitions decoded in the
+	 * first pass so neither pass touches the lazy cache
+	 */
+	static int prewarm() {
+		ItemDefinitions[] defs = new ItemDefinitions[DefinitionsPrewarm.getDefinitionsSize(IndexType.ITEMS, ArchiveType.ITEMS)];
+		byte[][] templated = new byte[defs.length][];
+		DefinitionsPrewarm.decodeIndex(IndexType.ITEMS, ArchiveType.ITEMS, defs, (id, data) -> {
+			ItemDefinitions def = new ItemDefinitions(id, data, null);
+			if (def.certTemplateId != -1 || def.lendTemplateId != -1 || def.bindTemplateId != -1)
+				templated[id] = data;
+			return def;
+		});
+		ItemDefinitions[] untemplated = defs.clone();
+		IntStream.range(0, defs.length).parallel().filter(id -> templated[id] != null).forEach(id -> {
+			defs[id] = new ItemDefinitions(id, templated[id], templateId -> templateId >= 0 && templateId < untemplated.length ? untemplated[templateId] : getDefs(templateId));
+		});
+		PREWARMED = defs;
+		return defs.length;
+	}
 	
 	public ItemDefinitions(int id) {
 		this(Cache.STORE, id, true);
@@ -198,9 +218,13 @@ public final class ItemDefinitions {
 	}
 
 	public ItemDefinitions(Store store, int id, boolean loadTemplates) {
+		this(id, store.getIndex(IndexType.ITEMS).getFile(ArchiveType.ITEMS.archiveId(id), ArchiveType.ITEMS.fileId(id)), loadTemplates ? ItemDefinitions::getDefs : null);
+	}
+
+	private ItemDefinitions(int id, byte[] data, IntFunction<ItemDefinitions> templates) {
 		this.id = id;
 		setDefaultOptions();
-		loadItemDefinitions(store, loadTemplates);
+		loadItemDefinitions(data, templates);
 		switch (id) {
 		case 25629:
 			this.name = "Iron";
@@ -257,19 +281,18 @@ public final class ItemDefinitions {
 		return loaded;
 	}
 
-	private final void loadItemDefinitions(Store store, boolean loadTemplates) {
-		byte[] data = store.getIndex(IndexType.ITEMS).getFile(ArchiveType.ITEMS.archiveId(id), ArchiveType.ITEMS.fileId(id));
+	private final void loadItemDefinitions(byte[] data, IntFunction<ItemDefinitions> templates) {
 		if (data == null) {
 			return;
 		}
 		readOpcodeValues(new InputStream(data));
-		if (loadTemplates) {
+		if (templates != null) {
 			if (certTemplateId != -1)
-				toNote();
+				toNote(templates.apply(certId));
 			if (lendTemplateId != -1)
-				toLend();
+				toLend(templates.apply(lendId));
 			if (bindTemplateId != -1)
-				toBind();
+				toBind(templates.apply(bindId));
 		}
 		parseBonuses();
 		loaded = true;
@@ -318,47 +341,48 @@ public final class ItemDefinitions {
 	
 
 	public void setBonuses(int[] bonuses2) {
+		KeyedValues.Builder params = new KeyedValues.Builder(clientScriptData);
 		if (bonuses2[STAB_ATTACK] != 0 || bonuses[STAB_ATTACK] != bonuses2[STAB_ATTACK])
-			clientScriptData.put(0, bonuses2[STAB_ATTACK]);
+			params.putInt(0, bonuses2[STAB_ATTACK]);
 		if (bonuses2[SLASH_ATTACK] != 0 || bonuses[SLASH_ATTACK] != bonuses2[SLASH_ATTACK])
-			clientScriptData.put(1, bonuses2[SLASH_ATTACK]);
+			params.putInt(1, bonuses2[SLASH_ATTACK]);
 		if (bonuses2[CRUSH_ATTACK] != 0 || bonuses[CRUSH_ATTACK] != bonuses2[CRUSH_ATTACK])
-			clientScriptData.put(2, bonuses2[CRUSH_ATTACK]);
+			params.putInt(2, bonuses2[CRUSH_ATTACK]);
 		if (bonuses2[MAGIC_ATTACK] != 0 || bonuses[MAGIC_ATTACK] != bonuses2[MAGIC_ATTACK])
-			clientScriptData.put(3, bonuses2[MAGIC_ATTACK]);
+			params.putInt(3, bonuses2[MAGIC_ATTACK]);
 		if (bonuses2[RANGE_ATTACK] != 0 || bonuses[RANGE_ATTACK] != bonuses2[RANGE_ATTACK])
-			clientScriptData.put(4, bonuses2[RANGE_ATTACK]);
+			params.putInt(4, bonuses2[RANGE_ATTACK]);
 		if (bonuses2[STAB_DEF] != 0 || bonuses[STAB_DEF] != bonuses2[STAB_DEF])
-			clientScriptData.put(5, bonuses2[STAB_DEF]);
+			params.putInt(5, bonuses2[STAB_DEF]);
 		if (bonuses2[SLASH_DEF] != 0 || bonuses[SLASH_DEF] != bonuses2[SLASH_DEF])
-			clientScriptData.put(6, bonuses2[SLASH_DEF]);
+			params.putInt(6, bonuses2[SLASH_DEF]);
 		if (bonuses2[CRUSH_DEF] != 0 || bonuses[CRUSH_DEF] != bonuses2[CRUSH_DEF])
-			clientScriptData.put(7, bonuses2[CRUSH_DEF]);
+			params.putInt(7, bonuses2[CRUSH_DEF]);
 		if (bonuses2[MAGIC_DEF] != 0 || bonuses[MAGIC_DEF] != bonuses2[MAGIC_DEF])
-			clientScriptData.put(8, bonuses2[MAGIC_DEF]);
+			params.putInt(8, bonuses2[MAGIC_DEF]);
 		if (bonuses2[RANGE_DEF] != 0 || bonuses[RANGE_DEF] != bonuses2[RANGE_DEF])
-			clientScriptData.put(9, bonuses2[RANGE_DEF]);
+			params.putInt(9, bonuses2[RANGE_DEF]);
 		if (bonuses2[SUMMONING_DEF] != 0 || bonuses[SUMMONING_DEF] != bonuses2[SUMMONING_DEF])
-			clientScriptData.put(417, bonuses2[SUMMONING_DEF]);
+			params.putInt(417, bonuses2[SUMMONING_DEF]);
 		if (bonuses2[PRAYER_BONUS] != 0 || bonuses[PRAYER_BONUS] != bonuses2[PRAYER_BONUS])
-			clientScriptData.put(11, bonuses2[PRAYER_BONUS]);
+			params.putInt(11, bonuses2[PRAYER_BONUS]);
 		if (bonuses2[ABSORVE_MELEE_BONUS] != 0 || bonuses[ABSORVE_MELEE_BONUS] != bonuses2[ABSORVE_MELEE_BONUS])
-			clientScriptData.put(967, bonuses2[ABSORVE_MELEE_BONUS]);
+			params.putInt(967, bonuses2[ABSORVE_MELEE_BONUS]);
 		if (bonuses2[ABSORVE_RANGE_BONUS] != 0 || bonuses[ABSORVE_RANGE_BONUS] != bonuses2[ABSORVE_RANGE_BONUS])
-			clientScriptData.put(968, bonuses2[ABSORVE_RANGE_BONUS]);
+			params.putInt(968, bonuses2[ABSORVE_RANGE_BONUS]);
 		if (bonuses2[ABSORVE_MAGE_BONUS] != 0 || bonuses[ABSORVE_MAGE_BONUS] != bonuses2[ABSORVE_MAGE_BONUS])
-			clientScriptData.put(969, bonuses2[ABSORVE_MAGE_BONUS]);
+			params.putInt(969, bonuses2[ABSORVE_MAGE_BONUS]);
 		if (bonuses2[STRENGTH_BONUS] != 0 || bonuses[STRENGTH_BONUS] != bonuses2[STRENGTH_BONUS])
-			clientScriptData.put(641, bonuses2[STRENGTH_BONUS] * 10);
+			params.putInt(641, bonuses2[STRENGTH_BONUS] * 10);
 		if (bonuses2[RANGED_STR_BONUS] != 0 || bonuses[RANGED_STR_BONUS] != bonuses2[RANGED_STR_BONUS])
-			clientScriptData.put(643, bonuses2[RANGED_STR_BONUS] * 10);
+			params.putInt(643, bonuses2[RANGED_STR_BONUS] * 10);
 		if (bonuses2[MAGIC_DAMAGE] != 0 || bonuses[MAGIC_DAMAGE] != bonuses2[MAGIC_DAMAGE])
-			clientScriptData.put(685, bonuses2[MAGIC_DAMAGE]);
+			params.putInt(685, bonuses2[MAGIC_DAMAGE]);
+		clientScriptData = params.build();
 	}
 
-	private void toNote() {
+	private void toNote(ItemDefinitions realItem) {
 		// ItemDefinitions noteItem; //certTemplateId
-		ItemDefinitions realItem = getDefs(certId);
 		membersOnly = realItem.membersOnly;
 		value = realItem.value;
 		name = realItem.name;
@@ -366,9 +390,8 @@ public final class ItemDefinitions {
 		noted = true;
 	}
 
-	private void toBind() {
+	private void toBind(ItemDefinitions realItem) {
 		// ItemDefinitions lendItem; //lendTemplateId
-		ItemDefinitions realItem = getDefs(bindId);
 		originalModelColors = realItem.originalModelColors;
 		maleEquip3 = realItem.maleEquip3;
 		femaleEquip3 = realItem.femaleEquip3;
@@ -391,9 +414,8 @@ public final class ItemDefinitions {
 		wearPos2 = realItem.wearPos2;
 	}
 
-	private void toLend() {
+	private void toLend(ItemDefinitions realItem) {
 		// ItemDefinitions lendItem; //lendTemplateId
-		ItemDefinitions realItem = getDefs(lendId);
 		originalModelColors = realItem.originalModelColors;
 		maleEquip3 = realItem.maleEquip3;
 		femaleEquip3 = realItem.femaleEquip3;
@@ -438,10 +460,7 @@ public final class ItemDefinitions {
 	public int getStageOnDeath() {
 		if (clientScriptData == null)
 			return 0;
-		Object protectedOnDeath = clientScriptData.get(1397);
-		if (protectedOnDeath != null && protectedOnDeath instanceof Integer)
-			return (Integer) protectedOnDeath;
-		return 0;
+		return clientScriptData.getInt(1397, 0);
 	}
 
 	public boolean containsOption(int i, String option) {
@@ -476,28 +495,19 @@ public final class ItemDefinitions {
 	public boolean hasSpecialBar() {
 		if (clientScriptData == null)
 			return false;
-		Object specialBar = clientScriptData.get(686);
-		if (specialBar != null && specialBar instanceof Integer)
-			return (Integer) specialBar == 1;
-		return false;
+		return clientScriptData.getInt(686, 0) == 1;
 	}
 
 	public int getRenderAnimId() {
 		if (clientScriptData == null)
 			return 1426;
-		Object animId = clientScriptData.get(644);
-		if (animId != null && animId instanceof Integer)
-			return (Integer) animId;
-		return 1426;
+		return clientScriptData.getInt(644, 1426);
 	}
 
 	public double getDungShopValueMultiplier() {
 		if (clientScriptData == null)
 			return 1;
-		Object value = clientScriptData.get(1046);
-		if (value != null && value instanceof Integer)
-			return ((Integer) value).doubleValue() / 100;
-		return 1;
+		return clientScriptData.getInt(1046, 100) / 100.0;
 	}
 
 	public int getModelZoom() {
@@ -515,10 +525,7 @@ public final class ItemDefinitions {
 	public int getQuestId() {
 		if (clientScriptData == null)
 			return -1;
-		Object questId = clientScriptData.get(861);
-		if (questId != null && questId instanceof Integer)
-			return (Integer) questId;
-		return -1;
+		return clientScriptData.getInt(861, -1);
 	}
 
 	public int getWieldQuestReq() {
@@ -530,13 +537,24 @@ public final class ItemDefinitions {
 	}
 	
 	public int getCS2Var(int defaultVal, int id) {
-		if (clientScriptData == null || clientScriptData.get(id) == null)
+		if (clientScriptData == null)
 			return defaultVal;
-		return (int) clientScriptData.get(id);
+		return clientScriptData.getInt(id, defaultVal);
 	}
 
 	public HashMap<Integer, Object> getClientScriptData() {
-		return clientScriptData;
+		if (clientScriptData == null)
+			return null;
+		return clientScriptData.toParamMap();
+	}
+
+	/*
+	 * replaces every param, for code that used to edit the map
+	 * getClientScriptData returned: copy, edit, then set it back
+	 */
+	@Deprecated
+	public void setClientScriptData(Map<Integer, Object> clientScriptData) {
+		this.clientScriptData = KeyedValues.fromParamMap(clientScriptData);
 	}
 
 	public HashMap<Integer, Integer> getWearingSkillRequiriments() {
@@ -545,15 +563,15 @@ public final class ItemDefinitions {
 		if (itemRequiriments == null) {
 			HashMap<Integer, Integer> skills = new HashMap<Integer, Integer>();
 			for (int i = 0; i < 10; i++) {
-				Integer skill = (Integer) clientScriptData.get(749 + (i * 2));
-				if (skill != null) {
-					Integer level = (Integer) clientScriptData.get(750 + (i * 2));
-					if (level != null)
+				int skill = clientScriptData.getInt(749 + (i * 2), -1);
+				if (skill != -1) {
+					int level = clientScriptData.getInt(750 + (i * 2), -1);
+					if (level != -1)
 						skills.put(skill, level);
 				}
 			}
-			Integer maxedSkill = (Integer) clientScriptData.get(277);
-			if (maxedSkill != null)
+			int maxedSkill = clientScriptData.getInt(277, -1);
+			if (maxedSkill != -1)
 				skills.put(maxedSkill, getId() == 19709 ? 120 : 99);
 			itemRequiriments = skills;
 			switch(getId()) {
@@ -928,20 +946,8 @@ public final class ItemDefinitions {
 			stream.writeShort(bindTemplateId);
 		}
 		
-		if (clientScriptData != null) {
-			stream.writeByte(249);
-			stream.writeByte(clientScriptData.size());
-			for (int key : clientScriptData.keySet()) {
-				Object value = clientScriptData.get(key);
-				stream.writeByte(value instanceof String ? 1 : 0);
-				stream.write24BitInt(key);
-				if (value instanceof String) {
-					stream.writeString((String) value);
-				} else {
-					stream.writeInt((Integer) value);
-				}
-			}
-		}
+		if (clientScriptData != null)
+			clientScriptData.writeParams(stream);
 		stream.writeByte(0);
 		
 		byte[] data = new byte[stream.getOffset()];
@@ -1153,15 +1159,7 @@ public final class ItemDefinitions {
 		} else if (165 == opcode) {// new
 			stackable = 2;
 		} else if (opcode == 249) {
-			int length = stream.readUnsignedByte();
-			if (clientScriptData == null)
-				clientScriptData = new HashMap<Integer, Object>(length);
-			for (int index = 0; index < length; index++) {
-				boolean stringInstance = stream.readUnsignedByte() == 1;
-				int key = stream.read24BitInt();
-				Object value = stringInstance ? stream.readString() : stream.readInt();
-				clientScriptData.put(key, value);
-			}
+			clientScriptData = KeyedValues.readParams(stream, clientScriptData);
 		} else {
 			System.err.println("MISSING OPCODE " + opcode + " FOR ITEM " + getId());
 			throw new RuntimeException("MISSING OPCODE " + opcode + " FOR ITEM " + getId());
@@ -1180,19 +1178,14 @@ public final class ItemDefinitions {
 	public boolean containsEquipmentOption(int optionId, String option) {
 		if (clientScriptData == null)
 			return false;
-		Object wearingOption = clientScriptData.get(528 + optionId);
-		if (wearingOption != null && wearingOption instanceof String)
-			return wearingOption.equals(option);
-		return false;
+		String wearingOption = clientScriptData.getString(528 + optionId, null);
+		return wearingOption != null && wearingOption.equals(option);
 	}
 
 	public String getEquipmentOption(int optionId) {
 		if (clientScriptData == null)
 			return "null";
-		Object wearingOption = clientScriptData.get(optionId == 4 ? 1211 : (528 + optionId));
-		if (wearingOption != null && wearingOption instanceof String)
-			return (String) wearingOption;
-		return "null";
+		return clientScriptData.getString(optionId == 4 ? 1211 : (528 + optionId), "null");
 	}
 
 	public String getInventoryOption(int optionId) {
@@ -1306,16 +1299,16 @@ public final class ItemDefinitions {
 		List<Item> items = new ArrayList<Item>();
 		int requiredId = -1;
 		int requiredAmount = -1;
-		for (int key : clientScriptData.keySet()) {
-			Object value = clientScriptData.get(key);
-			if (value instanceof String) {
+		for (int i = 0; i < clientScriptData.size(); i++) {
+			if (clientScriptData.isString(i)) {
 				continue;
 			}
+			int key = clientScriptData.getKey(i);
 			if (key >= 536 && key <= 770) {
 				if (key % 2 == 0) {
-					requiredId = (Integer) value;
+					requiredId = clientScriptData.getInt(i);
 				} else {
-					requiredAmount = (Integer) value;
+					requiredAmount = clientScriptData.getInt(i);
 				}
 				if (requiredId != -1 && requiredAmount != -1) {
 					if (infusingScroll) {
@@ -1345,16 +1338,16 @@ public final class ItemDefinitions {
 		HashMap<Integer, Integer> items = new HashMap<Integer, Integer>();
 		int requiredId = -1;
 		int requiredAmount = -1;
-		for (int key : clientScriptData.keySet()) {
-			Object value = clientScriptData.get(key);
-			if (value instanceof String) {
+		for (int i = 0; i < clientScriptData.size(); i++) {
+			if (clientScriptData.isString(i)) {
 				continue;
 			}
+			int key = clientScriptData.getKey(i);
 			if (key >= 538 && key <= 770) {
 				if (key % 2 == 0) {
-					requiredId = (Integer) value;
+					requiredId = clientScriptData.getInt(i);
 				} else {
-					requiredAmount = (Integer) value;
+					requiredAmount = clientScriptData.getInt(i);
 				}
 				if (requiredId != -1 && requiredAmount != -1) {
 					items.put(requiredAmount, requiredId);
@@ -0,0 +1,256 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.loaders;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+
+/*
+ * Int keyed enum, struct and definition param values in key order. Int values live in a plain
+ * int array, strings in a parallel table that stays null until a string is
+ * added, so int lookups never box.
+ */
+final class KeyedValues {
+
+	private final int[] keys;
+	private final int[] intValues;
+	private final String[] stringValues;
+	private volatile HashMap<Object, Long> valueKeys;
+
+	private KeyedValues(int[] keys, int[] intValues, String[] stringValues) {
+		this.keys = keys;
+		this.intValues = intValues;
+		this.stringValues = stringValues;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	int indexOf(long key) {
+		if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE)
+			return -1;
+		int index = Arrays.binarySearch(keys, (int) key);
+		return index < 0 ? -1 : index;
+	}
+
+	int getKey(int index) {
+		return keys[index];
+	}
+
+	boolean isString(int index) {
+		return stringValues != null && stringValues[index] != null;
+	}
+
+	int getInt(int index) {
+		return intValues[index];
+	}
+
+	String getString(int index) {
+		return stringValues == null ? null : stringValues[index];
+	}
+
+	Object get(int index) {
+		return isString(index) ? stringValues[index] : (Object) intValues[index];
+	}
+
+	Object get(long key) {
+		int index = indexOf(key);
+		return index == -1 ? null : get(index);
+	}
+
+	int getInt(long key, int defaultValue) {
+		int index = indexOf(key);
+		if (index == -1 || isString(index))
+			return defaultValue;
+		return intValues[index];
+	}
+
+	String getString(long key, String defaultValue) {
+		int index = indexOf(key);
+		if (index == -1 || !isString(index))
+			return defaultValue;
+		return stringValues[index];
+	}
+
+	/*
+	 * lowest key holding value or -1
+	 */
+	long getKeyForValue(Object value) {
+		HashMap<Object, Long> inverse = valueKeys;
+		if (inverse == null) {
+			inverse = new HashMap<Object, Long>(keys.length * 2);
+			for (int i = keys.length - 1; i >= 0; i--)
+				inverse.put(get(i), (long) keys[i]);
+			valueKeys = inverse;
+		}
+		Long key = inverse.get(value);
+		return key == null ? -1 : key;
+	}
+
+	/*
+	 * toParamMap keyed by long, for enum and struct values
+	 */
+	LinkedHashMap<Long, Object> asMap() {
+		LinkedHashMap<Long, Object> values = new LinkedHashMap<Long, Object>(keys.length * 2);
+		for (int i = 0; i < keys.length; i++)
+			values.put((long) keys[i], get(i));
+		return values;
+	}
+
+	/*
+	 * opcode 249 param block, merged over existing when a definition has more
+	 * than one
+	 */
+	static KeyedValues readParams(InputStream stream, KeyedValues existing) {
+		Builder builder = new Builder(existing);
+		int length = stream.readUnsignedByte();
+		for (int index = 0; index < length; index++) {
+			boolean stringInstance = stream.readUnsignedByte() == 1;
+			int key = stream.read24BitInt();
+			if (stringInstance)
+				builder.putString(key, stream.readString());
+			else
+				builder.putInt(key, stream.readInt());
+		}
+		return builder.build();
+	}
+
+	void writeParams(OutputStream stream) {
+		stream.writeByte(249);
+		stream.writeByte(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			stream.writeByte(isString(i) ? 1 : 0);
+			stream.write24BitInt(keys[i]);
+			if (isString(i))
+				stream.writeString(stringValues[i]);
+			else
+				stream.writeInt(intValues[i]);
+		}
+	}
+
+	/*
+	 * boxed copy in key order for callers of the old map api, changes to it
+	 * are not written back. The typed getters read without boxing.
+	 */
+	HashMap<Integer, Object> toParamMap() {
+		HashMap<Integer, Object> params = new LinkedHashMap<Integer, Object>(keys.length * 2);
+		for (int i = 0; i < keys.length; i++)
+			params.put(keys[i], get(i));
+		return params;
+	}
+
+	/*
+	 * rebuilds the store from a boxed param map, only Integer and String
+	 * values are allowed and null values are left out
+	 */
+	static KeyedValues fromParamMap(Map<Integer, Object> params) {
+		if (params == null)
+			return null;
+		Builder builder = new Builder();
+		for (Map.Entry<Integer, Object> entry : params.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof Integer intValue)
+				builder.putInt(entry.getKey(), intValue);
+			else if (value instanceof String stringValue)
+				builder.putString(entry.getKey(), stringValue);
+			else if (value != null)
+				throw new IllegalArgumentException("Unsupported param value " + value.getClass().getName() + " for key " + entry.getKey() + ".");
+		}
+		return builder.build();
+	}
+
+	static final class Builder {
+
+		private int[] keys = new int[16];
+		private int[] intValues = new int[16];
+		private String[] stringValues;
+		private int size;
+
+		Builder() {
+
+		}
+
+		Builder(KeyedValues from) {
+			if (from == null)
+				return;
+			for (int i = 0; i < from.size(); i++) {
+				if (from.isString(i))
+					putString(from.keys[i], from.stringValues[i]);
+				else
+					putInt(from.keys[i], from.intValues[i]);
+			}
+		}
+
+		void putInt(int key, int value) {
+			ensureCapacity();
+			keys[size] = key;
+			intValues[size++] = value;
+		}
+
+		void putString(int key, String value) {
+			ensureCapacity();
+			if (stringValues == null)
+				stringValues = new String[keys.length];
+			keys[size] = key;
+			stringValues[size++] = value;
+		}
+
+		private void ensureCapacity() {
+			if (size < keys.length)
+				return;
+			keys = Arrays.copyOf(keys, size * 2);
+			intValues = Arrays.copyOf(intValues, size * 2);
+			if (stringValues != null)
+				stringValues = Arrays.copyOf(stringValues, size * 2);
+		}
+
+		/*
+		 * sorts by key, a key put twice keeps its last value like map.put did
+		 */
+		KeyedValues build() {
+			long[] order = new long[size];
+			for (int i = 0; i < size; i++)
+				order[i] = ((long) keys[i] << 32) | i;
+			Arrays.sort(order);
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (i + 1 == size || (int) (order[i + 1] >> 32) != (int) (order[i] >> 32))
+					order[count++] = order[i];
+			}
+			int[] sortedKeys = new int[count];
+			int[] sortedInts = new int[count];
+			String[] sortedStrings = null;
+			for (int i = 0; i < count; i++) {
+				int from = (int) order[i];
+				sortedKeys[i] = keys[from];
+				sortedInts[i] = intValues[from];
+				if (stringValues != null && stringValues[from] != null) {
+					if (sortedStrings == null)
+						sortedStrings = new String[count];
+					sortedStrings[i] = stringValues[from];
+				}
+			}
+			return new KeyedValues(sortedKeys, sortedInts, sortedStrings);
+		}
+	}
+}
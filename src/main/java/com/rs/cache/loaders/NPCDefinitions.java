@@ -20,10 +20,9 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.rs.cache.ArchiveType;
@@ -39,9 +38,10 @@ import com.rs.lib.util.Utils;
 public final class NPCDefinitions {
 	
 	private static final ConcurrentHashMap<Integer, NPCDefinitions> MAP = new ConcurrentHashMap<Integer, NPCDefinitions>();
+	private static volatile NPCDefinitions[] PREWARMED;
 
 	public int id;
-	public HashMap<Integer, Object> parameters;
+	KeyedValues parameters;
 	public int anInt4856;
 	public String[] options = new String[5];
 	public String[] membersOptions = new String[5];
@@ -164,41 +164,54 @@ public final class NPCDefinitions {
 	}
 
 	public static final NPCDefinitions getDefs(int id) {
+		NPCDefinitions[] prewarmed = PREWARMED;
+		if (prewarmed != null && id >= 0 && id < prewarmed.length)
+			return prewarmed[id];
 		NPCDefinitions def = MAP.get(id);
 		if (def == null) {
-			def = new NPCDefinitions(id);
-			def.setEmptyModelIds();
-			byte[] data = Cache.STORE.getIndex(IndexType.NPCS).getFile(ArchiveType.NPCS.archiveId(id), ArchiveType.NPCS.fileId(id));
-			if (data == null) {
-				// System.out.println("Failed loading NPC " + id + ".");
-			} else
-				def.readValueLoop(new InputStream(data));
-			if (def.basId != -1) {
-				BASDefinitions render = BASDefinitions.getDefs(def.basId);
-				if (render != null && render.walkAnimation == -1 && render.teleportingAnimation != -1)
-					def.usesCrawlWalkBAS = true;
-			}
-			def.bonuses = new int[10];
-			def.bonuses[0] = def.getStabAtt();
-			def.bonuses[1] = def.getSlashAtt();
-			def.bonuses[2] = def.getCrushAtt();
-			def.bonuses[3] = def.getMagicAtt();
-			def.bonuses[4] = def.getRangeAtt();
-			def.bonuses[5] = def.getStabDef();
-			def.bonuses[6] = def.getSlashDef();
-			def.bonuses[7] = def.getCrushDef();
-			def.bonuses[8] = def.getMagicDef();
-			def.bonuses[9] = def.getRangeDef();
-			
-			def.strBonuses = new int[3];
-			def.strBonuses[0] = def.getMeleeStr();
-			def.strBonuses[1] = def.getRangeStr();
-			def.strBonuses[2] = def.getMagicStr();
+			def = decode(id, Cache.STORE.getIndex(IndexType.NPCS).getFile(ArchiveType.NPCS.archiveId(id), ArchiveType.NPCS.fileId(id)));
 			MAP.put(id, def);
 		}
 		return def;
 	}
 
+	private static NPCDefinitions decode(int id, byte[] data) {
+		NPCDefinitions def = new NPCDefinitions(id);
+		def.setEmptyModelIds();
+		if (data == null) {
+			// System.out.println("Failed loading NPC " + id + ".");
+		} else
+			def.readValueLoop(new InputStream(data));
+		if (def.basId != -1) {
+			BASDefinitions render = BASDefinitions.getDefs(def.basId);
+			if (render != null && render.walkAnimation == -1 && render.teleportingAnimation != -1)
+				def.usesCrawlWalkBAS = true;
+		}
+		def.bonuses = new int[10];
+		def.bonuses[0] = def.getStabAtt();
+		def.bonuses[1] = def.getSlashAtt();
+		def.bonuses[2] = def.getCrushAtt();
+		def.bonuses[3] = def.getMagicAtt();
+		def.bonuses[4] = def.getRangeAtt();
+		def.bonuses[5] = def.getStabDef();
+		def.bonuses[6] = def.getSlashDef();
+		def.bonuses[7] = def.getCrushDef();
+		def.bonuses[8] = def.getMagicDef();
+		def.bonuses[9] = def.getRangeDef();
+		
+		def.strBonuses = new int[3];
+		def.strBonuses[0] = def.getMeleeStr();
+		def.strBonuses[1] = def.getRangeStr();
+		def.strBonuses[2] = def.getMagicStr();
+		return def;
+	}
+
+	static int prewarm() {
+		NPCDefinitions[] defs = new NPCDefinitions[DefinitionsPrewarm.getDefinitionsSize(IndexType.NPCS, ArchiveType.NPCS)];
+		PREWARMED = DefinitionsPrewarm.decodeIndex(IndexType.NPCS, ArchiveType.NPCS, defs, NPCDefinitions::decode);
+		return defs.length;
+	}
+
 	public void setEmptyModelIds() {
 		if (modelIds == null)
 			modelIds = new int[0];
@@ -218,25 +231,16 @@ public final class NPCDefinitions {
 	}
 	
 	public List<Integer> getCompatibleAnimations() {
-		HashSet<Integer> animsWithSkeleton = new HashSet<Integer>();
+		List<Integer> list = new ArrayList<>();
 		if (basId != -1) {
 			if (BASDefinitions.getDefs(basId).standAnimation != -1) {
 				if (AnimationDefinitions.getDefs(BASDefinitions.getDefs(basId).standAnimation).frameSetIds != null) {
 					int skeleton = AnimationDefinitions.getDefs(BASDefinitions.getDefs(basId).standAnimation).frameSetIds[0];
-					for (int i = 0; i < Utils.getAnimationDefinitionsSize(); i++) {
-						AnimationDefinitions check = AnimationDefinitions.getDefs(i);
-						if (check == null)
-							continue;
-						if (check.frameSetIds == null || check.frameSetIds[0] == -1)
-							continue;
-						if (check.frameSetIds[0] == skeleton)
-							animsWithSkeleton.add(i);
-					}
+					for (int anim : ReverseLookups.get().getAnimationsForSkeleton(skeleton))
+						list.add(anim);
 				}
 			}
 		}
-		List<Integer> list = new ArrayList<>(animsWithSkeleton);
-		Collections.sort(list);
 		return list;
 	}
 
@@ -423,18 +427,7 @@ public final class NPCDefinitions {
 		} else if (opcode == 169) {
 			this.aBool4920 = false;
 		} else if (opcode == 249) {
-			int length = stream.readUnsignedByte();
-			if (parameters == null)
-				parameters = new HashMap<Integer, Object>(length);
-			for (int i_60_ = 0; i_60_ < length; i_60_++) {
-				boolean bool = stream.readUnsignedByte() == 1;
-				int i_61_ = stream.read24BitInt();
-				if (!bool)
-					parameters.put(i_61_, stream.readInt());
-				else
-					parameters.put(i_61_, stream.readString());
-
-			}
+			parameters = KeyedValues.readParams(stream, parameters);
 		}
 	}
 	
@@ -724,20 +717,8 @@ public final class NPCDefinitions {
 			stream.writeByte(169);
 		}
 		
-		if (parameters != null) {
-			stream.writeByte(249);
-			stream.writeByte(parameters.size());
-			for (int key : parameters.keySet()) {
-				Object value = parameters.get(key);
-				stream.writeByte(value instanceof String ? 1 : 0);
-				stream.write24BitInt(key);
-				if (value instanceof String) {
-					stream.writeString((String) value);
-				} else {
-					stream.writeInt((Integer) value);
-				}
-			}
-		}
+		if (parameters != null)
+			parameters.writeParams(stream);
 		stream.writeByte(0);
 		
 		byte[] data = new byte[stream.getOffset()];
@@ -768,6 +749,7 @@ public final class NPCDefinitions {
 	}
 
 	public static final void clearNPCDefinitions() {
+		PREWARMED = null;
 		MAP.clear();
 	}
 	
@@ -872,18 +854,13 @@ public final class NPCDefinitions {
 	public int getCSValue(int key) {
 		if (parameters == null)
 			return -1;
-		if (parameters.get(key) == null || !(parameters.get(id) instanceof Integer))
-			return -1;
-		return (Integer) parameters.get(key);
+		return parameters.getInt(key, -1);
 	}
 	
 	public int getBonus(int id) {
 		if (parameters == null)
 			return 0;
-		if (parameters.get(id) == null || !(parameters.get(id) instanceof Integer))
-			return 0;
-		int bonus = (Integer) parameters.get(id);
-		return bonus;
+		return parameters.getInt(id, 0);
 	}
 	
 	public int getBonus(Bonus bonus) {
@@ -962,7 +939,34 @@ public final class NPCDefinitions {
 	public Object getParam(int is) {
 		if (parameters == null)
 			return null;
-		return parameters.get(id);
+		return parameters.get((long) is);
+	}
+
+	public int getIntParam(int key, int defaultValue) {
+		if (parameters == null)
+			return defaultValue;
+		return parameters.getInt(key, defaultValue);
+	}
+
+	public String getStringParam(int key, String defaultValue) {
+		if (parameters == null)
+			return defaultValue;
+		return parameters.getString(key, defaultValue);
+	}
+
+	public HashMap<Integer, Object> getParameters() {
+		if (parameters == null)
+			return null;
+		return parameters.toParamMap();
+	}
+
+	/*
+	 * replaces every param, for code that used to edit the old public
+	 * parameters map: copy with getParameters, edit, then set it back
+	 */
+	@Deprecated
+	public void setParameters(Map<Integer, Object> parameters) {
+		this.parameters = KeyedValues.fromParamMap(parameters);
 	}
 	
 	public String getConfigInfoString() {
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.rs.cache.ArchiveType;
@@ -34,6 +35,7 @@ import com.rs.lib.util.Utils;
 public class ObjectDefinitions {
 
 	private static final ConcurrentHashMap<Integer, ObjectDefinitions> objectDefinitions = new ConcurrentHashMap<Integer, ObjectDefinitions>();
+	private static volatile ObjectDefinitions[] PREWARMED;
 
 	public int anInt5633;
 	public byte aByte5634;
@@ -112,7 +114,7 @@ public class ObjectDefinitions {
 	public int anInt5709;
 	public int anInt5710;
 	public boolean aBool5711;
-	public HashMap<Integer, Object> parameters;
+	KeyedValues parameters;
 	public int id;
 	public int accessBlockFlag;
 
@@ -248,6 +250,39 @@ public class ObjectDefinitions {
 		return options[2];
 	}
 
+	public Object getParam(int key) {
+		if (parameters == null)
+			return null;
+		return parameters.get((long) key);
+	}
+
+	public int getIntParam(int key, int defaultValue) {
+		if (parameters == null)
+			return defaultValue;
+		return parameters.getInt(key, defaultValue);
+	}
+
+	public String getStringParam(int key, String defaultValue) {
+		if (parameters == null)
+			return defaultValue;
+		return parameters.getString(key, defaultValue);
+	}
+
+	public HashMap<Integer, Object> getParameters() {
+		if (parameters == null)
+			return null;
+		return parameters.toParamMap();
+	}
+
+	/*
+	 * replaces every param, for code that used to edit the old public
+	 * parameters map: copy with getParameters, edit, then set it back
+	 */
+	@Deprecated
+	public void setParameters(Map<Integer, Object> parameters) {
+		this.parameters = KeyedValues.fromParamMap(parameters);
+	}
+
 	public boolean containsOption(int i, String option) {
 		if (options == null || options[i] == null || options.length <= i)
 			return false;
@@ -495,17 +530,7 @@ public class ObjectDefinitions {
 		else if (189 == opcode)
 			aBool5711 = true;
 		else if (249 == opcode) {
-			int length = stream.readUnsignedByte();
-			if (parameters == null)
-				parameters = new HashMap<Integer, Object>(length);
-			for (int i_60_ = 0; i_60_ < length; i_60_++) {
-				boolean bool = stream.readUnsignedByte() == 1;
-				int i_61_ = stream.read24BitInt();
-				if (!bool)
-					parameters.put(i_61_, stream.readInt());
-				else
-					parameters.put(i_61_, stream.readString());
-			}
+			parameters = KeyedValues.readParams(stream, parameters);
 		}
 	}
 	
@@ -663,41 +688,54 @@ public class ObjectDefinitions {
 	}
 
 	public static ObjectDefinitions getDefs(int id) {
+		ObjectDefinitions[] prewarmed = PREWARMED;
+		if (prewarmed != null && id >= 0 && id < prewarmed.length)
+			return prewarmed[id];
 		ObjectDefinitions def = objectDefinitions.get(id);
 		if (def == null) {
-			def = new ObjectDefinitions();
-			def.id = id;
-			byte[] data = Cache.STORE.getIndex(IndexType.OBJECTS).getFile(ArchiveType.OBJECTS.archiveId(id), ArchiveType.OBJECTS.fileId(id));
-			if (data != null)
-				def.readValueLoop(new InputStream(data));
-			def.method7966();
+			def = decode(id, Cache.STORE.getIndex(IndexType.OBJECTS).getFile(ArchiveType.OBJECTS.archiveId(id), ArchiveType.OBJECTS.fileId(id)));
+			objectDefinitions.put(id, def);
+		}
+		return def;
+	}
+
+	private static ObjectDefinitions decode(int id, byte[] data) {
+		ObjectDefinitions def = new ObjectDefinitions();
+		def.id = id;
+		if (data != null)
+			def.readValueLoop(new InputStream(data));
+		def.method7966();
 //			if (def.ignoreAltClip) {
 //				def.clipType = 0;
 //				def.blocks = false;
 //			}
-			/*
-			 * DUNGEONEERING DOORS?..
-			 */
-			switch (id) {
-			case 50342:
-			case 50343:
-			case 50344:
-			case 53948:
-			case 55762:
-			case 50350:
-			case 50351:
-			case 50352:
-			case 53950:
-			case 55764:
-				def.ignoreAltClip = false;
-				def.blocks = true;
-				def.clipType = 1;
-				break;
-			}
-			objectDefinitions.put(id, def);
+		/*
+		 * DUNGEONEERING DOORS?..
+		 */
+		switch (id) {
+		case 50342:
+		case 50343:
+		case 50344:
+		case 53948:
+		case 55762:
+		case 50350:
+		case 50351:
+		case 50352:
+		case 53950:
+		case 55764:
+			def.ignoreAltClip = false;
+			def.blocks = true;
+			def.clipType = 1;
+			break;
 		}
 		return def;
 	}
+
+	static int prewarm() {
+		ObjectDefinitions[] defs = new ObjectDefinitions[DefinitionsPrewarm.getDefinitionsSize(IndexType.OBJECTS, ArchiveType.OBJECTS)];
+		PREWARMED = DefinitionsPrewarm.decodeIndex(IndexType.OBJECTS, ArchiveType.OBJECTS, defs, ObjectDefinitions::decode);
+		return defs.length;
+	}
 	
 	void method7966() {
 		if (interactable == -1) {
@@ -767,6 +805,7 @@ public class ObjectDefinitions {
 	}
 
 	public static void clearObjectDefinitions() {
+		PREWARMED = null;
 		objectDefinitions.clear();
 	}
 
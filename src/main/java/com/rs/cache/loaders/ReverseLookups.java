@@ -0,0 +1,315 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.loaders;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import com.rs.cache.ArchiveType;
+import com.rs.cache.Cache;
+import com.rs.cache.Index;
+import com.rs.cache.IndexType;
+import com.rs.cache.loaders.animations.AnimationDefinitions;
+import com.rs.lib.util.Logger;
+
+/*
+ * Reverse lookups over the definition indexes, built in one parallel pass and
+ * saved next to the cache. The saved copy is only reused while the revisions
+ * and crcs of every index it was built from still match.
+ */
+public final class ReverseLookups {
+
+	public static final String FILE_NAME = "reverse_lookups.dat";
+
+	private static final int VERSION = 2;
+	private static final IndexType[] SOURCES = { IndexType.ANIMATIONS, IndexType.ITEMS, IndexType.NPCS, IndexType.OBJECTS };
+	private static final int[] EMPTY = new int[0];
+
+	private static volatile ReverseLookups LOOKUPS;
+
+	private final long stamp;
+	private final Map<Integer, int[]> skeletonAnimations;
+	private final Map<Integer, int[]> itemAnimations;
+	private final Map<Integer, int[]> modelItems;
+	private final Map<Integer, int[]> paramItems;
+	private final Map<Integer, int[]> paramNPCs;
+	private final Map<Integer, int[]> paramObjects;
+	private final int[] equippableItems;
+
+	private ReverseLookups(long stamp, Map<Integer, int[]> skeletonAnimations, Map<Integer, int[]> itemAnimations, Map<Integer, int[]> modelItems, Map<Integer, int[]> paramItems, Map<Integer, int[]> paramNPCs, Map<Integer, int[]> paramObjects, int[] equippableItems) {
+		this.stamp = stamp;
+		this.skeletonAnimations = skeletonAnimations;
+		this.itemAnimations = itemAnimations;
+		this.modelItems = modelItems;
+		this.paramItems = paramItems;
+		this.paramNPCs = paramNPCs;
+		this.paramObjects = paramObjects;
+		this.equippableItems = equippableItems;
+	}
+
+	public static ReverseLookups get() {
+		ReverseLookups lookups = LOOKUPS;
+		if (lookups != null && lookups.stamp == getStamp())
+			return lookups;
+		synchronized (ReverseLookups.class) {
+			long stamp = getStamp();
+			if (LOOKUPS != null && LOOKUPS.stamp == stamp)
+				return LOOKUPS;
+			File file = new File(Cache.STORE.getPath() + FILE_NAME);
+			lookups = load(file, stamp);
+			if (lookups == null) {
+				lookups = build(stamp);
+				save(file, lookups);
+			}
+			LOOKUPS = lookups;
+			return lookups;
+		}
+	}
+
+	public static synchronized void clear() {
+		LOOKUPS = null;
+	}
+
+	/*
+	 * changes whenever any source index is rewritten
+	 */
+	private static long getStamp() {
+		long stamp = VERSION;
+		for (IndexType type : SOURCES) {
+			Index index = Cache.STORE.getIndex(type);
+			stamp = stamp * 31 + index.getTable().getRevision();
+			stamp = stamp * 31 + index.getCRC();
+		}
+		return stamp;
+	}
+
+	public static ReverseLookups build() {
+		return build(getStamp());
+	}
+
+	private static ReverseLookups build(long stamp) {
+		long start = System.nanoTime();
+		int animations = getSize(IndexType.ANIMATIONS, ArchiveType.ANIMATIONS);
+		int items = getSize(IndexType.ITEMS, ArchiveType.ITEMS);
+		int npcs = getSize(IndexType.NPCS, ArchiveType.NPCS);
+		int objects = getSize(IndexType.OBJECTS, ArchiveType.OBJECTS);
+
+		Map<Integer, int[]> skeletonAnimations = group(IntStream.range(0, animations).parallel().boxed().flatMapToLong(id -> {
+			AnimationDefinitions defs = AnimationDefinitions.getDefs(id);
+			if (defs == null || defs.frameSetIds == null || defs.frameSetIds.length == 0 || defs.frameSetIds[0] == -1)
+				return LongStream.empty();
+			return LongStream.of(pair(defs.frameSetIds[0], id));
+		}).toArray());
+		Map<Integer, int[]> itemAnimations = group(IntStream.range(0, animations).parallel().boxed().flatMapToLong(id -> {
+			AnimationDefinitions defs = AnimationDefinitions.getDefs(id);
+			if (defs == null)
+				return LongStream.empty();
+			LongStream.Builder pairs = LongStream.builder();
+			if (defs.leftHandItem != -1 && defs.leftHandItem != 65535)
+				pairs.add(pair(defs.leftHandItem, id));
+			if (defs.rightHandItem != -1 && defs.rightHandItem != 65535)
+				pairs.add(pair(defs.rightHandItem, id));
+			return pairs.build();
+		}).toArray());
+
+		ItemDefinitions[] itemDefs = new ItemDefinitions[items];
+		IntStream.range(0, items).parallel().forEach(id -> itemDefs[id] = ItemDefinitions.getDefs(id));
+		Map<Integer, int[]> modelItems = group(IntStream.range(0, items).parallel().boxed().flatMapToLong(id -> {
+			ItemDefinitions defs = itemDefs[id];
+			if (defs == null)
+				return LongStream.empty();
+			return IntStream.of(defs.modelId, defs.maleEquip1, defs.maleEquip2, defs.maleEquip3, defs.femaleEquip1, defs.femaleEquip2, defs.femaleEquip3, defs.maleHead1, defs.maleHead2, defs.femaleHead1, defs.femaleHead2).filter(model -> model >= 0).mapToLong(model -> pair(model, id));
+		}).toArray());
+		Map<Integer, int[]> paramItems = group(IntStream.range(0, items).parallel().boxed().flatMapToLong(id -> params(itemDefs[id] == null ? null : itemDefs[id].clientScriptData, id)).toArray());
+		int[] equippableItems = IntStream.range(0, items).parallel().filter(id -> itemDefs[id] != null && (itemDefs[id].getMaleWornModelId1() >= 0 || itemDefs[id].getFemaleWornModelId1() >= 0)).toArray();
+
+		Map<Integer, int[]> paramNPCs = group(IntStream.range(0, npcs).parallel().boxed().flatMapToLong(id -> {
+			NPCDefinitions defs = NPCDefinitions.getDefs(id);
+			return params(defs == null ? null : defs.parameters, id);
+		}).toArray());
+		Map<Integer, int[]> paramObjects = group(IntStream.range(0, objects).parallel().boxed().flatMapToLong(id -> {
+			ObjectDefinitions defs = ObjectDefinitions.getDefs(id);
+			return params(defs == null ? null : defs.parameters, id);
+		}).toArray());
+
+		ReverseLookups lookups = new ReverseLookups(stamp, skeletonAnimations, itemAnimations, modelItems, paramItems, paramNPCs, paramObjects, equippableItems);
+		Logger.log("ReverseLookups", "Built reverse lookups in " + ((System.nanoTime() - start) / 1000000L) + "ms");
+		return lookups;
+	}
+
+	private static int getSize(IndexType indexType, ArchiveType type) {
+		Index index = Cache.STORE.getIndex(indexType);
+		if (index.getLastArchiveId() < 0)
+			return 0;
+		return DefinitionsPrewarm.getDefinitionsSize(indexType, type);
+	}
+
+	private static LongStream params(KeyedValues params, int id) {
+		if (params == null)
+			return LongStream.empty();
+		return IntStream.range(0, params.size()).mapToLong(i -> pair(params.getKey(i), id));
+	}
+
+	private static long pair(int key, int value) {
+		return ((long) key << 32) | (value & 0xffffffffL);
+	}
+
+	/*
+	 * sorted key/value pairs into key -> ascending distinct values
+	 */
+	private static Map<Integer, int[]> group(long[] pairs) {
+		Arrays.parallelSort(pairs);
+		Map<Integer, int[]> map = new HashMap<>();
+		int start = 0;
+		while (start < pairs.length) {
+			int key = (int) (pairs[start] >> 32);
+			int end = start;
+			int count = 0;
+			int[] values = new int[16];
+			while (end < pairs.length && (int) (pairs[end] >> 32) == key) {
+				if (end == start || pairs[end] != pairs[end - 1]) {
+					if (count == values.length)
+						values = Arrays.copyOf(values, count * 2);
+					values[count++] = (int) pairs[end];
+				}
+				end++;
+			}
+			map.put(key, Arrays.copyOf(values, count));
+			start = end;
+		}
+		return map;
+	}
+
+	private static ReverseLookups load(File file, long stamp) {
+		if (!file.exists())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != VERSION || in.readLong() != stamp)
+				return null;
+			Map<Integer, int[]> skeletonAnimations = readMultimap(in);
+			Map<Integer, int[]> itemAnimations = readMultimap(in);
+			Map<Integer, int[]> modelItems = readMultimap(in);
+			Map<Integer, int[]> paramItems = readMultimap(in);
+			Map<Integer, int[]> paramNPCs = readMultimap(in);
+			Map<Integer, int[]> paramObjects = readMultimap(in);
+			int[] equippableItems = readInts(in);
+			return new ReverseLookups(stamp, skeletonAnimations, itemAnimations, modelItems, paramItems, paramNPCs, paramObjects, equippableItems);
+		} catch (IOException e) {
+			Logger.handle(e);
+			return null;
+		}
+	}
+
+	private static void save(File file, ReverseLookups lookups) {
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(VERSION);
+			out.writeLong(lookups.stamp);
+			writeMultimap(out, lookups.skeletonAnimations);
+			writeMultimap(out, lookups.itemAnimations);
+			writeMultimap(out, lookups.modelItems);
+			writeMultimap(out, lookups.paramItems);
+			writeMultimap(out, lookups.paramNPCs);
+			writeMultimap(out, lookups.paramObjects);
+			writeInts(out, lookups.equippableItems);
+		} catch (IOException e) {
+			Logger.handle(e);
+			temp.delete();
+			return;
+		}
+		if (!temp.renameTo(file)) {
+			file.delete();
+			temp.renameTo(file);
+		}
+	}
+
+	private static Map<Integer, int[]> readMultimap(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		Map<Integer, int[]> map = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++)
+			map.put(in.readInt(), readInts(in));
+		return map;
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] values = new int[in.readInt()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = in.readInt();
+		return values;
+	}
+
+	private static void writeMultimap(DataOutputStream out, Map<Integer, int[]> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<Integer, int[]> entry : map.entrySet()) {
+			out.writeInt(entry.getKey());
+			writeInts(out, entry.getValue());
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values)
+			out.writeInt(value);
+	}
+
+	/*
+	 * all returned arrays are sorted ascending and shared, do not modify them
+	 */
+	public int[] getAnimationsForSkeleton(int skeleton) {
+		return skeletonAnimations.getOrDefault(skeleton, EMPTY);
+	}
+
+	public int[] getAnimationsForItem(int itemId) {
+		return itemAnimations.getOrDefault(itemId, EMPTY);
+	}
+
+	public int[] getItemsForModel(int modelId) {
+		return modelItems.getOrDefault(modelId, EMPTY);
+	}
+
+	public int[] getItemsWithParam(int param) {
+		return paramItems.getOrDefault(param, EMPTY);
+	}
+
+	public int[] getNPCsWithParam(int param) {
+		return paramNPCs.getOrDefault(param, EMPTY);
+	}
+
+	public int[] getObjectsWithParam(int param) {
+		return paramObjects.getOrDefault(param, EMPTY);
+	}
+
+	public int[] getEquippableItems() {
+		return equippableItems;
+	}
+
+	public Map<Integer, int[]> getItemAnimations() {
+		return Collections.unmodifiableMap(itemAnimations);
+	}
+}
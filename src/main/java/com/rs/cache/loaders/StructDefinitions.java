@@ -34,9 +34,10 @@ import com.rs.lib.io.InputStream;
 
 public final class StructDefinitions {
 
-	private HashMap<Long, Object> values;
+	private KeyedValues values;
 
 	private static final ConcurrentHashMap<Integer, StructDefinitions> maps = new ConcurrentHashMap<Integer, StructDefinitions>();
+	private static volatile StructDefinitions[] PREWARMED;
 	
 	public static void main(String[] args) throws IOException {
 		//Cache.init();
@@ -61,19 +62,34 @@ public final class StructDefinitions {
 	}
 
 	public static final StructDefinitions getStruct(int structId) {
+		StructDefinitions[] prewarmed = PREWARMED;
+		if (prewarmed != null && structId >= 0 && structId < prewarmed.length)
+			return prewarmed[structId];
 		StructDefinitions script = maps.get(structId);
 		if (script != null)
 			return script;
-		byte[] data = Cache.STORE.getIndex(IndexType.CONFIG).getFile(ArchiveType.STRUCTS.getId(), structId);
-		script = new StructDefinitions();
+		script = decode(structId, Cache.STORE.getIndex(IndexType.CONFIG).getFile(ArchiveType.STRUCTS.getId(), structId));
+		maps.put(structId, script);
+		return script;
+	}
+
+	private static StructDefinitions decode(int structId, byte[] data) {
+		StructDefinitions script = new StructDefinitions();
 		if (data != null)
 			script.readValueLoop(new InputStream(data));
-		maps.put(structId, script);
 		return script;
 	}
 
+	static int prewarm() {
+		StructDefinitions[] defs = new StructDefinitions[Cache.STORE.getIndex(IndexType.CONFIG).getLastFileId(ArchiveType.STRUCTS.getId()) + 1];
+		PREWARMED = DefinitionsPrewarm.decodeArchive(IndexType.CONFIG, ArchiveType.STRUCTS.getId(), defs, StructDefinitions::decode);
+		return defs.length;
+	}
+
 	public HashMap<Long, Object> getValues() {
-		return values;
+		if (values == null)
+			return null;
+		return values.asMap();
 	}
 
 	public Object getValue(long key) {
@@ -83,11 +99,9 @@ public final class StructDefinitions {
 	}
 
 	public long getKeyForValue(Object value) {
-		for (Long key : values.keySet()) {
-			if (values.get(key).equals(value))
-				return key;
-		}
-		return -1;
+		if (values == null)
+			return -1;
+		return values.getKeyForValue(value);
 	}
 
 	public int getSize() {
@@ -97,30 +111,19 @@ public final class StructDefinitions {
 	}
 
 	public int getIntValue(long key) {
-		if (values == null)
-			return 0;
-		Object value = values.get(key);
-		if (value == null || !(value instanceof Integer))
-			return 0;
-		return (Integer) value;
+		return getIntValue(key, 0);
 	}
 	
 	public int getIntValue(long key, int defaultVal) {
 		if (values == null)
 			return defaultVal;
-		Object value = values.get(key);
-		if (value == null || !(value instanceof Integer))
-			return defaultVal;
-		return (Integer) value;
+		return values.getInt(key, defaultVal);
 	}
 
 	public String getStringValue(long key) {
 		if (values == null)
 			return "";
-		Object value = values.get(key);
-		if (value == null || !(value instanceof String))
-			return "";
-		return (String) value;
+		return values.getString(key, "");
 	}
 
 	private void readValueLoop(InputStream stream) {
@@ -133,17 +136,8 @@ public final class StructDefinitions {
 	}
 
 	private void readValues(InputStream stream, int opcode) {
-		if (opcode == 249) {
-			int length = stream.readUnsignedByte();
-			if (values == null)
-				values = new HashMap<Long, Object>(length);
-			for (int index = 0; index < length; index++) {
-				boolean stringInstance = stream.readUnsignedByte() == 1;
-				int key = stream.read24BitInt();
-				Object value = stringInstance ? stream.readString() : stream.readInt();
-				values.put((long) key, value);
-			}
-		}
+		if (opcode == 249)
+			values = KeyedValues.readParams(stream, values);
 	}
 	
 	public Object valToType(long id, Object o) {
@@ -180,15 +174,16 @@ public final class StructDefinitions {
 	
 	@Override
 	public String toString() {
-		if (getValues() == null)
+		if (values == null)
 			return "null";
 		StringBuilder s = new StringBuilder();
 		s.append("{");
-		for (Long l : getValues().keySet()) {
+		for (int i = 0; i < values.size(); i++) {
+			int key = values.getKey(i);
 			s.append("\n\t");
-			s.append(l + " ("+CS2ParamDefs.getParams(l.intValue()).type+")");
+			s.append(key + " ("+CS2ParamDefs.getParams(key).type+")");
 			s.append(" = ");
-			s.append(valToType(l, getValues().get(l)) + ", ");
+			s.append(valToType(key, values.get(i)) + ", ");
 		}
 		s.append("\n}");
 		return s.toString();
@@ -27,6 +27,7 @@ import com.rs.lib.io.InputStream;
 public final class VarBitDefinitions {
 
 	private static final ConcurrentHashMap<Integer, VarBitDefinitions> varpbitDefs = new ConcurrentHashMap<Integer, VarBitDefinitions>();
+	private static volatile VarBitDefinitions[] PREWARMED;
 
 	public int id;
 	public int baseVar;
@@ -44,18 +45,31 @@ public final class VarBitDefinitions {
 	}
 
 	public static final VarBitDefinitions getDefs(int id) {
+		VarBitDefinitions[] prewarmed = PREWARMED;
+		if (prewarmed != null && id >= 0 && id < prewarmed.length)
+			return prewarmed[id];
 		VarBitDefinitions script = varpbitDefs.get(id);
 		if (script != null)// open new txt document
 			return script;
-		byte[] data = Cache.STORE.getIndex(IndexType.VARBITS).getFile(ArchiveType.VARBITS.archiveId(id), ArchiveType.VARBITS.fileId(id));
-		script = new VarBitDefinitions();
+		script = decode(id, Cache.STORE.getIndex(IndexType.VARBITS).getFile(ArchiveType.VARBITS.archiveId(id), ArchiveType.VARBITS.fileId(id)));
+		varpbitDefs.put(id, script);
+		return script;
+	}
+
+	private static VarBitDefinitions decode(int id, byte[] data) {
+		VarBitDefinitions script = new VarBitDefinitions();
 		script.id = id;
 		if (data != null)
 			script.readValueLoop(new InputStream(data));
-		varpbitDefs.put(id, script);
 		return script;
 	}
 
+	static int prewarm() {
+		VarBitDefinitions[] defs = new VarBitDefinitions[DefinitionsPrewarm.getDefinitionsSize(IndexType.VARBITS, ArchiveType.VARBITS)];
+		PREWARMED = DefinitionsPrewarm.decodeIndex(IndexType.VARBITS, ArchiveType.VARBITS, defs, VarBitDefinitions::decode);
+		return defs.length;
+	}
+
 	private void readValueLoop(InputStream stream) {
 		for (;;) {
 			int opcode = stream.readUnsignedByte();
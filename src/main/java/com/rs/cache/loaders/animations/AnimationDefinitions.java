@@ -19,11 +19,13 @@ package com.rs.cache.loaders.animations;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.rs.cache.ArchiveType;
 import com.rs.cache.Cache;
 import com.rs.cache.IndexType;
+import com.rs.cache.loaders.ReverseLookups;
 import com.rs.lib.io.InputStream;
 import com.rs.lib.util.Utils;
 
@@ -60,16 +62,9 @@ public class AnimationDefinitions {
 	private static final HashMap<Integer, Integer> itemAnims = new HashMap<Integer, Integer>();
 	
 	public static void init() {
-		for (int i = 0; i < Utils.getAnimationDefinitionsSize(); i++) {
-			AnimationDefinitions defs = getDefs(i);
-			if (defs == null)
-				continue;
-			if (defs.leftHandItem != -1 && defs.leftHandItem != 65535) {
-				itemAnims.put(defs.leftHandItem, i);
-			}
-			if (defs.rightHandItem != -1 && defs.rightHandItem != 65535) {
-				itemAnims.put(defs.rightHandItem, i);
-			}
+		for (Map.Entry<Integer, int[]> entry : ReverseLookups.get().getItemAnimations().entrySet()) {
+			int[] anims = entry.getValue();
+			itemAnims.put(entry.getKey(), anims[anims.length - 1]);
 		}
 	}
 	
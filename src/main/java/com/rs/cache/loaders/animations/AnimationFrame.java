@@ -18,17 +18,26 @@ package com.rs.cache.loaders.animations;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 
 import com.rs.lib.io.InputStream;
 import com.rs.lib.util.Utils;
 
 public class AnimationFrame {
-	public static short[] indicesBuffer = new short[500];
-	public static short[] bufferX = new short[500];
-	public static short[] bufferY = new short[500];
-	public static short[] bufferZ = new short[500];
-	public static short[] skipped = new short[500];
-	public static byte[] flagsBuffer = new byte[500];
+	/*
+	 * scratch space for one decode, a frame never has more than 255
+	 * transformations since the count is a single byte
+	 */
+	private static final class Scratch {
+		private final short[] indices = new short[256];
+		private final short[] x = new short[256];
+		private final short[] y = new short[256];
+		private final short[] z = new short[256];
+		private final short[] skipped = new short[256];
+		private final byte[] flags = new byte[256];
+	}
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 	
 	public boolean modifiesColor;
 	public int transformationCount = 0;
@@ -52,6 +61,13 @@ public class AnimationFrame {
 	}
 	
 	private void readFrameData(byte[] data) {
+		Scratch scratch = SCRATCH.get();
+		short[] indicesBuffer = scratch.indices;
+		short[] bufferX = scratch.x;
+		short[] bufferY = scratch.y;
+		short[] bufferZ = scratch.z;
+		short[] skipped = scratch.skipped;
+		byte[] flagsBuffer = scratch.flags;
 		try {
 			InputStream attribBuffer = new InputStream(data);
 			InputStream transformationBuffer = new InputStream(data);
@@ -116,20 +132,12 @@ public class AnimationFrame {
 				throw new RuntimeException();
 			
 			transformationCount = used;
-			transformationIndices = new short[used];
-			transformationX = new short[used];
-			transformationY = new short[used];
-			transformationZ = new short[used];
-			skippedReferences = new short[used];
-			transformationFlags = new byte[used];
-			for (int i = 0; i < used; i++) {
-				transformationIndices[i] = indicesBuffer[i];
-				transformationX[i] = bufferX[i];
-				transformationY[i] = bufferY[i];
-				transformationZ[i] = bufferZ[i];
-				skippedReferences[i] = skipped[i];
-				transformationFlags[i] = flagsBuffer[i];
-			}
+			transformationIndices = Arrays.copyOf(indicesBuffer, used);
+			transformationX = Arrays.copyOf(bufferX, used);
+			transformationY = Arrays.copyOf(bufferY, used);
+			transformationZ = Arrays.copyOf(bufferZ, used);
+			skippedReferences = Arrays.copyOf(skipped, used);
+			transformationFlags = Arrays.copyOf(flagsBuffer, used);
 		} catch (Exception exception_13) {
 			this.transformationCount = 0;
 			this.modifiesAlpha = false;
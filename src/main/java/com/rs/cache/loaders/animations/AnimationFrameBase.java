@@ -41,16 +41,17 @@ public class AnimationFrameBase {
 	}
 	
 	public static AnimationFrameBase getFrame(int frameBaseId) {
-		if (FRAME_BASES.get(frameBaseId) != null)
-			return FRAME_BASES.get(frameBaseId);
+		AnimationFrameBase cached = FRAME_BASES.get(frameBaseId);
+		if (cached != null)
+			return cached;
 		byte[] frameBaseData = Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_BASES).getFile(frameBaseId, 0);
 		if (frameBaseData == null) {
 			return null;
 		}
 		AnimationFrameBase defs = new AnimationFrameBase(frameBaseId);
 		defs.decode(new InputStream(frameBaseData));
-		FRAME_BASES.put(frameBaseId, defs);
-		return defs;
+		cached = FRAME_BASES.putIfAbsent(frameBaseId, defs);
+		return cached != null ? cached : defs;
 	}
 	
 	public void decode(InputStream buffer) {
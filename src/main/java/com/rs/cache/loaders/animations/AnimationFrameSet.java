@@ -20,6 +20,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.rs.cache.ArchiveReference;
 import com.rs.cache.Cache;
 import com.rs.cache.IndexType;
 import com.rs.lib.io.InputStream;
@@ -37,31 +38,49 @@ public class AnimationFrameSet {
 	}
 		
 	public static AnimationFrameSet getFrameSet(int id) {
-		if (FRAME_COLLECTIONS.get(id) != null)
-			return FRAME_COLLECTIONS.get(id);
-		if (id > Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_SETS).getTable().getArchives().length)
+		AnimationFrameSet cached = FRAME_COLLECTIONS.get(id);
+		if (cached != null)
+			return cached;
+		byte[][] frameData = getFrameData(id);
+		if (frameData == null)
 			return null;
-		int[] files = Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_SETS).getTable().getArchives()[id].getValidFileIds();
+		AnimationFrameSet defs = decode(id, frameData);
+		cached = FRAME_COLLECTIONS.putIfAbsent(id, defs);
+		return cached != null ? cached : defs;
+	}
+
+	/*
+	 * raw frames of the set in file order, null if the set doesn't exist
+	 */
+	static byte[][] getFrameData(int id) {
+		ArchiveReference[] archives = Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_SETS).getTable().getArchives();
+		if (id < 0 || id >= archives.length || archives[id] == null)
+			return null;
+		int[] files = archives[id].getValidFileIds();
 		if (files == null) {
 			System.out.println("Null files: " + id);
 			return null;
 		}
-		
-		AnimationFrameSet defs = new AnimationFrameSet();
-		defs.id = id;
+		byte[][] group = Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_SETS).getFiles(id);
+		if (group == null)
+			return null;
 		byte[][] frameData = new byte[files.length][];
 		for (int i = 0;i < files.length;i++)
-			frameData[i] = Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_SETS).getFile(id, files[i]);
-		
+			frameData[i] = group[files[i]];
+		return frameData;
+	}
+
+	static AnimationFrameSet decode(int id, byte[][] frameData) {
+		AnimationFrameSet defs = new AnimationFrameSet();
+		defs.id = id;
 		defs.frames = new AnimationFrame[frameData.length];
 		for (int i = 0;i < frameData.length;i++) {
 			InputStream stream = new InputStream(frameData[i]);
 			stream.setOffset(1);
-			int frameBaseId = stream.readUnsignedShort();
-			defs.frames[i] = AnimationFrame.getFrame(frameData[i], AnimationFrameBase.getFrame(frameBaseId));
+			AnimationFrameBase frameBase = AnimationFrameBase.getFrame(stream.readUnsignedShort());
+			if (frameBase != null)
+				defs.frames[i] = AnimationFrame.getFrame(frameData[i], frameBase);
 		}
-		
-		FRAME_COLLECTIONS.put(id, defs);
 		return defs;
 	}
 
@@ -0,0 +1,153 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.loaders.animations;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.rs.cache.Cache;
+import com.rs.cache.IndexType;
+import com.rs.lib.util.Logger;
+import com.rs.lib.util.Utils;
+
+/*
+ * Every frame set and animation of the cache decoded once in parallel and
+ * flattened into primitive arrays so lengths and timings can be looked up for
+ * any id without touching the cache or holding decoded frames.
+ */
+public final class AnimationIndex {
+
+	private static volatile AnimationIndex INSTANCE;
+
+	/*
+	 * frames of set id are [frameOffsets[id], frameOffsets[id + 1])
+	 */
+	private final int[] frameOffsets;
+	private final int[] frameBaseIds;
+	private final short[] transformationCounts;
+
+	private final int[] animationTimes;
+	private final short[] animationFrameCounts;
+
+	private AnimationIndex(int[] frameOffsets, int[] frameBaseIds, short[] transformationCounts, int[] animationTimes, short[] animationFrameCounts) {
+		this.frameOffsets = frameOffsets;
+		this.frameBaseIds = frameBaseIds;
+		this.transformationCounts = transformationCounts;
+		this.animationTimes = animationTimes;
+		this.animationFrameCounts = animationFrameCounts;
+	}
+
+	public static AnimationIndex get() {
+		AnimationIndex index = INSTANCE;
+		if (index == null) {
+			synchronized (AnimationIndex.class) {
+				if (INSTANCE == null)
+					INSTANCE = load();
+				index = INSTANCE;
+			}
+		}
+		return index;
+	}
+
+	public static void clear() {
+		INSTANCE = null;
+	}
+
+	private static AnimationIndex load() {
+		long start = System.nanoTime();
+		int setsCount = Cache.STORE.getIndex(IndexType.ANIMATION_FRAME_SETS).getLastArchiveId() + 1;
+		AnimationFrame[][] sets = new AnimationFrame[setsCount][];
+		IntStream.range(0, setsCount).parallel().forEach(id -> {
+			byte[][] frameData = AnimationFrameSet.getFrameData(id);
+			if (frameData != null)
+				sets[id] = AnimationFrameSet.decode(id, frameData).getFrames();
+		});
+		int[] frameOffsets = new int[setsCount + 1];
+		for (int id = 0; id < setsCount; id++)
+			frameOffsets[id + 1] = frameOffsets[id] + (sets[id] == null ? 0 : sets[id].length);
+		int[] frameBaseIds = new int[frameOffsets[setsCount]];
+		short[] transformationCounts = new short[frameOffsets[setsCount]];
+		IntStream.range(0, setsCount).parallel().filter(id -> sets[id] != null).forEach(id -> {
+			for (int i = 0; i < sets[id].length; i++) {
+				AnimationFrame frame = sets[id][i];
+				frameBaseIds[frameOffsets[id] + i] = frame == null ? -1 : frame.frameBaseId;
+				transformationCounts[frameOffsets[id] + i] = (short) (frame == null ? 0 : frame.transformationCount);
+			}
+		});
+
+		int animationsCount = Utils.getAnimationDefinitionsSize();
+		int[] animationTimes = new int[animationsCount];
+		short[] animationFrameCounts = new short[animationsCount];
+		Arrays.fill(animationTimes, -1);
+		IntStream.range(0, animationsCount).parallel().forEach(id -> {
+			AnimationDefinitions defs = AnimationDefinitions.getDefs(id);
+			if (defs == null)
+				return;
+			animationTimes[id] = defs.getEmoteTime();
+			animationFrameCounts[id] = (short) (defs.frameDurations == null ? 0 : defs.frameDurations.length);
+		});
+		Logger.log("AnimationIndex", "Indexed " + frameBaseIds.length + " frames in " + setsCount + " frame sets and " + animationsCount + " animations in " + ((System.nanoTime() - start) / 1000000L) + "ms");
+		return new AnimationIndex(frameOffsets, frameBaseIds, transformationCounts, animationTimes, animationFrameCounts);
+	}
+
+	public int getFrameSetsCount() {
+		return frameOffsets.length - 1;
+	}
+
+	public int getFrameCount(int frameSetId) {
+		if (frameSetId < 0 || frameSetId >= frameOffsets.length - 1)
+			return 0;
+		return frameOffsets[frameSetId + 1] - frameOffsets[frameSetId];
+	}
+
+	public int getFrameBaseId(int frameSetId, int frame) {
+		if (frame < 0 || frame >= getFrameCount(frameSetId))
+			return -1;
+		return frameBaseIds[frameOffsets[frameSetId] + frame];
+	}
+
+	public int getTransformationCount(int frameSetId, int frame) {
+		if (frame < 0 || frame >= getFrameCount(frameSetId))
+			return 0;
+		return transformationCounts[frameOffsets[frameSetId] + frame];
+	}
+
+	public int getAnimationsCount() {
+		return animationTimes.length;
+	}
+
+	/*
+	 * milliseconds, same as AnimationDefinitions.getEmoteTime, -1 if the
+	 * animation doesn't decode
+	 */
+	public int getAnimationTime(int animationId) {
+		if (animationId < 0 || animationId >= animationTimes.length)
+			return -1;
+		return animationTimes[animationId];
+	}
+
+	public int getAnimationGameTicks(int animationId) {
+		int time = getAnimationTime(animationId);
+		return time == -1 ? -1 : time / 600;
+	}
+
+	public int getAnimationFrameCount(int animationId) {
+		if (animationId < 0 || animationId >= animationFrameCounts.length)
+			return 0;
+		return animationFrameCounts[animationId];
+	}
+}
@@ -24,14 +24,10 @@ import com.rs.lib.util.Utils;
 
 public class Filter {
 
-	static float[][] coefficient_float = new float[2][8];
-	static int[][] coefficient_int = new int[2][8];
 	int[] numPairs = new int[2];
 	int[][][] pairPhase = new int[2][2][4];
 	int[][][] pairMagnitude = new int[2][2][4];
 	int[] unity = new int[2];
-	static float invUnity_float;
-	static int invUnity_int;
 
 	float adaptMagnitude(int dir, int k, float t) {
 		float alpha = (float) this.pairMagnitude[dir][0][k] + t * (float) (this.pairMagnitude[dir][1][k] - this.pairMagnitude[dir][0][k]);
@@ -89,12 +85,17 @@ public class Filter {
 
 	}
 
-	int compute(int dir, float t) {
+	/*
+	 * coefficients are written into the calling thread's synthesis scratch
+	 */
+	int compute(int dir, float t, Instrument.Scratch scratch) {
+		float[][] coefficient_float = scratch.coefficientFloat;
+		int[][] coefficient_int = scratch.coefficientInt;
 		if (dir == 0) {
 			float a0 = (float) this.unity[0] + (float) (this.unity[1] - this.unity[0]) * t;
 			a0 *= 0.0030517578F;
-			invUnity_float = (float) Math.pow(0.1D, (double) (a0 / 20.0F));
-			invUnity_int = (int) (invUnity_float * 65536.0F);
+			scratch.invUnityFloat = (float) Math.pow(0.1D, (double) (a0 / 20.0F));
+			scratch.invUnityInt = (int) (scratch.invUnityFloat * 65536.0F);
 		}
 
 		if (this.numPairs[dir] == 0) {
@@ -122,7 +123,7 @@ public class Filter {
 
 			if (dir == 0) {
 				for (i_4 = 0; i_4 < this.numPairs[0] * 2; i_4++) {
-					coefficient_float[0][i_4] *= invUnity_float;
+					coefficient_float[0][i_4] *= scratch.invUnityFloat;
 				}
 			}
 
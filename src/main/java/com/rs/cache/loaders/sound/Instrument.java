@@ -28,12 +28,7 @@ public class Instrument {
 
 	static int[] noise = new int[32768];
 	static int[] sine;
-	static int[] output;
-	static int[] phases;
-	static int[] delays;
-	static int[] volumeStep;
-	static int[] pitchStep;
-	static int[] pitchBaseStep;
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 	Envelope pitch;
 	Envelope volume;
 	Envelope pitchModifier;
@@ -65,15 +60,35 @@ public class Instrument {
 			sine[i] = (int) (Math.sin((double) i / 5215.1903D) * 16384.0D);
 		}
 
-		output = new int[220500];
-		phases = new int[5];
-		delays = new int[5];
-		volumeStep = new int[5];
-		pitchStep = new int[5];
-		pitchBaseStep = new int[5];
+	}
+
+	/*
+	 * per thread synthesis buffers so separate effects can be rendered in
+	 * parallel, the returned samples are only valid until the next call on the
+	 * same thread
+	 */
+	static final class Scratch {
+		final int[] output = new int[220500];
+		final int[] phases = new int[5];
+		final int[] delays = new int[5];
+		final int[] volumeStep = new int[5];
+		final int[] pitchStep = new int[5];
+		final int[] pitchBaseStep = new int[5];
+		final float[][] coefficientFloat = new float[2][8];
+		final int[][] coefficientInt = new int[2][8];
+		float invUnityFloat;
+		int invUnityInt;
 	}
 
 	final int[] synthesize(int mixDuration, int instrDuration) {
+		Scratch scratch = SCRATCH.get();
+		int[] output = scratch.output;
+		int[] phases = scratch.phases;
+		int[] delays = scratch.delays;
+		int[] volumeStep = scratch.volumeStep;
+		int[] pitchStep = scratch.pitchStep;
+		int[] pitchBaseStep = scratch.pitchBaseStep;
+		int[][] coefficients = scratch.coefficientInt;
 		Arrays.fill(output, 0, mixDuration, 0);
 		if (instrDuration < 10) {
 			return output;
@@ -178,8 +193,8 @@ public class Instrument {
 			if (this.filter.numPairs[0] > 0 || this.filter.numPairs[1] > 0) {
 				this.filterEnvelope.reset();
 				int t = this.filterEnvelope.step(mixDuration + 1);
-				int M = this.filter.compute(0, (float) t / 65536.0F);
-				int N = this.filter.compute(1, (float) t / 65536.0F);
+				int M = this.filter.compute(0, (float) t / 65536.0F, scratch);
+				int N = this.filter.compute(1, (float) t / 65536.0F, scratch);
 				if (mixDuration >= M + N) {
 					int n = 0;
 					int delay = N;
@@ -188,14 +203,14 @@ public class Instrument {
 					}
 
 					while (n < delay) {
-						int y = (int) ((long) output[n + M] * (long) Filter.invUnity_int >> 16);
+						int y = (int) ((long) output[n + M] * (long) scratch.invUnityInt >> 16);
 
 						for (int i_17 = 0; i_17 < M; i_17++) {
-							y += (int) ((long) output[n + M - 1 - i_17] * (long) Filter.coefficient_int[0][i_17] >> 16);
+							y += (int) ((long) output[n + M - 1 - i_17] * (long) coefficients[0][i_17] >> 16);
 						}
 
 						for (int i_17 = 0; i_17 < n; i_17++) {
-							y -= (int) ((long) output[n - 1 - i_17] * (long) Filter.coefficient_int[1][i_17] >> 16);
+							y -= (int) ((long) output[n - 1 - i_17] * (long) coefficients[1][i_17] >> 16);
 						}
 
 						output[n] = y;
@@ -211,14 +226,14 @@ public class Instrument {
 						}
 
 						while (n < delay) {
-							int y = (int) ((long) output[n + M] * (long) Filter.invUnity_int >> 16);
+							int y = (int) ((long) output[n + M] * (long) scratch.invUnityInt >> 16);
 
 							for (int i = 0; i < M; i++) {
-								y += (int) ((long) output[n + M - 1 - i] * (long) Filter.coefficient_int[0][i] >> 16);
+								y += (int) ((long) output[n + M - 1 - i] * (long) coefficients[0][i] >> 16);
 							}
 
 							for (int i = 0; i < N; i++) {
-								y -= (int) ((long) output[n - 1 - i] * (long) Filter.coefficient_int[1][i] >> 16);
+								y -= (int) ((long) output[n - 1 - i] * (long) coefficients[1][i] >> 16);
 							}
 
 							output[n] = y;
@@ -231,11 +246,11 @@ public class Instrument {
 								int y = 0;
 
 								for (int i = n + M - mixDuration; i < M; i++) {
-									y += (int) ((long) output[n + M - 1 - i] * (long) Filter.coefficient_int[0][i] >> 16);
+									y += (int) ((long) output[n + M - 1 - i] * (long) coefficients[0][i] >> 16);
 								}
 
 								for (int i = 0; i < N; i++) {
-									y -= (int) ((long) output[n - 1 - i] * (long) Filter.coefficient_int[1][i] >> 16);
+									y -= (int) ((long) output[n - 1 - i] * (long) coefficients[1][i] >> 16);
 								}
 
 								output[n] = y;
@@ -245,8 +260,8 @@ public class Instrument {
 							break;
 						}
 
-						M = this.filter.compute(0, (float) t / 65536.0F);
-						N = this.filter.compute(1, (float) t / 65536.0F);
+						M = this.filter.compute(0, (float) t / 65536.0F, scratch);
+						N = this.filter.compute(1, (float) t / 65536.0F, scratch);
 						delay += 128;
 					}
 				}
@@ -62,6 +62,14 @@ public class SoundEffect {
 	}
 	
 	public byte[] toWAV() {
+		return toWAV(toPCM());
+	}
+
+	/*
+	 * 16 bit mono samples at 22050hz, safe to call for different effects on
+	 * different threads at once
+	 */
+	public byte[] toPCM() {
 		byte[] mixed = mix();
 		
 		/*
@@ -73,9 +81,11 @@ public class SoundEffect {
 			fixed[i * 2] = (byte) (mixed[i] >> 8 * 2);			
 			fixed[i * 2 + 1] = (byte) (mixed[i] >> 16 * 2 + 1);
 		}
-		
-		
-		OutputStream stream = new OutputStream();
+		return fixed;
+	}
+
+	public static byte[] toWAV(byte[] fixed) {
+		OutputStream stream = new OutputStream(44 + fixed.length);
 		stream.writeInt(0x52494646); /* 'RIFF' chunk name */
 		stream.writeIntLE(36 + fixed.length); /* 'RIFF' block size (36 = 4 + 4 + 4 + 2 + 2 + 4 + 4 + 2 + 2 + 4 + 4) */
 		stream.writeInt(0x57415645); /* 'WAVE' format */
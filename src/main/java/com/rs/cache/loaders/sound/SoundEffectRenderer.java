@@ -0,0 +1,179 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.loaders.sound;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import com.rs.cache.ArchiveReference;
+import com.rs.cache.Cache;
+import com.rs.cache.Index;
+import com.rs.cache.IndexType;
+import com.rs.lib.io.InputStream;
+import com.rs.lib.util.Logger;
+
+/*
+ * Renders sound effects off the game thread. Whole index renders are split
+ * across a worker pool and single effects are kept as wav bytes, evicted least
+ * recently used first once the total size passes MAX_CACHED_BYTES.
+ */
+public final class SoundEffectRenderer {
+
+	public static long MAX_CACHED_BYTES = 32 * 1024 * 1024;
+
+	private static final LinkedHashMap<Integer, Rendered> CACHE = new LinkedHashMap<>(256, 0.75f, true);
+	private static long cachedBytes;
+
+	private static final AtomicLong HITS = new AtomicLong();
+	private static final AtomicLong MISSES = new AtomicLong();
+	private static final AtomicLong EVICTIONS = new AtomicLong();
+
+	private record Rendered(long stamp, byte[] wav) {}
+
+	/*
+	 * wav bytes for the effect or null if it does not exist, the returned array
+	 * is shared with the cache and must not be modified
+	 */
+	public static byte[] getWAV(int id) {
+		long stamp = getStamp(id);
+		if (stamp == -1)
+			return null;
+		synchronized (SoundEffectRenderer.class) {
+			Rendered rendered = CACHE.get(id);
+			if (rendered != null && rendered.stamp == stamp) {
+				HITS.incrementAndGet();
+				return rendered.wav;
+			}
+		}
+		MISSES.incrementAndGet();
+		SoundEffect effect = SoundEffect.getEffect(id);
+		if (effect == null)
+			return null;
+		byte[] wav = effect.toWAV();
+		if (wav.length > MAX_CACHED_BYTES)
+			return wav;
+		synchronized (SoundEffectRenderer.class) {
+			Rendered old = CACHE.put(id, new Rendered(stamp, wav));
+			if (old != null)
+				cachedBytes -= old.wav.length;
+			cachedBytes += wav.length;
+			Iterator<Rendered> it = CACHE.values().iterator();
+			while (cachedBytes > MAX_CACHED_BYTES && it.hasNext()) {
+				cachedBytes -= it.next().wav.length;
+				it.remove();
+				EVICTIONS.incrementAndGet();
+			}
+		}
+		return wav;
+	}
+
+	/*
+	 * archive revision and crc, so an effect rewritten in the cache is never
+	 * served from a stale render
+	 */
+	private static long getStamp(int id) {
+		Index index = Cache.STORE.getIndex(IndexType.SOUND_EFFECTS);
+		ArchiveReference[] archives = index.getTable().getArchives();
+		if (id < 0 || id >= archives.length || archives[id] == null)
+			return -1;
+		return ((long) archives[id].getRevision() << 32) | (archives[id].getCRC() & 0xffffffffL);
+	}
+
+	/*
+	 * renders every effect in the index to pcm on the given number of threads,
+	 * the consumer is called from the workers and must be thread safe
+	 */
+	public static int renderAll(int threads, BiConsumer<Integer, byte[]> consumer) {
+		long start = System.nanoTime();
+		Index index = Cache.STORE.getIndex(IndexType.SOUND_EFFECTS);
+		int[] ids = index.getTable().getValidArchiveIds();
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger rendered = new AtomicInteger();
+		AtomicLong bytes = new AtomicLong();
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try {
+			Future<?>[] futures = new Future<?>[threads];
+			for (int i = 0; i < threads; i++) {
+				futures[i] = workers.submit(() -> {
+					int slot;
+					while ((slot = next.getAndIncrement()) < ids.length) {
+						int id = ids[slot];
+						try {
+							byte[] data = index.getFile(id, 0);
+							if (data == null)
+								continue;
+							byte[] pcm = new SoundEffect(new InputStream(data)).toPCM();
+							consumer.accept(id, pcm);
+							rendered.incrementAndGet();
+							bytes.addAndGet(pcm.length);
+						} catch (Throwable e) {
+							Logger.log("SoundEffectRenderer", "Failed to render sound effect " + id + ": " + e);
+						}
+					}
+				});
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (Exception e) {
+			Logger.handle(e);
+		} finally {
+			workers.shutdown();
+		}
+		long time = (System.nanoTime() - start) / 1000000L;
+		Logger.log("SoundEffectRenderer", "Rendered " + rendered.get() + "/" + ids.length + " sound effects (" + (bytes.get() / 1024) + "kb) on " + threads + " threads in " + time + "ms");
+		return rendered.get();
+	}
+
+	public static int renderAll(BiConsumer<Integer, byte[]> consumer) {
+		return renderAll(Runtime.getRuntime().availableProcessors(), consumer);
+	}
+
+	public static synchronized void clear() {
+		CACHE.clear();
+		cachedBytes = 0;
+	}
+
+	public static long getHits() {
+		return HITS.get();
+	}
+
+	public static long getMisses() {
+		return MISSES.get();
+	}
+
+	public static long getEvictions() {
+		return EVICTIONS.get();
+	}
+
+	public static synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	public static synchronized int getCachedEffects() {
+		return CACHE.size();
+	}
+
+	private SoundEffectRenderer() {
+
+	}
+}
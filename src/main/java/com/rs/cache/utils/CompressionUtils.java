@@ -21,13 +21,29 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
+import com.rs.cache.utils.bzip2.BZip2BlockDecoder;
 import com.rs.cache.utils.bzip2.CBZip2InputStream;
 import com.rs.cache.utils.bzip2.CBZip2OutputStream;
+import com.rs.lib.util.Logger;
 
 public class CompressionUtils {
+
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+	private static final ThreadLocal<byte[]> PROBE = ThreadLocal.withInitial(() -> new byte[1]);
+
+	/*
+	 * deflate can't expand past roughly 1032:1, anything claiming more in its
+	 * trailer is garbage
+	 */
+	public static final int MAX_DEFLATE_RATIO = 1032;
 	
 	public static byte[] bunzip2(byte[] bytes) {
 		try {
@@ -59,6 +75,23 @@ public class CompressionUtils {
 		}
 	}
 
+	/*
+	 * decodes the headerless bzip2 stream in src[offset, offset + length)
+	 * straight into dst, returns the bytes written or -1 if the stream is
+	 * corrupt or larger than dst
+	 */
+	public static int bunzip2(byte[] src, int offset, int length, byte[] dst) {
+		return BZip2BlockDecoder.decompress(src, offset, length, dst);
+	}
+
+	/*
+	 * upper bound on what bunzip2 can write for src[offset, offset + length),
+	 * -1 if it isn't a bzip2 stream
+	 */
+	public static long maxBunzip2Length(byte[] src, int offset, int length) {
+		return BZip2BlockDecoder.maxDecodedLength(src, offset, length);
+	}
+
 	public static byte[] bzip2(byte[] bytes) {
 		try {
 			InputStream is = new ByteArrayInputStream(bytes);
@@ -88,54 +121,131 @@ public class CompressionUtils {
 		}
 	}
 
+	/*
+	 * sized from the length in the gzip trailer once it's been bounded by
+	 * what the input could possibly inflate to
+	 */
 	public static byte[] gunzip(byte[] bytes) {
-		try {
-			InputStream is = new GZIPInputStream(new ByteArrayInputStream(bytes));
-			try {
-				ByteArrayOutputStream os = new ByteArrayOutputStream();
-				try {
-					byte[] buf = new byte[4096];
-					int len = 0;
-					while ((len = is.read(buf, 0, buf.length)) != -1) {
-						os.write(buf, 0, len);
-					}
-				} finally {
-					os.close();
-				}
-	
-				return os.toByteArray();
-			} finally {
-				is.close();
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
+		if (bytes.length < 18) {
+			Logger.log("CompressionUtils", "Truncated gzip stream.");
+			return null;
+		}
+		int length = readIntLE(bytes, bytes.length - 4);
+		if (length < 0 || length > (long) bytes.length * MAX_DEFLATE_RATIO) {
+			Logger.log("CompressionUtils", "Corrupt gzip trailer length " + (length & 0xffffffffL) + ".");
 			return null;
 		}
+		byte[] data = new byte[length];
+		int read = gunzip(bytes, 0, bytes.length, data);
+		if (read != length) {
+			Logger.log("CompressionUtils", "Corrupt gzip stream.");
+			return null;
+		}
+		return data;
 	}
 
-	public static byte[] gzip(byte[] bytes) {
+	/*
+	 * inflates the gzip stream in src[offset, offset + length) straight into
+	 * dst, returns the bytes inflated or -1 if the stream is corrupt, fails
+	 * its crc32/size trailer or inflates to more than dst holds
+	 */
+	public static int gunzip(byte[] src, int offset, int length, byte[] dst) {
+		int position = skipGzipHeader(src, offset, length);
+		if (position < 0)
+			return -1;
+		Inflater inflater = INFLATER.get();
+		inflater.reset();
+		inflater.setInput(src, position, offset + length - position);
 		try {
-			InputStream is = new ByteArrayInputStream(bytes);
-			try {
-				ByteArrayOutputStream bout = new ByteArrayOutputStream();
-				OutputStream os = new GZIPOutputStream(bout);
-				try {
-					byte[] buf = new byte[4096];
-					int len = 0;
-					while ((len = is.read(buf, 0, buf.length)) != -1) {
-						os.write(buf, 0, len);
-					}
-				} finally {
-					os.close();
-				}
-	
-				return bout.toByteArray();
-			} finally {
-				is.close();
+			int read = 0;
+			while (read < dst.length && !inflater.finished()) {
+				int inflated = inflater.inflate(dst, read, dst.length - read);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					return -1;
+				read += inflated;
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
+			if (!inflater.finished() && (inflater.inflate(PROBE.get()) != 0 || !inflater.finished()))
+				return -1;
+			int trailer = offset + length - inflater.getRemaining();
+			if (offset + length - trailer < 8)
+				return -1;
+			CRC32 crc = CRC.get();
+			crc.reset();
+			crc.update(dst, 0, read);
+			if (readIntLE(src, trailer) != (int) crc.getValue() || readIntLE(src, trailer + 4) != read)
+				return -1;
+			return read;
+		} catch (DataFormatException e) {
+			return -1;
 		}
 	}
+
+	/*
+	 * the length in the trailer of the gzip stream in src[offset, offset +
+	 * length), -1 if the header is bad or the length is more than the stream
+	 * could inflate to
+	 */
+	public static int gunzipLength(byte[] src, int offset, int length) {
+		if (skipGzipHeader(src, offset, length) < 0)
+			return -1;
+		int size = readIntLE(src, offset + length - 4);
+		return size < 0 || size > (long) length * MAX_DEFLATE_RATIO ? -1 : size;
+	}
+
+	private static int skipGzipHeader(byte[] src, int offset, int length) {
+		if (length < 18 || (src[offset] & 0xff) != 0x1f || (src[offset + 1] & 0xff) != 0x8b || src[offset + 2] != 8)
+			return -1;
+		int flags = src[offset + 3] & 0xff;
+		int position = offset + 10;
+		int end = offset + length;
+		if ((flags & 0x4) != 0)
+			position += 2 + ((src[position] & 0xff) | (src[position + 1] & 0xff) << 8);
+		if ((flags & 0x8) != 0)
+			while (position < end && src[position++] != 0);
+		if ((flags & 0x10) != 0)
+			while (position < end && src[position++] != 0);
+		if ((flags & 0x2) != 0)
+			position += 2;
+		return position < end ? position : -1;
+	}
+
+	/*
+	 * same output as a GZIPOutputStream, deflated in one pass with this
+	 * thread's deflater
+	 */
+	public static byte[] gzip(byte[] bytes) {
+		Deflater deflater = DEFLATER.get();
+		deflater.reset();
+		deflater.setInput(bytes);
+		deflater.finish();
+		byte[] out = new byte[bytes.length + (bytes.length >> 3) + 64];
+		out[0] = (byte) 0x1f;
+		out[1] = (byte) 0x8b;
+		out[2] = 8;
+		out[9] = (byte) 0xff;
+		int position = 10;
+		while (!deflater.finished()) {
+			if (position == out.length)
+				out = Arrays.copyOf(out, out.length * 2);
+			position += deflater.deflate(out, position, out.length - position);
+		}
+		CRC32 crc = CRC.get();
+		crc.reset();
+		crc.update(bytes, 0, bytes.length);
+		byte[] gzip = Arrays.copyOf(out, position + 8);
+		writeIntLE(gzip, position, (int) crc.getValue());
+		writeIntLE(gzip, position + 4, bytes.length);
+		return gzip;
+	}
+
+	private static int readIntLE(byte[] buffer, int position) {
+		return (buffer[position] & 0xff) | (buffer[position + 1] & 0xff) << 8 | (buffer[position + 2] & 0xff) << 16 | (buffer[position + 3] & 0xff) << 24;
+	}
+
+	private static void writeIntLE(byte[] buffer, int position, int value) {
+		buffer[position] = (byte) value;
+		buffer[position + 1] = (byte) (value >> 8);
+		buffer[position + 2] = (byte) (value >> 16);
+		buffer[position + 3] = (byte) (value >> 24);
+	}
 }
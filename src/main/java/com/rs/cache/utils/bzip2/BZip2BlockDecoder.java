@@ -0,0 +1,389 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.utils.bzip2;
+
+/*
+ * Decodes a headerless bzip2 stream, as stored in cache containers, straight
+ * from the container into an output array of the known uncompressed length.
+ * Huffman symbols are resolved through a lookup on the next 10 bits with the
+ * canonical limit tables only for longer codes. All scratch space lives in a
+ * per-thread state so any number of threads can decode at once.
+ */
+public final class BZip2BlockDecoder implements BZip2Constants {
+
+	private static final int LOOKUP_BITS = 10;
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	private static final long END_MAGIC = 0x177245385090L;
+
+	/*
+	 * smallest possible block: magic, crc, origPtr, one symbol map, two
+	 * huffman tables and a single selector and symbol, 173 bits
+	 */
+	private static final int MIN_BLOCK_BYTES = 21;
+
+	/*
+	 * a block holds at most 9 * baseBlockSize symbols and every 5 of them
+	 * can expand to a 259 byte run
+	 */
+	private static final long MAX_BLOCK_OUTPUT = 9L * baseBlockSize / 5 * 259 + 4;
+
+	private static final ThreadLocal<BZip2BlockDecoder> DECODERS = ThreadLocal.withInitial(BZip2BlockDecoder::new);
+
+	private byte[] src;
+	private int position;
+	private int end;
+	private long bitBuffer;
+	private int bitCount;
+
+	private int[] tt = new int[baseBlockSize];
+	private final int[] unzftab = new int[256];
+	private final int[] cftab = new int[257];
+	private final byte[] seqToUnseq = new byte[256];
+	private final byte[] mtf = new byte[256];
+	private final byte[] selectors = new byte[MAX_SELECTORS];
+	private final byte[] selectorMtf = new byte[N_GROUPS];
+	private final int[][] lengths = new int[N_GROUPS][MAX_ALPHA_SIZE];
+	private final int[][] limit = new int[N_GROUPS][MAX_CODE_LEN + 2];
+	private final int[][] base = new int[N_GROUPS][MAX_CODE_LEN + 2];
+	private final int[][] perm = new int[N_GROUPS][MAX_ALPHA_SIZE];
+	private final int[][] lookup = new int[N_GROUPS][1 << LOOKUP_BITS];
+	private final int[] minLens = new int[N_GROUPS];
+	private final int[] maxLens = new int[N_GROUPS];
+	private final int[] codes = new int[MAX_ALPHA_SIZE];
+
+	private BZip2BlockDecoder() {
+
+	}
+
+	/*
+	 * decodes src[offset, offset + length) into dst, returns the bytes written
+	 * or -1 if the stream is corrupt, fails its crc or does not fit in dst
+	 */
+	public static int decompress(byte[] src, int offset, int length, byte[] dst) {
+		BZip2BlockDecoder decoder = DECODERS.get();
+		try {
+			return decoder.decode(src, offset, length, dst);
+		} catch (IllegalStateException | ArrayIndexOutOfBoundsException e) {
+			return -1;
+		} finally {
+			decoder.src = null;
+		}
+	}
+
+	/*
+	 * most bytes src[offset, offset + length) could decode to, or -1 if it
+	 * doesn't start with a block or end of stream marker
+	 */
+	public static long maxDecodedLength(byte[] src, int offset, int length) {
+		if (length < 6)
+			return -1;
+		long magic = 0;
+		for (int i = 0; i < 6; i++)
+			magic = magic << 8 | (src[offset + i] & 0xff);
+		if (magic != BLOCK_MAGIC && magic != END_MAGIC)
+			return -1;
+		return (length / MIN_BLOCK_BYTES + 1) * MAX_BLOCK_OUTPUT;
+	}
+
+	private int decode(byte[] src, int offset, int length, byte[] dst) {
+		this.src = src;
+		this.position = offset;
+		this.end = offset + length;
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+		int written = 0;
+		while (true) {
+			long magic = ((long) getBits(24) << 24) | getBits(24);
+			if (magic == END_MAGIC)
+				return written;
+			if (magic != BLOCK_MAGIC)
+				throw new IllegalStateException("Bad block magic.");
+			int blockCrc = getBits(32);
+			boolean randomised = getBits(1) == 1;
+			int origPtr = getBits(24);
+			int blockLength = readBlock();
+			if (origPtr < 0 || origPtr >= blockLength)
+				throw new IllegalStateException("Bad origPtr.");
+			int start = written;
+			written = undoTransforms(blockLength, origPtr, randomised, dst, written);
+			if (crc(dst, start, written) != blockCrc)
+				throw new IllegalStateException("Block crc mismatch.");
+		}
+	}
+
+	private void fill() {
+		while (bitCount <= 56) {
+			bitBuffer = (bitBuffer << 8) | (position < end ? src[position] & 0xff : 0);
+			position++;
+			bitCount += 8;
+		}
+		if (position > end + 8)
+			throw new IllegalStateException("Read past end of stream.");
+	}
+
+	private int peekBits(int count) {
+		if (bitCount < count)
+			fill();
+		return (int) (bitBuffer >>> (bitCount - count)) & ((1 << count) - 1);
+	}
+
+	private int getBits(int count) {
+		if (count == 32)
+			return (getBits(16) << 16) | getBits(16);
+		int value = peekBits(count);
+		bitCount -= count;
+		return value;
+	}
+
+	/*
+	 * reads the tables and symbols of one block into tt, returns its length
+	 */
+	private int readBlock() {
+		int inUse16 = getBits(16);
+		int inUse = 0;
+		for (int i = 0; i < 16; i++) {
+			if ((inUse16 & (0x8000 >>> i)) == 0)
+				continue;
+			int bits = getBits(16);
+			for (int j = 0; j < 16; j++)
+				if ((bits & (0x8000 >>> j)) != 0)
+					seqToUnseq[inUse++] = (byte) (i * 16 + j);
+		}
+		if (inUse == 0)
+			throw new IllegalStateException("No symbols in use.");
+		int alphaSize = inUse + 2;
+
+		int groups = getBits(3);
+		int selectorsCount = getBits(15);
+		if (groups < 2 || groups > N_GROUPS || selectorsCount < 1 || selectorsCount > MAX_SELECTORS)
+			throw new IllegalStateException("Bad selectors.");
+		for (int i = 0; i < groups; i++)
+			selectorMtf[i] = (byte) i;
+		for (int i = 0; i < selectorsCount; i++) {
+			int j = 0;
+			while (getBits(1) == 1) {
+				if (++j >= groups)
+					throw new IllegalStateException("Bad selector.");
+			}
+			byte selector = selectorMtf[j];
+			System.arraycopy(selectorMtf, 0, selectorMtf, 1, j);
+			selectorMtf[0] = selector;
+			selectors[i] = selector;
+		}
+
+		for (int t = 0; t < groups; t++) {
+			int[] length = lengths[t];
+			int current = getBits(5);
+			for (int i = 0; i < alphaSize; i++) {
+				while (true) {
+					if (current < 1 || current > 20)
+						throw new IllegalStateException("Bad code length.");
+					if (getBits(1) == 0)
+						break;
+					current += getBits(1) == 0 ? 1 : -1;
+				}
+				length[i] = current;
+			}
+			createTables(t, alphaSize);
+		}
+
+		int eob = inUse + 1;
+		for (int i = 0; i < 256; i++) {
+			mtf[i] = (byte) i;
+			unzftab[i] = 0;
+		}
+		int blockLength = 0;
+		int groupIndex = -1;
+		int groupPosition = 0;
+		int group = 0;
+		int runLength = -1;
+		int runWeight = 1;
+		while (true) {
+			if (groupPosition-- == 0) {
+				if (++groupIndex >= selectorsCount)
+					throw new IllegalStateException("Ran out of selectors.");
+				group = selectors[groupIndex];
+				groupPosition = G_SIZE - 1;
+			}
+			int symbol = decodeSymbol(group);
+			if (symbol <= RUNB) {
+				runLength += (symbol + 1) * runWeight;
+				runWeight <<= 1;
+				if (runWeight > (1 << 21))
+					throw new IllegalStateException("Run too long.");
+				continue;
+			}
+			if (runLength >= 0) {
+				int value = seqToUnseq[mtf[0] & 0xff] & 0xff;
+				if (blockLength + runLength + 1 > tt.length)
+					growBlock(blockLength + runLength + 1);
+				unzftab[value] += runLength + 1;
+				for (int i = 0; i <= runLength; i++)
+					tt[blockLength++] = value;
+				runLength = -1;
+				runWeight = 1;
+			}
+			if (symbol == eob)
+				break;
+			int index = symbol - 1;
+			byte front = mtf[index];
+			System.arraycopy(mtf, 0, mtf, 1, index);
+			mtf[0] = front;
+			int value = seqToUnseq[front & 0xff] & 0xff;
+			if (blockLength >= tt.length)
+				growBlock(blockLength + 1);
+			unzftab[value]++;
+			tt[blockLength++] = value;
+		}
+		return blockLength;
+	}
+
+	private void growBlock(int length) {
+		if (length > 9 * baseBlockSize)
+			throw new IllegalStateException("Block too long.");
+		int[] grown = new int[Math.min(9 * baseBlockSize, Math.max(length, tt.length * 2))];
+		System.arraycopy(tt, 0, grown, 0, tt.length);
+		tt = grown;
+	}
+
+	private void createTables(int t, int alphaSize) {
+		int[] length = lengths[t];
+		int minLen = 32;
+		int maxLen = 0;
+		for (int i = 0; i < alphaSize; i++) {
+			minLen = Math.min(minLen, length[i]);
+			maxLen = Math.max(maxLen, length[i]);
+		}
+		int[] perm = this.perm[t];
+		int[] base = this.base[t];
+		int[] limit = this.limit[t];
+		int[] lookup = this.lookup[t];
+		int pp = 0;
+		int code = 0;
+		java.util.Arrays.fill(lookup, 0);
+		for (int len = minLen; len <= maxLen; len++) {
+			for (int symbol = 0; symbol < alphaSize; symbol++) {
+				if (length[symbol] != len)
+					continue;
+				perm[pp++] = symbol;
+				codes[symbol] = code++;
+				if (len <= LOOKUP_BITS) {
+					int first = codes[symbol] << (LOOKUP_BITS - len);
+					int entry = (symbol << 5) | len;
+					for (int i = 0; i < 1 << (LOOKUP_BITS - len); i++)
+						lookup[first + i] = entry;
+				}
+			}
+			code <<= 1;
+		}
+		java.util.Arrays.fill(base, 0);
+		for (int i = 0; i < alphaSize; i++)
+			base[length[i] + 1]++;
+		for (int i = 1; i < base.length; i++)
+			base[i] += base[i - 1];
+		int vec = 0;
+		for (int i = minLen; i <= maxLen; i++) {
+			vec += base[i + 1] - base[i];
+			limit[i] = vec - 1;
+			vec <<= 1;
+		}
+		for (int i = minLen + 1; i <= maxLen; i++)
+			base[i] = ((limit[i - 1] + 1) << 1) - base[i];
+		minLens[t] = minLen;
+		maxLens[t] = maxLen;
+	}
+
+	private int decodeSymbol(int group) {
+		int entry = lookup[group][peekBits(LOOKUP_BITS)];
+		if (entry != 0) {
+			bitCount -= entry & 0x1f;
+			return entry >>> 5;
+		}
+		int[] limit = this.limit[group];
+		int maxLen = maxLens[group];
+		int len = Math.max(minLens[group], LOOKUP_BITS + 1);
+		int code = peekBits(len);
+		while (len <= maxLen && code > limit[len]) {
+			len++;
+			code = peekBits(len);
+		}
+		if (len > maxLen)
+			throw new IllegalStateException("Bad huffman code.");
+		bitCount -= len;
+		int index = code - base[group][len];
+		if (index < 0 || index >= MAX_ALPHA_SIZE)
+			throw new IllegalStateException("Bad huffman code.");
+		return perm[group][index];
+	}
+
+	/*
+	 * inverts the bwt and the initial run length encoding into dst
+	 */
+	private int undoTransforms(int blockLength, int origPtr, boolean randomised, byte[] dst, int written) {
+		cftab[0] = 0;
+		for (int i = 0; i < 256; i++)
+			cftab[i + 1] = cftab[i] + unzftab[i];
+		for (int i = 0; i < blockLength; i++) {
+			int value = tt[i] & 0xff;
+			tt[cftab[value]++] |= i << 8;
+		}
+		int tPos = tt[origPtr] >>> 8;
+		int last = -1;
+		int run = 0;
+		int rNToGo = 0;
+		int rTPos = 0;
+		for (int i = 0; i < blockLength; i++) {
+			tPos = tt[tPos];
+			int value = tPos & 0xff;
+			tPos >>>= 8;
+			if (randomised) {
+				if (rNToGo == 0) {
+					rNToGo = rNums[rTPos];
+					rTPos = (rTPos + 1) & 0x1ff;
+				}
+				rNToGo--;
+				value ^= rNToGo == 1 ? 1 : 0;
+			}
+			if (run == 4) {
+				if (written + value > dst.length)
+					throw new IllegalStateException("Output too long.");
+				for (int j = 0; j < value; j++)
+					dst[written++] = (byte) last;
+				run = 0;
+				last = -1;
+				continue;
+			}
+			if (value == last)
+				run++;
+			else {
+				run = 1;
+				last = value;
+			}
+			if (written >= dst.length)
+				throw new IllegalStateException("Output too long.");
+			dst[written++] = (byte) value;
+		}
+		return written;
+	}
+
+	private static int crc(byte[] data, int start, int end) {
+		int crc = 0xffffffff;
+		for (int i = start; i < end; i++)
+			crc = (crc << 8) ^ CRC.crc32Table[((crc >>> 24) ^ data[i]) & 0xff];
+		return ~crc;
+	}
+}
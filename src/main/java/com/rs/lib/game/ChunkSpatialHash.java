@@ -0,0 +1,217 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.game;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.rs.lib.util.OpenAddressing;
+
+/*
+ * Buckets values by chunk id in an open addressed table of int keys, each
+ * bucket a plain array. Meant for ground items, objects and players owned by
+ * one thread so there is no locking.
+ */
+public final class ChunkSpatialHash<T> {
+
+	private int[] keys;
+	private Object[][] buckets;
+	private int[] counts;
+	private int chunks;
+	private int size;
+	private final OpenAddressing.Mover mover = this::moveBucket;
+
+	public ChunkSpatialHash() {
+		this(64);
+	}
+
+	public ChunkSpatialHash(int expectedChunks) {
+		int capacity = 16;
+		while (capacity < expectedChunks * 2)
+			capacity <<= 1;
+		resetTable(capacity);
+	}
+
+	public void add(int chunkId, T value) {
+		int index = indexOf(chunkId);
+		if (index == -1)
+			index = insert(chunkId);
+		Object[] bucket = buckets[index];
+		if (counts[index] == bucket.length)
+			buckets[index] = bucket = Arrays.copyOf(bucket, bucket.length * 2);
+		bucket[counts[index]++] = value;
+		size++;
+	}
+
+	public void add(WorldTile tile, T value) {
+		add(PackedTile.getChunkId(PackedTile.of(tile)), value);
+	}
+
+	/*
+	 * removes the first value equal to the given one, the order of the rest of
+	 * the bucket is not kept
+	 */
+	public boolean remove(int chunkId, T value) {
+		int index = indexOf(chunkId);
+		if (index == -1)
+			return false;
+		Object[] bucket = buckets[index];
+		int count = counts[index];
+		for (int i = 0; i < count; i++) {
+			if (bucket[i] == value || (value != null && value.equals(bucket[i]))) {
+				bucket[i] = bucket[--count];
+				bucket[count] = null;
+				counts[index] = count;
+				size--;
+				if (count == 0)
+					removeAt(index);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean remove(WorldTile tile, T value) {
+		return remove(PackedTile.getChunkId(PackedTile.of(tile)), value);
+	}
+
+	/*
+	 * moves a value between chunks, does nothing when both are the same chunk
+	 */
+	public void move(int fromChunkId, int toChunkId, T value) {
+		if (fromChunkId == toChunkId)
+			return;
+		remove(fromChunkId, value);
+		add(toChunkId, value);
+	}
+
+	public void clear(int chunkId) {
+		int index = indexOf(chunkId);
+		if (index == -1)
+			return;
+		size -= counts[index];
+		removeAt(index);
+	}
+
+	public void clear() {
+		resetTable(16);
+	}
+
+	public int count(int chunkId) {
+		int index = indexOf(chunkId);
+		return index == -1 ? 0 : counts[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(int chunkId, Consumer<? super T> action) {
+		int index = indexOf(chunkId);
+		if (index == -1)
+			return;
+		Object[] bucket = buckets[index];
+		for (int i = 0, count = counts[index]; i < count; i++)
+			action.accept((T) bucket[i]);
+	}
+
+	/*
+	 * visits every value in the chunks within radius chunks of the given chunk
+	 * on the same plane
+	 */
+	public void forEachAround(int chunkId, int radius, Consumer<? super T> action) {
+		int chunkX = PackedTile.chunkIdX(chunkId);
+		int chunkY = PackedTile.chunkIdY(chunkId);
+		int plane = PackedTile.chunkIdPlane(chunkId);
+		for (int x = Math.max(0, chunkX - radius); x <= Math.min(0x7ff, chunkX + radius); x++)
+			for (int y = Math.max(0, chunkY - radius); y <= Math.min(0x7ff, chunkY + radius); y++)
+				forEach(PackedTile.chunkId(x, y, plane), action);
+	}
+
+	/*
+	 * copies the chunk's values into dst the way Collection.toArray does,
+	 * growing it when too small and null terminating it when larger
+	 */
+	public T[] toArray(int chunkId, T[] dst) {
+		int index = indexOf(chunkId);
+		int count = index == -1 ? 0 : counts[index];
+		if (dst.length < count)
+			dst = Arrays.copyOf(dst, count);
+		if (count > 0)
+			System.arraycopy(buckets[index], 0, dst, 0, count);
+		if (dst.length > count)
+			dst[count] = null;
+		return dst;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getChunkCount() {
+		return chunks;
+	}
+
+	private int indexOf(int chunkId) {
+		return OpenAddressing.indexOf(keys, chunkId);
+	}
+
+	private int insert(int chunkId) {
+		if ((chunks + 1) * 2 > keys.length)
+			resize(keys.length * 2);
+		int index = OpenAddressing.place(keys, chunkId);
+		buckets[index] = new Object[4];
+		chunks++;
+		return index;
+	}
+
+	private void removeAt(int index) {
+		buckets[index] = null;
+		counts[index] = 0;
+		chunks--;
+		OpenAddressing.removeAt(keys, index, mover);
+	}
+
+	private void moveBucket(int from, int to) {
+		buckets[to] = buckets[from];
+		counts[to] = counts[from];
+		buckets[from] = null;
+		counts[from] = 0;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		Object[][] oldBuckets = buckets;
+		int[] oldCounts = counts;
+		int oldSize = size;
+		resetTable(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == 0)
+				continue;
+			int index = OpenAddressing.place(keys, oldKeys[i] - 1);
+			buckets[index] = oldBuckets[i];
+			counts[index] = oldCounts[i];
+			chunks++;
+		}
+		size = oldSize;
+	}
+
+	private void resetTable(int capacity) {
+		keys = new int[capacity];
+		buckets = new Object[capacity][];
+		counts = new int[capacity];
+		chunks = 0;
+		size = 0;
+	}
+}
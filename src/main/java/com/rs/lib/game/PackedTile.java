@@ -0,0 +1,147 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.game;
+
+/*
+ * Static helpers for tiles packed into one int the same way as
+ * WorldTile.getTileHash, y | x << 14 | plane << 28, and for chunk ids in the
+ * MapUtils.Structure.CHUNK layout, chunkX << 14 | chunkY << 3 | plane << 24.
+ * Nothing here allocates.
+ */
+public final class PackedTile {
+
+	public static int of(int x, int y, int plane) {
+		return y | (x << 14) | (plane << 28);
+	}
+
+	public static int of(WorldTile tile) {
+		return of(tile.getX(), tile.getY(), tile.getPlane());
+	}
+
+	public static int getX(int tile) {
+		return tile >> 14 & 0x3fff;
+	}
+
+	public static int getY(int tile) {
+		return tile & 0x3fff;
+	}
+
+	public static int getPlane(int tile) {
+		return tile >> 28 & 0x3;
+	}
+
+	public static int translate(int tile, int xOffset, int yOffset, int planeOffset) {
+		return of(getX(tile) + xOffset, getY(tile) + yOffset, getPlane(tile) + planeOffset);
+	}
+
+	public static WorldTile toWorldTile(int tile) {
+		return new WorldTile(getX(tile), getY(tile), getPlane(tile));
+	}
+
+	public static int getChunkX(int tile) {
+		return getX(tile) >> 3;
+	}
+
+	public static int getChunkY(int tile) {
+		return getY(tile) >> 3;
+	}
+
+	public static int getRegionX(int tile) {
+		return getX(tile) >> 6;
+	}
+
+	public static int getRegionY(int tile) {
+		return getY(tile) >> 6;
+	}
+
+	public static int getRegionId(int tile) {
+		return getRegionX(tile) << 8 | getRegionY(tile);
+	}
+
+	public static int getXInChunk(int tile) {
+		return tile >> 14 & 0x7;
+	}
+
+	public static int getYInChunk(int tile) {
+		return tile & 0x7;
+	}
+
+	public static int getXInRegion(int tile) {
+		return tile >> 14 & 0x3f;
+	}
+
+	public static int getYInRegion(int tile) {
+		return tile & 0x3f;
+	}
+
+	/*
+	 * chunk id of the chunk holding the tile including its plane
+	 */
+	public static int getChunkId(int tile) {
+		return chunkId(getChunkX(tile), getChunkY(tile), getPlane(tile));
+	}
+
+	public static int chunkId(int chunkX, int chunkY, int plane) {
+		return (chunkX << 14) | (chunkY << 3) | (plane << 24);
+	}
+
+	public static int chunkIdX(int chunkId) {
+		return chunkId >> 14 & 0x7ff;
+	}
+
+	public static int chunkIdY(int chunkId) {
+		return chunkId >> 3 & 0x7ff;
+	}
+
+	public static int chunkIdPlane(int chunkId) {
+		return chunkId >> 24 & 0x3;
+	}
+
+	public static int chunkIdToRegionId(int chunkId) {
+		return (chunkIdX(chunkId) >> 3) << 8 | (chunkIdY(chunkId) >> 3);
+	}
+
+	/*
+	 * scene offsets relative to the scene's base chunk id
+	 */
+	public static int getXInScene(int x, int sceneBaseChunkId) {
+		return x - (chunkIdX(sceneBaseChunkId) << 3);
+	}
+
+	public static int getYInScene(int y, int sceneBaseChunkId) {
+		return y - (chunkIdY(sceneBaseChunkId) << 3);
+	}
+
+	public static int getChunkXInScene(int x, int sceneBaseChunkId) {
+		return (x >> 3) - chunkIdX(sceneBaseChunkId);
+	}
+
+	public static int getChunkYInScene(int y, int sceneBaseChunkId) {
+		return (y >> 3) - chunkIdY(sceneBaseChunkId);
+	}
+
+	public static boolean withinDistance(int tile, int other, int distance) {
+		if (getPlane(tile) != getPlane(other))
+			return false;
+		int deltaX = getX(other) - getX(tile), deltaY = getY(other) - getY(tile);
+		return deltaX <= distance && deltaX >= -distance && deltaY <= distance && deltaY >= -distance;
+	}
+
+	private PackedTile() {
+
+	}
+}
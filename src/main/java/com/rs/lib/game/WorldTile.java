@@ -16,8 +16,6 @@
 //
 package com.rs.lib.game;
 
-import com.rs.lib.util.MapUtils;
-import com.rs.lib.util.MapUtils.Structure;
 import com.rs.lib.util.Utils;
 
 public class WorldTile {
@@ -120,23 +118,23 @@ public class WorldTile {
 	}
 	
 	public int getChunkId() {
-		return MapUtils.encode(Structure.CHUNK, getChunkX(), getChunkY());
+		return PackedTile.chunkId(getChunkX(), getChunkY(), 0);
 	}
 	
 	public int getChunkXInScene(int chunkId) {
-		return getChunkX() - MapUtils.decode(Structure.CHUNK, chunkId)[0];
+		return PackedTile.getChunkXInScene(x, chunkId);
 	}
 
 	public int getChunkYInScene(int chunkId) {
-		return getChunkY() - MapUtils.decode(Structure.CHUNK, chunkId)[1];
+		return PackedTile.getChunkYInScene(y, chunkId);
 	}
 
 	public int getXInScene(int chunkId) {
-		return getX() - MapUtils.decode(Structure.CHUNK, chunkId)[0] * 8;
+		return PackedTile.getXInScene(x, chunkId);
 	}
 
 	public int getYInScene(int chunkId) {
-		return getY() - MapUtils.decode(Structure.CHUNK, chunkId)[1] * 8;
+		return PackedTile.getYInScene(y, chunkId);
 	}
 
 	public int getChunkY() {
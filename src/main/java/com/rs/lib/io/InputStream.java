@@ -38,16 +38,36 @@ public final class InputStream extends Stream {
 		bitPosition += bitOffset;
 		int value = 0;
 		for (/**/; (bitOffset ^ 0xffffffff) < (i_8_ ^ 0xffffffff); i_8_ = 8) {
-			value += (BIT_MASK[i_8_] & buffer[bytePos++]) << -i_8_ + bitOffset;
+			value += (BIT_MASK[i_8_] & byteAt(bytePos++)) << -i_8_ + bitOffset;
 			bitOffset -= i_8_;
 		}
 		if ((i_8_ ^ 0xffffffff) == (bitOffset ^ 0xffffffff))
-			value += buffer[bytePos] & BIT_MASK[i_8_];
+			value += byteAt(bytePos) & BIT_MASK[i_8_];
 		else
-			value += (buffer[bytePos] >> -bitOffset + i_8_ & BIT_MASK[bitOffset]);
+			value += (byteAt(bytePos) >> -bitOffset + i_8_ & BIT_MASK[bitOffset]);
 		return value;
 	}
 
+	/*
+	 * views share their array with whatever follows them, so nothing is read
+	 * at or past length
+	 */
+	private int byteAt(int position) {
+		return position < length ? buffer[position] : 0;
+	}
+
+	private int peekUnsignedByte() {
+		return byteAt(offset) & 0xff;
+	}
+
+	private int indexOfTerminator(int start) {
+		for (int i = start; i < length; i++) {
+			if (buffer[i] == 0)
+				return i;
+		}
+		throw new IllegalStateException("Unterminated string.");
+	}
+
 	public InputStream(int capacity) {
 		buffer = new byte[capacity];
 	}
@@ -57,6 +77,16 @@ public final class InputStream extends Stream {
 		this.length = buffer.length;
 	}
 
+	/*
+	 * view over buffer[offset, end) that shares the array instead of copying,
+	 * end is an absolute index into buffer and becomes the stream's length
+	 */
+	public InputStream(byte[] buffer, int offset, int end) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = end;
+	}
+
 	public void checkCapacity(int length) {
 		if (offset + length >= buffer.length) {
 			byte[] newBuffer = new byte[(offset + length) * 2];
@@ -95,8 +125,7 @@ public final class InputStream extends Stream {
 	}
 	
 	public int read24BitUnsignedInteger() {
-		this.offset += 3;
-		return ((buffer[offset - 3] & 0xff) << 16) + (buffer[offset - 1] & 0xff) + ((buffer[offset - 2] & 0xff) << 8);
+		return (readUnsignedByte() << 16) + (readUnsignedByte() << 8) + readUnsignedByte();
 	}
 
 	public int readByte() {
@@ -205,7 +234,7 @@ public final class InputStream extends Stream {
 		/*
 		 * if(Settings.CLIENT_BUILD < 670) return readUnsignedShort();
 		 */
-		if ((buffer[offset] ^ 0xffffffff) <= -1) {
+		if (byteAt(offset) >= 0) {
 			int value = readUnsignedShort();
 			if (value == 32767) {
 				return -1;
@@ -258,12 +287,10 @@ public final class InputStream extends Stream {
 	}
 
 	public String readString() {
-		int i_1 = this.offset;
-		while (this.buffer[++this.offset - 1] != 0) {
-			
-		}
-		int i_2 = this.offset - i_1 - 1;
-		return i_2 == 0 ? "" : Utils.readString(this.buffer, i_1, i_2);
+		int start = offset;
+		int end = indexOfTerminator(start);
+		offset = end + 1;
+		return end == start ? "" : Utils.readString(buffer, start, end - start);
 	}
 
 	public String readJagString() {
@@ -277,28 +304,20 @@ public final class InputStream extends Stream {
 	}
 	
 	public String readGJString() {
-        byte b = this.buffer[++this.offset - 1];
-        if (b != 0) {
+        if (offset >= length || buffer[offset++] != 0)
             throw new IllegalStateException("");
-        } else {
-            int idx = this.offset;
-            while (this.buffer[++this.offset - 1] != 0) {
-                ;
-            }
-            int i_4 = this.offset - idx - 1;
-            return i_4 == 0 ? "" : Utils.readString(this.buffer, idx, i_4);
-        }
+        return readString();
 	}
 	
 	public final int readSignedSmart() {
-		int v = this.buffer[this.offset] & 0xff;
+		int v = peekUnsignedByte();
 		if (v < 128)
 			return readUnsignedByte() - 64;
 		return readUnsignedShort() - 49152;
 	}
 
 	public int readUnsignedSmart() {
-		int i = buffer[offset] & 0xff;
+		int i = peekUnsignedByte();
 		if (i >= 128) {
 			return readUnsignedShort() - 32768;
 		}
@@ -306,7 +325,7 @@ public final class InputStream extends Stream {
 	}
 	
 	public int readUnsignedSmartNegOne() {
-		int i = buffer[offset] & 0xff;
+		int i = peekUnsignedByte();
 		if (i >= 128) {
 			return readUnsignedShort() - 32769;
 		}
@@ -314,7 +333,7 @@ public final class InputStream extends Stream {
 	}
 
 	public String readNullString() {
-		if (this.buffer[this.offset] == 0) {
+		if (offset < length && buffer[offset] == 0) {
 			this.offset++;
 			return null;
 		}
@@ -327,7 +346,7 @@ public final class InputStream extends Stream {
             int bitSize = size * 8;
             long val;
             for (val = 0L; bitSize >= 0; bitSize -= 8) {
-                val |= ((long) this.buffer[++this.offset - 1] & 0xffL) << bitSize;
+                val |= (long) readUnsignedByte() << bitSize;
             }
             return val;
         } else {
@@ -50,12 +50,19 @@ public final class OutputStream extends Stream {
 
 	public void checkCapacityPosition(int position) {
 		if (position >= getBuffer().length) {
-			byte[] newBuffer = new byte[position + 16];
+			byte[] newBuffer = new byte[Math.max(position + 16, getBuffer().length << 1)];
 			System.arraycopy(getBuffer(), 0, newBuffer, 0, getBuffer().length);
 			setBuffer(newBuffer);
 		}
 	}
 
+	public void reset() {
+		offset = 0;
+		length = 0;
+		bitPosition = 0;
+		opcodeStart = 0;
+	}
+
 	public void skip(int length) {
 		setOffset(getOffset() + length);
 	}
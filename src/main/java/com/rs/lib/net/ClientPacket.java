@@ -16,9 +16,6 @@
 //
 package com.rs.lib.net;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public enum ClientPacket {
 	KEEPALIVE(0, 0),
 	PLAYER_OP6(1, 3),
@@ -128,16 +125,22 @@ public enum ClientPacket {
 	private int id;
 	private int size;
 	
-	private static Map<Integer, ClientPacket> PACKET_MAP = new HashMap<>();
+	private static final ClientPacket[] PACKETS;
 	
 	static {
+		int maxOpcode = 0;
+		for (ClientPacket packet : ClientPacket.values())
+			maxOpcode = Math.max(maxOpcode, packet.id);
+		PACKETS = new ClientPacket[maxOpcode + 1];
 		for (ClientPacket packet : ClientPacket.values()) {
-			PACKET_MAP.put(packet.id, packet);
+			PACKETS[packet.id] = packet;
 		}
 	}
 	
 	public static ClientPacket forOpcode(int opcode) {
-		return PACKET_MAP.get(opcode);
+		if (opcode < 0 || opcode >= PACKETS.length)
+			return null;
+		return PACKETS[opcode];
 	}
 
 	ClientPacket(int id, int size) {
@@ -0,0 +1,111 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Load seen by one netty i/o worker. A channel never changes worker so every
+ * session is attributed to the worker that fired its connect event.
+ */
+public final class IOWorkerStats {
+
+	private static final List<IOWorkerStats> WORKERS = new CopyOnWriteArrayList<>();
+	private static final ThreadLocal<IOWorkerStats> CURRENT = ThreadLocal.withInitial(() -> {
+		IOWorkerStats stats = new IOWorkerStats(Thread.currentThread().getName());
+		WORKERS.add(stats);
+		return stats;
+	});
+
+	private final String name;
+	private final AtomicInteger sessions = new AtomicInteger();
+	private final AtomicInteger pendingWrites = new AtomicInteger();
+	private final AtomicLong messages = new AtomicLong();
+	private final AtomicLong busyNanos = new AtomicLong();
+
+	private IOWorkerStats(String name) {
+		this.name = name;
+	}
+
+	/*
+	 * stats of the calling i/o thread, created on first use
+	 */
+	static IOWorkerStats current() {
+		return CURRENT.get();
+	}
+
+	public static List<IOWorkerStats> getWorkers() {
+		return new ArrayList<>(WORKERS);
+	}
+
+	void sessionOpened() {
+		sessions.incrementAndGet();
+	}
+
+	void sessionClosed() {
+		sessions.decrementAndGet();
+	}
+
+	void writeQueued() {
+		pendingWrites.incrementAndGet();
+	}
+
+	void writeCompleted() {
+		pendingWrites.decrementAndGet();
+	}
+
+	void messageHandled(long nanos) {
+		messages.incrementAndGet();
+		busyNanos.addAndGet(nanos);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSessions() {
+		return sessions.get();
+	}
+
+	/*
+	 * writes handed to the channel of a session on this worker that have not
+	 * completed yet
+	 */
+	public int getQueueDepth() {
+		return pendingWrites.get();
+	}
+
+	public long getMessages() {
+		return messages.get();
+	}
+
+	/*
+	 * nanoseconds spent decoding inbound messages
+	 */
+	public long getBusyNanos() {
+		return busyNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return "[" + name + ": sessions=" + getSessions() + ", queueDepth=" + getQueueDepth() + ", messages=" + getMessages() + ", busyMs=" + (getBusyNanos() / 1000000L) + "]";
+	}
+}
@@ -19,9 +19,11 @@ package com.rs.lib.net;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetSocketAddress;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
@@ -43,6 +45,20 @@ public final class ServerChannelHandler extends SimpleChannelHandler {
 	private static ServerBootstrap BOOTSTRAP;
 	private Class<? extends Decoder> baseDecoderClass;
 
+	/*
+	 * inbound buffers grown past this are swapped for a fresh one once drained
+	 */
+	public static int MAX_RETAINED_INBOUND = 64 * 1024;
+
+	/*
+	 * netty i/o workers, each channel stays on the worker it was assigned so
+	 * reads and writes of one session are never reordered
+	 */
+	public static int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static final AtomicLong INBOUND_BYTES = new AtomicLong();
+	private static final AtomicLong INBOUND_ALLOCATED_BYTES = new AtomicLong();
+
 	public static final void init(int port, Class<? extends Decoder> baseDecoderClass) {
 		new ServerChannelHandler(port, baseDecoderClass);
 	}
@@ -54,7 +70,7 @@ public final class ServerChannelHandler extends SimpleChannelHandler {
 	private ServerChannelHandler(int port, Class<? extends Decoder> baseDecoderClass) {
 		this.baseDecoderClass = baseDecoderClass;
 		CHANNELS = new DefaultChannelGroup();
-		BOOTSTRAP = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newSingleThreadExecutor(new DecoderThreadFactory()), Executors.newSingleThreadExecutor(new DecoderThreadFactory()), 1));
+		BOOTSTRAP = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newSingleThreadExecutor(new DecoderThreadFactory()), Executors.newFixedThreadPool(Math.max(1, WORKER_THREADS), new DecoderThreadFactory()), Math.max(1, WORKER_THREADS)));
 		BOOTSTRAP.getPipeline().addLast("handler", this);
 		BOOTSTRAP.setOption("reuseAddress", true); // reuses adress for bind
 		BOOTSTRAP.setOption("child.tcpNoDelay", true);
@@ -76,7 +92,11 @@ public final class ServerChannelHandler extends SimpleChannelHandler {
 	@Override
 	public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
 		try {
-			ctx.setAttachment(new Session(e.getChannel(), baseDecoderClass.getConstructor().newInstance()));
+			Session session = new Session(e.getChannel(), baseDecoderClass.getConstructor().newInstance());
+			IOWorkerStats worker = IOWorkerStats.current();
+			worker.sessionOpened();
+			session.setWorker(worker);
+			ctx.setAttachment(session);
 			if (Globals.DEBUG)
 				System.out.println("Connection from " + e.getChannel().getRemoteAddress());
 		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException e1) {
@@ -90,6 +110,10 @@ public final class ServerChannelHandler extends SimpleChannelHandler {
 			System.out.println("Connection disconnected " + e.getChannel().getRemoteAddress());
 		Object sessionObject = ctx.getAttachment();
 		if (sessionObject != null && sessionObject instanceof Session s) {
+			if (s.getWorker() != null) {
+				s.getWorker().sessionClosed();
+				s.setWorker(null);
+			}
 			if (s.getDecoder() == null)
 				return;
 			if (s.getDecoder() instanceof GameDecoder)
@@ -109,27 +133,45 @@ public final class ServerChannelHandler extends SimpleChannelHandler {
 				return;
 			}
 			
-			byte[] b = new byte[(session.buffer.length - session.bufferOffset) + buf.readableBytes()];
-			if ((session.buffer.length - session.bufferOffset) > 0)
-				System.arraycopy(session.buffer, session.bufferOffset, b, 0, session.buffer.length - session.bufferOffset);
-			buf.readBytes(b, session.buffer.length - session.bufferOffset, b.length - (session.buffer.length - session.bufferOffset));
-
-			session.buffer = b;
-			session.bufferOffset = 0;
-
+			ChannelBuffer inbound = session.inbound;
+			inbound.discardReadBytes();
+			int capacity = inbound.capacity();
+			INBOUND_BYTES.addAndGet(buf.readableBytes());
+			inbound.writeBytes(buf);
+			if (inbound.capacity() != capacity)
+				INBOUND_ALLOCATED_BYTES.addAndGet(inbound.capacity());
+
+			long decodeStart = System.nanoTime();
 			try {
-				InputStream is = new InputStream(b);
-				session.bufferOffset = session.getDecoder()._decode(is);
-				if (session.bufferOffset < 0) { // drop
-					session.buffer = new byte[0];
-					session.bufferOffset = 0;
-				}
+				int start = inbound.arrayOffset() + inbound.readerIndex();
+				InputStream is = new InputStream(inbound.array(), start, inbound.arrayOffset() + inbound.writerIndex());
+				int offset = session.getDecoder()._decode(is);
+				if (offset < 0) // drop
+					inbound.clear();
+				else
+					inbound.readerIndex(Math.min(inbound.readerIndex() + offset - start, inbound.writerIndex()));
 			} catch (Throwable er) {
 				Logger.handle(er);
 			}
+			if (session.getWorker() != null)
+				session.getWorker().messageHandled(System.nanoTime() - decodeStart);
+			if (!inbound.readable() && inbound.capacity() > MAX_RETAINED_INBOUND)
+				session.inbound = ChannelBuffers.dynamicBuffer();
 		}
 	}
 
+	/*
+	 * bytes read off the wire and bytes allocated growing session inbound
+	 * buffers, allocations per received byte is the ratio of the two
+	 */
+	public static long getInboundBytes() {
+		return INBOUND_BYTES.get();
+	}
+
+	public static long getInboundAllocatedBytes() {
+		return INBOUND_ALLOCATED_BYTES.get();
+	}
+
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent ee) throws Exception {
 		
@@ -18,6 +18,9 @@ package com.rs.lib.net;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -30,9 +33,31 @@ import com.rs.lib.io.IsaacKeyPair;
 import com.rs.lib.io.OutputStream;
 import com.rs.lib.net.packets.Packet;
 import com.rs.lib.net.packets.PacketEncoder;
+import com.rs.lib.net.packets.SharedPacket;
+import com.rs.lib.util.Logger;
 
 public class Session {
 
+	/*
+	 * when true writes only append to the queued stream and every dirty
+	 * session goes out in one channel write from flushPending at tick end
+	 */
+	public static boolean BATCH_FLUSH = false;
+
+	/*
+	 * unwritten byte limit game sessions are given when their decoder is set,
+	 * grab sessions push whole archives and stay unlimited
+	 */
+	public static long GAME_MAX_UNWRITTEN_BYTES = 1024 * 1024;
+
+	private static final int MAX_SPARE_CAPACITY = 64 * 1024;
+	private static final Queue<Session> PENDING_FLUSH = new ConcurrentLinkedQueue<>();
+	private static final AtomicLong TICK_BYTES = new AtomicLong();
+	private static final AtomicLong TICK_WRITES = new AtomicLong();
+	private static final AtomicLong DROPPED_PACKETS = new AtomicLong();
+	private static volatile long lastTickBytes;
+	private static volatile long lastTickWrites;
+
 	private Channel channel;
 	private Decoder decoder;
 	private Encoder encoder;
@@ -43,8 +68,12 @@ public class Session {
 	private final transient Object streamLock = new Object();
 	private transient Queue<Packet> packetQueue;
 		
-    protected byte[] buffer = new byte[0];
-    protected int bufferOffset = 0;
+	protected ChannelBuffer inbound = ChannelBuffers.dynamicBuffer();
+	private transient IOWorkerStats worker;
+	private transient boolean flushScheduled;
+	private final transient AtomicLong unwrittenBytes = new AtomicLong();
+	private transient long maxUnwrittenBytes;
+	private final transient AtomicReference<OutputStream> spareStream = new AtomicReference<>();
 
 	public Session(Channel channel, Decoder defaultDecoder) {
 		this.channel = channel;
@@ -88,6 +117,19 @@ public class Session {
 		}
 	}
 	
+	public void writeToQueue(SharedPacket... packets) {
+		synchronized(streamLock) {
+			for (SharedPacket packet : packets)
+				packet.writeToStream(queuedStream, this);
+		}
+	}
+	
+	public void writeToQueue(SharedPacket packet, int sceneBaseChunkId) {
+		synchronized(streamLock) {
+			packet.writeToStream(queuedStream, this, sceneBaseChunkId);
+		}
+	}
+	
 	public void writeToQueue(ServerPacket packet) {
 		synchronized(streamLock) {
 			if (packet.size != 0)
@@ -98,46 +140,219 @@ public class Session {
 	
 	public ChannelFuture flush() {
 		synchronized(streamLock) {
-			ChannelFuture future = write(queuedStream);
-			queuedStream = new OutputStream();
-			return future;
+			flushScheduled = false;
+			return flushQueued();
+		}
+	}
+
+	/*
+	 * hands the queued stream's array to netty as is and swaps in the spare,
+	 * the sent stream becomes the spare again once netty is done with it
+	 */
+	private ChannelFuture flushQueued() {
+		int length = queuedStream.getOffset();
+		if (channel == null || !channel.isConnected()) {
+			queuedStream.reset();
+			return null;
+		}
+		OutputStream sent = queuedStream;
+		ChannelFuture future = writeChannel(ChannelBuffers.wrappedBuffer(sent.getBuffer(), 0, length));
+		if (future == null) {
+			sent.reset();
+			return null;
+		}
+		OutputStream spare = spareStream.getAndSet(null);
+		queuedStream = spare != null ? spare : new OutputStream(Math.max(16, Math.min(length, MAX_SPARE_CAPACITY)));
+		if (sent.getBuffer().length <= MAX_SPARE_CAPACITY) {
+			future.addListener(f -> {
+				sent.reset();
+				spareStream.set(sent);
+			});
 		}
+		return future;
+	}
+
+	private void flushOrSchedule() {
+		if (!BATCH_FLUSH) {
+			flush();
+			return;
+		}
+		if (!flushScheduled) {
+			flushScheduled = true;
+			PENDING_FLUSH.add(this);
+		}
+	}
+
+	/*
+	 * flushes every session written to since the last call and rolls the per
+	 * tick counters over
+	 */
+	public static void flushPending() {
+		Session session;
+		while ((session = PENDING_FLUSH.poll()) != null)
+			session.flush();
+		lastTickBytes = TICK_BYTES.getAndSet(0);
+		lastTickWrites = TICK_WRITES.getAndSet(0);
 	}
 	
 	public void write(PacketEncoder... encoders) {
 		synchronized(streamLock) {
 			for (PacketEncoder enc : encoders)
 				enc.writeToStream(queuedStream, this);
-			flush();
+			flushOrSchedule();
 		}
 	}
+
+	public void write(SharedPacket... packets) {
+		synchronized(streamLock) {
+			for (SharedPacket packet : packets)
+				packet.writeToStream(queuedStream, this);
+			flushOrSchedule();
+		}
+	}
+
+	public void write(SharedPacket packet, int sceneBaseChunkId) {
+		synchronized(streamLock) {
+			packet.writeToStream(queuedStream, this, sceneBaseChunkId);
+			flushOrSchedule();
+		}
+	}
+
+	/*
+	 * encodes the body once and writes it to every open session, returns the
+	 * number of sessions written to, scene relative packets need the overload
+	 * taking each session's scene base
+	 */
+	public static int broadcast(PacketEncoder encoder, Iterable<? extends Session> sessions) {
+		return broadcast(encoder.encodeShared(), sessions);
+	}
+
+	public static int broadcast(SharedPacket packet, Iterable<? extends Session> sessions) {
+		if (packet.isSceneRelative())
+			throw new IllegalArgumentException(packet.getPacket() + " is scene relative, broadcast it with each session's scene base.");
+		return broadcast(packet, sessions, session -> -1);
+	}
+
+	public static <S extends Session> int broadcast(PacketEncoder encoder, Iterable<? extends S> sessions, ToIntFunction<? super S> sceneBase) {
+		return broadcast(encoder.encodeShared(), sessions, sceneBase);
+	}
+
+	public static <S extends Session> int broadcast(SharedPacket packet, Iterable<? extends S> sessions, ToIntFunction<? super S> sceneBase) {
+		int count = 0;
+		for (S session : sessions) {
+			if (session == null || session.getChannel() == null || !session.getChannel().isConnected())
+				continue;
+			session.write(packet, sceneBase.applyAsInt(session));
+			count++;
+		}
+		return count;
+	}
+
+	/*
+	 * same as write but the packets are dropped while the channel is over its
+	 * high water mark
+	 */
+	public boolean writeLowPriority(PacketEncoder... encoders) {
+		if (channel != null && !channel.isWritable()) {
+			DROPPED_PACKETS.addAndGet(encoders.length);
+			return false;
+		}
+		write(encoders);
+		return true;
+	}
 	
 	public void write(ServerPacket packet) {
 		synchronized(streamLock) {
 			if (packet.size != 0)
 				throw new Error("Cannot write empty packet for a packet that isn't meant to be empty.");
 			queuedStream.writePacket(isaac, packet.opcode, true);
-			flush();
+			flushOrSchedule();
 		}
 	}
 	
 	public void writeNoIsaac(PacketEncoder encoder) {
 		synchronized(streamLock) {
 			encoder.writeToStream(queuedStream, null);
-			flush();
+			flushOrSchedule();
 		}
 	}
 
 	public final ChannelFuture write(OutputStream outStream) {
 		if (outStream == null || !channel.isConnected())
 			return null;
-		return channel.write(ChannelBuffers.copiedBuffer(outStream.getBuffer(), 0, outStream.getOffset()));
+		return write(ChannelBuffers.copiedBuffer(outStream.getBuffer(), 0, outStream.getOffset()));
 	}
 
+	/*
+	 * anything still queued goes out first so raw writes never overtake
+	 * packets that were already ciphered into the queued stream
+	 */
 	public final ChannelFuture write(ChannelBuffer outStream) {
 		if (outStream == null || !channel.isConnected())
 			return null;
-		return channel.write(outStream);
+		synchronized(streamLock) {
+			if (queuedStream.getOffset() > 0)
+				flushQueued();
+			return writeChannel(outStream);
+		}
+	}
+
+	private ChannelFuture writeChannel(ChannelBuffer buffer) {
+		int length = buffer.readableBytes();
+		long max = maxUnwrittenBytes;
+		if (unwrittenBytes.addAndGet(length) > max && max > 0) {
+			unwrittenBytes.addAndGet(-length);
+			Logger.log("Session", "Closing " + getIP() + " with " + unwrittenBytes.get() + " bytes unwritten.");
+			channel.close();
+			return null;
+		}
+		TICK_BYTES.addAndGet(length);
+		TICK_WRITES.incrementAndGet();
+		IOWorkerStats worker = this.worker;
+		if (worker != null)
+			worker.writeQueued();
+		ChannelFuture future = channel.write(buffer);
+		future.addListener(f -> {
+			unwrittenBytes.addAndGet(-length);
+			if (worker != null)
+				worker.writeCompleted();
+		});
+		return future;
+	}
+
+	public long getUnwrittenBytes() {
+		return unwrittenBytes.get();
+	}
+
+	/*
+	 * 0 or less leaves the session unlimited, which is the default
+	 */
+	public void setMaxUnwrittenBytes(long maxUnwrittenBytes) {
+		this.maxUnwrittenBytes = maxUnwrittenBytes;
+	}
+
+	public long getMaxUnwrittenBytes() {
+		return maxUnwrittenBytes;
+	}
+
+	public static long getLastTickBytes() {
+		return lastTickBytes;
+	}
+
+	public static long getLastTickWrites() {
+		return lastTickWrites;
+	}
+
+	public static long getDroppedPackets() {
+		return DROPPED_PACKETS.get();
+	}
+
+	final void setWorker(IOWorkerStats worker) {
+		this.worker = worker;
+	}
+
+	public final IOWorkerStats getWorker() {
+		return worker;
 	}
 
 	public final Channel getChannel() {
@@ -19,9 +19,7 @@ package com.rs.lib.net.decoders;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import com.rs.lib.Globals;
@@ -36,10 +34,11 @@ import com.rs.lib.util.Utils;
 
 public final class GameDecoder extends Decoder {
 	
-	private static Map<ClientPacket, Packet> PACKET_DECODERS = new HashMap<>();
+	private static Packet[] PACKET_DECODERS = new Packet[ClientPacket.values().length];
 	
 	public GameDecoder(Session session) {
 		super(session);
+		session.setMaxUnwrittenBytes(Session.GAME_MAX_UNWRITTEN_BYTES);
 	}
 	
 	public static void loadPacketDecoders() throws InvocationTargetException, NoSuchMethodException {
@@ -49,14 +48,15 @@ public final class GameDecoder extends Decoder {
 			for (Class<?> clazz : classes) {
 				ClientPacket[] packets = clazz.getAnnotation(PacketDecoder.class).value();
 				for (ClientPacket packet : packets) {
-					if (PACKET_DECODERS.put(packet, (Packet) clazz.getConstructor().newInstance()) != null)
+					if (PACKET_DECODERS[packet.ordinal()] != null)
 						System.err.println("Duplicate decoders for packet: " + packet);
+					PACKET_DECODERS[packet.ordinal()] = (Packet) clazz.getConstructor().newInstance();
 				}
 			}
 			
 			Set<ClientPacket> missing = new HashSet<>();
 			for (ClientPacket packet : ClientPacket.values()) {
-				if (PACKET_DECODERS.get(packet) == null) {
+				if (PACKET_DECODERS[packet.ordinal()] == null) {
 					missing.add(packet);
 				}
 			}
@@ -94,19 +94,19 @@ public final class GameDecoder extends Decoder {
 				return start;
 			}
 
-			byte[] data = new byte[length];
-			stream.readBytes(data);
+			int end = stream.getOffset() + length;
 			try {
-				queuePacket(packet, new InputStream(data));
+				queuePacket(packet, new InputStream(stream.getBuffer(), stream.getOffset(), end));
 			} catch (Throwable e) {
 				Logger.handle(e);
 			}
+			stream.setOffset(end);
 		}
 		return stream.getOffset();
 	}
 
 	public void queuePacket(ClientPacket packet, InputStream stream) {
-		Packet decoder = PACKET_DECODERS.get(packet);
+		Packet decoder = PACKET_DECODERS[packet.ordinal()];
 		if (decoder != null)
 			session.queuePacket(decoder.decodeAndCreateInstance(stream).setOpcode(packet));
 	}
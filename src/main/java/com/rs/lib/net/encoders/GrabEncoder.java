@@ -17,6 +17,7 @@
 package com.rs.lib.net.encoders;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -24,6 +25,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 
 import com.rs.cache.Cache;
+import com.rs.cache.JS5ResponseCache;
 import com.rs.lib.Constants;
 import com.rs.lib.io.OutputStream;
 import com.rs.lib.net.Encoder;
@@ -89,27 +91,24 @@ public final class GrabEncoder extends Encoder {
 			e.printStackTrace();
 		}
 
-		byte[] archive = indexId == 255 ? Cache.STORE.getIndex255().getArchiveData(archiveId) : Cache.STORE.getIndices()[indexId].getMainFile().getArchiveData(archiveId);
-		if (archive == null)
-			return null;
-		int compression = archive[0] & 0xff;
-		int length = ((archive[1] & 0xff) << 24) + ((archive[2] & 0xff) << 16) + ((archive[3] & 0xff) << 8) + (archive[4] & 0xff);
-		int settings = compression;
-		if (!priority)
-			settings |= 0x80;
-		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
-		buffer.writeByte(indexId);
-		buffer.writeInt(archiveId);
-		buffer.writeByte(settings);
-		buffer.writeInt(length);
-		int realLength = compression != 0 ? length + 4 : length;
-		for (int index = 5; index < realLength + 5; index++) {
-			if (buffer.writerIndex() % 512 == 0) {
-				buffer.writeByte(255);
+		int v = encryptionValue;
+		JS5ResponseCache responseCache = Cache.STORE.getResponseCache();
+		if (responseCache != null && v == 0) {
+			ByteBuffer response = responseCache.get(indexId, archiveId, priority);
+			if (response == null) {
+				long stamp = responseCache.getStamp();
+				byte[] archive = getArchiveData(indexId, archiveId);
+				if (archive == null)
+					return null;
+				response = responseCache.put(indexId, archiveId, priority, JS5ResponseCache.frame(indexId, archiveId, archive, priority), stamp);
 			}
-			buffer.writeByte(archive[index]);
+			return ChannelBuffers.wrappedBuffer(response);
 		}
-		int v = encryptionValue;
+
+		byte[] archive = getArchiveData(indexId, archiveId);
+		if (archive == null)
+			return null;
+		ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(JS5ResponseCache.frame(indexId, archiveId, archive, priority));
 		if (v != 0) {
 			for (int i = 0; i < buffer.arrayOffset(); i++)
 				buffer.setByte(i, buffer.getByte(i) ^ v);
@@ -117,6 +116,10 @@ public final class GrabEncoder extends Encoder {
 		return buffer;
 	}
 
+	private static byte[] getArchiveData(int indexId, int archiveId) {
+		return indexId == 255 ? Cache.STORE.getIndex255().getArchiveData(archiveId) : Cache.STORE.getIndices()[indexId].getMainFile().getArchiveData(archiveId);
+	}
+
 	public void setEncryptionValue(int encryptionValue) {
 		this.encryptionValue = encryptionValue;
 	}
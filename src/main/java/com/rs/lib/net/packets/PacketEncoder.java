@@ -49,6 +49,13 @@ public abstract class PacketEncoder {
 		}
 	}
 	
+	/*
+	 * encodes the body once so it can be written to many sessions
+	 */
+	public SharedPacket encodeShared() {
+		return SharedPacket.encode(this);
+	}
+	
 	public ServerPacket getPacket() {
 		return packet;
 	}
@@ -0,0 +1,108 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.net.packets;
+
+import java.util.function.Consumer;
+
+import com.rs.lib.io.IsaacKeyPair;
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.ServerPacket;
+import com.rs.lib.net.Session;
+
+/*
+ * A packet body encoded once and written to any number of sessions. Only the
+ * isaac opcode and size header are written per session, the body bytes are
+ * shared and never modified after construction. Zone packets are scene
+ * relative, for those the leading scene header is written per session from
+ * that session's scene base and only the rest of the body is shared.
+ */
+public final class SharedPacket {
+
+	public interface SceneHeader {
+		void write(OutputStream stream, int sceneBaseChunkId);
+	}
+
+	private final ServerPacket packet;
+	private final byte[] body;
+	private final SceneHeader sceneHeader;
+	private final int sceneHeaderLength;
+
+	private SharedPacket(ServerPacket packet, byte[] body, SceneHeader sceneHeader, int sceneHeaderLength) {
+		this.packet = packet;
+		this.body = body;
+		this.sceneHeader = sceneHeader;
+		this.sceneHeaderLength = sceneHeaderLength;
+	}
+
+	public static SharedPacket encode(PacketEncoder encoder) {
+		return encode(encoder.getPacket(), null, 0, encoder::encodeBody);
+	}
+
+	/*
+	 * sceneHeader must always write exactly sceneHeaderLength bytes
+	 */
+	public static SharedPacket encodeSceneRelative(ServerPacket packet, SceneHeader sceneHeader, int sceneHeaderLength, Consumer<OutputStream> body) {
+		return encode(packet, sceneHeader, sceneHeaderLength, body);
+	}
+
+	private static SharedPacket encode(ServerPacket packet, SceneHeader sceneHeader, int sceneHeaderLength, Consumer<OutputStream> encoder) {
+		OutputStream stream = new OutputStream();
+		encoder.accept(stream);
+		byte[] body = new byte[stream.getOffset()];
+		System.arraycopy(stream.getBuffer(), 0, body, 0, body.length);
+		int length = sceneHeaderLength + body.length;
+		if ((packet.size == -1 && length > 255) || (packet.size == -2 && length > 65535))
+			throw new IllegalStateException("Body of " + packet + " too large: " + length);
+		return new SharedPacket(packet, body, sceneHeader, sceneHeaderLength);
+	}
+
+	public void writeToStream(OutputStream stream, Session session) {
+		if (sceneHeader != null)
+			throw new IllegalStateException(packet + " is scene relative and needs the recipient's scene base.");
+		writeToStream(stream, session, -1);
+	}
+
+	/*
+	 * sceneBaseChunkId is only read for scene relative packets
+	 */
+	public void writeToStream(OutputStream stream, Session session, int sceneBaseChunkId) {
+		IsaacKeyPair isaac = session == null ? null : session.getIsaac();
+		int length = sceneHeaderLength + body.length;
+		stream.checkCapacityPosition(stream.getOffset() + length + 4);
+		stream.writePacket(isaac, packet.opcode, true);
+		if (packet.size == -1)
+			stream.writeByte(length);
+		else if (packet.size == -2)
+			stream.writeShort(length);
+		if (sceneHeader != null)
+			sceneHeader.write(stream, sceneBaseChunkId);
+		stream.writeBytes(body);
+	}
+
+	public boolean isSceneRelative() {
+		return sceneHeader != null;
+	}
+
+	public ServerPacket getPacket() {
+		return packet;
+	}
+
+	public int getBodyLength() {
+		return sceneHeaderLength + body.length;
+	}
+
+}
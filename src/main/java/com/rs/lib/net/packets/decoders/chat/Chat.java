@@ -35,7 +35,7 @@ public class Chat extends Packet {
 		Chat chat = new Chat();
 		chat.color = Utils.clampI(stream.readUnsignedByte(), 0, 12);
 		chat.effect = Utils.clampI(stream.readUnsignedByte(), 0, 5);
-		chat.message = Utils.fixChatMessage(Cache.STORE.getHuffman().readEncryptedMessage(200, stream));
+		chat.message = Cache.STORE.getHuffman().readChatMessage(200, stream);
 		return chat;
 	}
 	
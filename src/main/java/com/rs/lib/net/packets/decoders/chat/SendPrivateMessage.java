@@ -21,7 +21,6 @@ import com.rs.lib.io.InputStream;
 import com.rs.lib.net.ClientPacket;
 import com.rs.lib.net.packets.Packet;
 import com.rs.lib.net.packets.PacketDecoder;
-import com.rs.lib.util.Utils;
 
 @PacketDecoder(ClientPacket.SEND_PRIVATE_MESSAGE)
 public class SendPrivateMessage extends Packet {
@@ -33,7 +32,7 @@ public class SendPrivateMessage extends Packet {
 	public Packet decodeAndCreateInstance(InputStream stream) {
 		SendPrivateMessage p = new SendPrivateMessage();
 		p.toDisplayName = stream.readString();
-		p.message = Utils.fixChatMessage(Cache.STORE.getHuffman().readEncryptedMessage(150, stream));
+		p.message = Cache.STORE.getHuffman().readChatMessage(150, stream);
 		return p;
 	}
 
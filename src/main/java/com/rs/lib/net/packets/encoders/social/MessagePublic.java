@@ -47,10 +47,8 @@ public class MessagePublic extends PacketEncoder {
 			if (qc.getData() != null)
 				stream.writeBytes(qc.getData());
 		} else {
-			byte[] chatStr = new byte[250];
-			chatStr[0] = (byte) filtered.length();
-			int offset = 1 + Cache.STORE.getHuffman().encryptMessage(1, filtered.length(), chatStr, 0, filtered.getBytes());
-			stream.writeBytes(chatStr, 0, offset);
+			stream.writeByte(filtered.length());
+			Cache.STORE.getHuffman().encodeMessage(filtered, stream);
 		}
 	}
 
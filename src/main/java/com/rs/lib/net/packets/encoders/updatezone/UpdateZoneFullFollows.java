@@ -20,6 +20,7 @@ import com.rs.lib.game.WorldTile;
 import com.rs.lib.io.OutputStream;
 import com.rs.lib.net.ServerPacket;
 import com.rs.lib.net.packets.PacketEncoder;
+import com.rs.lib.net.packets.SharedPacket;
 
 public class UpdateZoneFullFollows extends PacketEncoder {
 	
@@ -34,6 +35,18 @@ public class UpdateZoneFullFollows extends PacketEncoder {
 
 	@Override
 	public void encodeBody(OutputStream stream) {
+		writeZone(stream, sceneBaseChunkId);
+	}
+
+	/*
+	 * the whole body is scene relative so nothing but the packet is shared
+	 */
+	@Override
+	public SharedPacket encodeShared() {
+		return SharedPacket.encodeSceneRelative(getPacket(), this::writeZone, 3, stream -> {});
+	}
+
+	private void writeZone(OutputStream stream, int sceneBaseChunkId) {
 		stream.writeByte128(tile.getYInScene(sceneBaseChunkId) >> 3);
 		stream.writeByte128(tile.getPlane());
 		stream.writeByte128(tile.getXInScene(sceneBaseChunkId) >> 3);
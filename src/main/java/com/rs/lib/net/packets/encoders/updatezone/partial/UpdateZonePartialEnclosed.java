@@ -20,6 +20,7 @@ import com.rs.lib.game.WorldTile;
 import com.rs.lib.io.OutputStream;
 import com.rs.lib.net.ServerPacket;
 import com.rs.lib.net.packets.PacketEncoder;
+import com.rs.lib.net.packets.SharedPacket;
 
 public class UpdateZonePartialEnclosed extends PacketEncoder {
 	
@@ -29,15 +30,33 @@ public class UpdateZonePartialEnclosed extends PacketEncoder {
 	
 	public UpdateZonePartialEnclosed(WorldTile tile, int sceneBaseChunkId, UpdateZoneEvent... events) {
 		super(ServerPacket.UPDATE_ZONE_PARTIAL_ENCLOSED);
+		this.tile = tile;
 		this.events = events;
 		this.sceneBaseChunkId = sceneBaseChunkId;
 	}
 
 	@Override
 	public void encodeBody(OutputStream stream) {
+		writeZone(stream, sceneBaseChunkId);
+		writeEvents(stream);
+	}
+
+	/*
+	 * the events are shared, the zone is written per session from its own
+	 * scene base
+	 */
+	@Override
+	public SharedPacket encodeShared() {
+		return SharedPacket.encodeSceneRelative(getPacket(), this::writeZone, 3, this::writeEvents);
+	}
+
+	private void writeZone(OutputStream stream, int sceneBaseChunkId) {
 		stream.write128Byte(tile.getYInScene(sceneBaseChunkId) >> 3);
 		stream.writeByte128(tile.getPlane());
 		stream.writeByte(tile.getXInScene(sceneBaseChunkId) >> 3);
+	}
+
+	private void writeEvents(OutputStream stream) {
 		for (UpdateZoneEvent event : events) {
 			stream.writeByte(event.getPacket().ordinal());
 			event.getEncoder().encodeBody(stream);
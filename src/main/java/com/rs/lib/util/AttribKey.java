@@ -0,0 +1,136 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Typed GenericAttribMap key. Keys are interned per type and name for the life
+ * of the process so the same attribute always has the same slot. Only build
+ * them from fixed names and hold them in static finals, never from names put
+ * together at runtime. The string api of GenericAttribMap doesn't intern.
+ */
+public final class AttribKey<T> {
+
+	public enum Type {
+		INT('I'),
+		LONG('L'),
+		DOUBLE('D'),
+		BOOLEAN('B'),
+		OBJECT('O');
+
+		private final char prefix;
+
+		private Type(char prefix) {
+			this.prefix = prefix;
+		}
+
+		public char getPrefix() {
+			return prefix;
+		}
+
+		static Type forPrefix(char prefix) {
+			for (Type type : values())
+				if (type.prefix == prefix)
+					return type;
+			return null;
+		}
+	}
+
+	private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final ConcurrentHashMap<String, AttribKey<?>>[] KEYS = new ConcurrentHashMap[Type.values().length];
+
+	static {
+		for (int i = 0; i < KEYS.length; i++)
+			KEYS[i] = new ConcurrentHashMap<>();
+	}
+
+	private final Type type;
+	private final String name;
+	private final String storageKey;
+	private final int slot;
+
+	private AttribKey(Type type, String name) {
+		this.type = type;
+		this.name = name;
+		this.storageKey = type.prefix + name;
+		this.slot = NEXT_SLOT.getAndIncrement();
+	}
+
+	public static AttribKey<Integer> intKey(String name) {
+		return get(Type.INT, name);
+	}
+
+	public static AttribKey<Long> longKey(String name) {
+		return get(Type.LONG, name);
+	}
+
+	public static AttribKey<Double> doubleKey(String name) {
+		return get(Type.DOUBLE, name);
+	}
+
+	public static AttribKey<Boolean> boolKey(String name) {
+		return get(Type.BOOLEAN, name);
+	}
+
+	public static <T> AttribKey<T> objectKey(String name) {
+		return get(Type.OBJECT, name);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> AttribKey<T> get(Type type, String name) {
+		ConcurrentHashMap<String, AttribKey<?>> keys = KEYS[type.ordinal()];
+		AttribKey<?> key = keys.get(name);
+		if (key == null)
+			key = keys.computeIfAbsent(name, n -> new AttribKey<>(type, n));
+		return (AttribKey<T>) key;
+	}
+
+	/*
+	 * the interned key or null, never creates one
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> AttribKey<T> find(Type type, String name) {
+		return (AttribKey<T>) KEYS[type.ordinal()].get(name);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * type prefix plus name, the key this attribute is saved under
+	 */
+	public String getStorageKey() {
+		return storageKey;
+	}
+
+	int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public String toString() {
+		return storageKey;
+	}
+}
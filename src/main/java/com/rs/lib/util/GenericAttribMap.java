@@ -16,59 +16,260 @@
 //
 package com.rs.lib.util;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import com.rs.lib.util.AttribKey.Type;
 
 public class GenericAttribMap {
 	private ConcurrentHashMap<String, Object> attribs;
+
+	/*
+	 * Typed values live in an open addressed table keyed by AttribKey slot,
+	 * numbers and booleans as raw longs. attribs mirrors every write so saves
+	 * keep their format and is read back into the table after a load. The
+	 * string api only touches attribs, its names are never interned.
+	 */
+	private transient volatile Map<String, Object> loadedFrom;
+	private final transient StampedLock lock = new StampedLock();
+	private transient int[] slots;
+	private transient long[] values;
+	private transient Object[] objects;
+	private transient int size;
+	private transient volatile boolean hasLoose;
+	private final transient OpenAddressing.Mover mover = this::moveEntry;
 	
 	public GenericAttribMap() {
 		this.attribs = new ConcurrentHashMap<>();
+		resetTable(8);
+		this.loadedFrom = attribs;
+	}
+
+	public int getI(AttribKey<Integer> key, int def) {
+		return (int) get(key, def);
+	}
+
+	public int getI(AttribKey<Integer> key) {
+		return (int) get(key, 0);
+	}
+
+	public long getL(AttribKey<Long> key, long def) {
+		return get(key, def);
+	}
+
+	public long getL(AttribKey<Long> key) {
+		return get(key, 0);
+	}
+
+	public double getD(AttribKey<Double> key, double def) {
+		return Double.longBitsToDouble(get(key, Double.doubleToRawLongBits(def)));
+	}
+
+	public double getD(AttribKey<Double> key) {
+		return getD(key, 0.0);
+	}
+
+	public boolean getB(AttribKey<Boolean> key) {
+		return get(key, 0) != 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getO(AttribKey<T> key) {
+		ensureLoaded();
+		long stamp = lock.tryOptimisticRead();
+		Object value = lookupObject(key.getSlot());
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				value = lookupObject(key.getSlot());
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (value == null)
+			value = loose(key);
+		return (T) value;
+	}
+
+	public boolean has(AttribKey<?> key) {
+		ensureLoaded();
+		long stamp = lock.readLock();
+		try {
+			return OpenAddressing.indexOf(slots, key.getSlot()) != -1 || loose(key) != null;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public void setI(AttribKey<Integer> key, int value) {
+		put(key, value, null, value);
+	}
+
+	public void setL(AttribKey<Long> key, long value) {
+		put(key, value, null, value);
+	}
+
+	public void setD(AttribKey<Double> key, double value) {
+		put(key, Double.doubleToRawLongBits(value), null, value);
+	}
+
+	public void setB(AttribKey<Boolean> key, boolean value) {
+		put(key, value ? 1 : 0, null, value);
+	}
+
+	/*
+	 * null removes the attribute, returns the previous value
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T setO(AttribKey<T> key, T value) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			int index = OpenAddressing.indexOf(slots, key.getSlot());
+			Object old = index == -1 ? loose(key) : objects[index];
+			if (value == null) {
+				removeSlot(key.getSlot());
+				attribs.remove(key.getStorageKey());
+			} else {
+				store(key.getSlot(), 0, value);
+				attribs.put(key.getStorageKey(), value);
+			}
+			return (T) old;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * adds amount and returns the new value in one step
+	 */
+	public int incI(AttribKey<Integer> key, int amount) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			int index = OpenAddressing.indexOf(slots, key.getSlot());
+			int value = (index == -1 ? looseInt(key, 0) : (int) values[index]) + amount;
+			store(key.getSlot(), value, null);
+			attribs.put(key.getStorageKey(), value);
+			return value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int incI(AttribKey<Integer> key) {
+		return incI(key, 1);
+	}
+
+	public void remove(AttribKey<?> key) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			removeSlot(key.getSlot());
+			attribs.remove(key.getStorageKey());
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int removeI(AttribKey<Integer> key, int def) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			int index = OpenAddressing.indexOf(slots, key.getSlot());
+			int value = index == -1 ? looseInt(key, def) : (int) values[index];
+			removeSlot(key.getSlot());
+			attribs.remove(key.getStorageKey());
+			return value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int removeI(AttribKey<Integer> key) {
+		return removeI(key, 0);
+	}
+
+	public boolean removeB(AttribKey<Boolean> key) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			int index = OpenAddressing.indexOf(slots, key.getSlot());
+			boolean value = index == -1 ? looseBool(key) : values[index] != 0;
+			removeSlot(key.getSlot());
+			attribs.remove(key.getStorageKey());
+			return value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public long removeL(AttribKey<Long> key) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			int index = OpenAddressing.indexOf(slots, key.getSlot());
+			long value = index == -1 ? looseLong(key) : values[index];
+			removeSlot(key.getSlot());
+			attribs.remove(key.getStorageKey());
+			return value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public <T> T removeO(AttribKey<T> key) {
+		return setO(key, null);
 	}
 	
+	/*
+	 * the string api reads and writes attribs directly, exactly as it always
+	 * has. A write also drops any typed entry for the same name from the
+	 * table so typed reads fall through to attribs and see it.
+	 */
 	@SuppressWarnings("unchecked")
 	public <T> T setO(String name, Object value) {
-		if (value == null) {
-			Object old = attribs.remove(name);
-			return old == null ? null : (T) old;
-		}
+		if (value == null)
+			return removeO(name);
 		Object old = attribs.put("O"+name, value);
-		return old == null ? null : (T) old;
+		wroteName(Type.OBJECT, name);
+		return (T) old;
 	}
 	
 	@SuppressWarnings("unchecked")
 	public <T> T getO(String name) {
-		if (attribs.get("O"+name) == null)
-			return null;
 		return (T) attribs.get("O"+name);
 	}
 	
 	public void setI(String name, int value) {
 		attribs.put("I"+name, value);
+		wroteName(Type.INT, name);
 	}
 	
 	public void setD(String name, double value) {
 		attribs.put("D"+name, value);
+		wroteName(Type.DOUBLE, name);
 	}
 	
 	public void setB(String name, boolean value) {
 		attribs.put("B"+name, value);
+		wroteName(Type.BOOLEAN, name);
 	}
 	
 	public void setL(String name, long value) {
 		attribs.put("L"+name, value);
+		wroteName(Type.LONG, name);
 	}
 	
 	public boolean getB(String name) {
-		if (attribs.get("B"+name) == null)
-			return false;
-		return (Boolean) attribs.get("B"+name);
+		Object value = attribs.get("B"+name);
+		return value != null && (Boolean) value;
 	}
 	
 	public int getI(String name, int def) {
-		Object val = attribs.get("I"+name);
-		if (val == null)
-			return def;
-		return (int) (val instanceof Integer ? (int) val : (double) val);
+		Object value = attribs.get("I"+name);
+		return value == null ? def : ((Number) value).intValue();
 	}
 	
 	public int getI(String name) {
@@ -76,9 +277,8 @@ public class GenericAttribMap {
 	}
 	
 	public double getD(String name, double def) {
-		if (attribs.get("D"+name) == null)
-			return def;
-		return (Double) attribs.get("D"+name);
+		Object value = attribs.get("D"+name);
+		return value == null ? def : ((Number) value).doubleValue();
 	}
 	
 	public double getD(String name) {
@@ -86,47 +286,242 @@ public class GenericAttribMap {
 	}
 	
 	public long getL(String name) {
-		if (attribs.get("L"+name) == null)
-			return 0;
-		return (Long) attribs.get("L"+name);
+		Object value = attribs.get("L"+name);
+		return value == null ? 0 : ((Number) value).longValue();
 	}
 	
 	public void incI(String name) {
-		int newVal = getI(name) + 1;
-		setI(name, newVal);
+		setI(name, getI(name) + 1);
 	}
 
 	public void clear() {
-		attribs.clear();
+		long stamp = lock.writeLock();
+		try {
+			attribs.clear();
+			resetTable(8);
+			hasLoose = false;
+			loadedFrom = attribs;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
 	}
 
 	public int removeI(String name) {
-		int i = getI(name);
-		attribs.remove("I"+name);
-		return i;
+		return removeI(name, 0);
 	}
 
 	public boolean removeB(String name) {
-		boolean b = getB(name);
-		attribs.remove("B"+name);
-		return b;
+		Object value = attribs.remove("B"+name);
+		wroteName(Type.BOOLEAN, name);
+		return value != null && (Boolean) value;
 	}
 	
+	@SuppressWarnings("unchecked")
 	public <T> T removeO(String name) {
-		T o = getO(name);
-		attribs.remove("O"+name);
-		return o;
+		Object value = attribs.remove("O"+name);
+		wroteName(Type.OBJECT, name);
+		return (T) value;
 	}
 
 	public long removeL(String name) {
-		long l = getL(name);
-		attribs.remove("L"+name);
-		return l;
+		Object value = attribs.remove("L"+name);
+		wroteName(Type.LONG, name);
+		return value == null ? 0 : ((Number) value).longValue();
 	}
 
 	public int removeI(String name, int defaultVal) {
-		int i = getI(name, defaultVal);
-		attribs.remove("I"+name);
-		return i;
+		Object value = attribs.remove("I"+name);
+		wroteName(Type.INT, name);
+		return value == null ? defaultVal : ((Number) value).intValue();
+	}
+
+	private void wroteName(Type type, String name) {
+		if (!hasLoose)
+			hasLoose = true;
+		if (size == 0)
+			return;
+		AttribKey<?> key = AttribKey.find(type, name);
+		if (key == null)
+			return;
+		long stamp = lock.writeLock();
+		try {
+			removeSlot(key.getSlot());
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * a value the string api wrote, only looked at when the table has no
+	 * entry
+	 */
+	private Object loose(AttribKey<?> key) {
+		return hasLoose ? attribs.get(key.getStorageKey()) : null;
+	}
+
+	private int looseInt(AttribKey<?> key, int def) {
+		Object value = loose(key);
+		return value == null ? def : ((Number) value).intValue();
+	}
+
+	private boolean looseBool(AttribKey<?> key) {
+		Object value = loose(key);
+		return value != null && (Boolean) value;
+	}
+
+	private long looseLong(AttribKey<?> key) {
+		Object value = loose(key);
+		return value == null ? 0 : ((Number) value).longValue();
+	}
+
+	private static long toRaw(Type type, Object value) {
+		return switch (type) {
+		case INT -> ((Number) value).intValue();
+		case DOUBLE -> Double.doubleToRawLongBits(((Number) value).doubleValue());
+		case BOOLEAN -> (Boolean) value ? 1 : 0;
+		default -> ((Number) value).longValue();
+		};
+	}
+
+	private long get(AttribKey<?> key, long def) {
+		ensureLoaded();
+		long stamp = lock.tryOptimisticRead();
+		long value = lookup(key.getSlot(), def);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				value = lookup(key.getSlot(), def);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (value == def && hasLoose) {
+			Object loose = loose(key);
+			if (loose != null)
+				return toRaw(key.getType(), loose);
+		}
+		return value;
+	}
+
+	private void put(AttribKey<?> key, long value, Object object, Object mirror) {
+		ensureLoaded();
+		long stamp = lock.writeLock();
+		try {
+			store(key.getSlot(), value, object);
+			attribs.put(key.getStorageKey(), mirror);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * optimistic reads may see a table mid resize, anything read then is
+	 * thrown away after validation fails
+	 */
+	private long lookup(int slot, long def) {
+		int[] slots = this.slots;
+		long[] values = this.values;
+		if (slots.length != values.length)
+			return def;
+		int index = OpenAddressing.indexOf(slots, slot);
+		return index == -1 ? def : values[index];
+	}
+
+	private Object lookupObject(int slot) {
+		int[] slots = this.slots;
+		Object[] objects = this.objects;
+		if (slots.length != objects.length)
+			return null;
+		int index = OpenAddressing.indexOf(slots, slot);
+		return index == -1 ? null : objects[index];
+	}
+
+	private void store(int slot, long value, Object object) {
+		int index = OpenAddressing.indexOf(slots, slot);
+		if (index == -1) {
+			if ((size + 1) * 2 > slots.length)
+				resize(slots.length * 2);
+			index = OpenAddressing.place(slots, slot);
+			size++;
+		}
+		values[index] = value;
+		objects[index] = object;
+	}
+
+	private void removeSlot(int slot) {
+		int index = OpenAddressing.indexOf(slots, slot);
+		if (index == -1)
+			return;
+		objects[index] = null;
+		size--;
+		OpenAddressing.removeAt(slots, index, mover);
+	}
+
+	private void moveEntry(int from, int to) {
+		values[to] = values[from];
+		objects[to] = objects[from];
+		objects[from] = null;
+	}
+
+	private void resize(int capacity) {
+		int[] oldSlots = slots;
+		long[] oldValues = values;
+		Object[] oldObjects = objects;
+		resetTable(capacity);
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] == 0)
+				continue;
+			int index = OpenAddressing.place(slots, oldSlots[i] - 1);
+			values[index] = oldValues[i];
+			objects[index] = oldObjects[i];
+			size++;
+		}
+	}
+
+	private void resetTable(int capacity) {
+		slots = new int[capacity];
+		values = new long[capacity];
+		objects = new Object[capacity];
+		size = 0;
+	}
+
+	private void ensureLoaded() {
+		if (loadedFrom != attribs)
+			load();
+	}
+
+	/*
+	 * rebuilds the table from attribs after it was replaced by deserialization
+	 */
+	private void load() {
+		long stamp = lock.writeLock();
+		try {
+			ConcurrentHashMap<String, Object> attribs = this.attribs;
+			if (loadedFrom == attribs)
+				return;
+			if (attribs == null)
+				this.attribs = attribs = new ConcurrentHashMap<>();
+			resetTable(Math.max(8, Integer.highestOneBit(Math.max(1, attribs.size() * 2 - 1)) << 1));
+			hasLoose = false;
+			for (Map.Entry<String, Object> entry : attribs.entrySet()) {
+				String storageKey = entry.getKey();
+				Object value = entry.getValue();
+				Type type = storageKey.isEmpty() ? null : Type.forPrefix(storageKey.charAt(0));
+				if (type == null || value == null)
+					continue;
+				AttribKey<?> key = AttribKey.find(type, storageKey.substring(1));
+				if (key == null) {
+					hasLoose = true;
+					continue;
+				}
+				if (type == Type.OBJECT)
+					store(key.getSlot(), 0, value);
+				else
+					store(key.getSlot(), toRaw(type, value), null);
+			}
+			loadedFrom = attribs;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
 	}
 }
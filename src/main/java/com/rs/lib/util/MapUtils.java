@@ -16,7 +16,7 @@
 //
 package com.rs.lib.util;
 
-import com.rs.lib.game.WorldTile;
+import com.rs.lib.game.PackedTile;
 
 /*
  * @author Dragonkk/Alex
@@ -223,7 +223,6 @@ public class MapUtils {
 	}
 
 	public static int chunkToRegionId(int chunkId) {
-		int[] tile = Structure.CHUNK.decode(chunkId);
-		return new WorldTile(tile[0] << 3, tile[1] << 3, 0).getRegionId();
+		return PackedTile.chunkIdToRegionId(chunkId);
 	}
 }
\ No newline at end of file
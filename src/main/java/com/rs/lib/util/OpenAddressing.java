@@ -0,0 +1,91 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.util;
+
+/*
+ * Linear probing over an int[] of keys, each stored as key + 1 so 0 marks an
+ * empty bucket. The owner keeps its values in arrays parallel to the keys,
+ * keeps the table at most half full and grows it by placing every key into a
+ * new array.
+ */
+public final class OpenAddressing {
+
+	/*
+	 * moves the value at from into the empty bucket to and clears from
+	 */
+	public interface Mover {
+		void move(int from, int to);
+	}
+
+	public static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/*
+	 * bucket holding key or -1, never probes more than the whole table
+	 */
+	public static int indexOf(int[] keys, int key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		for (int probes = 0; probes < keys.length; probes++) {
+			int stored = keys[index];
+			if (stored == key + 1)
+				return index;
+			if (stored == 0)
+				return -1;
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	/*
+	 * stores a key that isn't in the table yet, returns its bucket
+	 */
+	public static int place(int[] keys, int key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (keys[index] != 0)
+			index = (index + 1) & mask;
+		keys[index] = key + 1;
+		return index;
+	}
+
+	/*
+	 * empties the bucket and shifts later entries of its probe run back into
+	 * the gap so lookups never stop early, the owner clears its own value at
+	 * index first
+	 */
+	public static void removeAt(int[] keys, int index, Mover mover) {
+		int mask = keys.length - 1;
+		int hole = index;
+		keys[hole] = 0;
+		for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+			int home = hash(keys[next] - 1) & mask;
+			if (hole <= next ? hole < home && home <= next : hole < home || home <= next)
+				continue;
+			keys[hole] = keys[next];
+			keys[next] = 0;
+			mover.move(next, hole);
+			hole = next;
+		}
+	}
+
+	private OpenAddressing() {
+
+	}
+}
@@ -36,7 +36,9 @@ public class PacketAdapter implements JsonSerializer<Packet>, JsonDeserializer<P
 		JsonObject jsonObj = jsonElement.getAsJsonObject();
 		String className = jsonObj.get(CLASS_KEY).getAsString();
 		try {
-			Class<?> clz = Class.forName(className);
+			Class<?> clz = Class.forName(className, false, Packet.class.getClassLoader());
+			if (!Packet.class.isAssignableFrom(clz))
+				throw new JsonParseException("Not a Packet: " + className);
 			return jsonDeserializationContext.deserialize(jsonElement, clz);
 		} catch (ClassNotFoundException e) {
 			throw new JsonParseException(e);
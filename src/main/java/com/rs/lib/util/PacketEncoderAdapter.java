@@ -36,7 +36,9 @@ public class PacketEncoderAdapter implements JsonSerializer<PacketEncoder>, Json
 		JsonObject jsonObj = jsonElement.getAsJsonObject();
 		String className = jsonObj.get(CLASS_KEY).getAsString();
 		try {
-			Class<?> clz = Class.forName(className);
+			Class<?> clz = Class.forName(className, false, PacketEncoder.class.getClassLoader());
+			if (!PacketEncoder.class.isAssignableFrom(clz))
+				throw new JsonParseException("Not a PacketEncoder: " + className);
 			return jsonDeserializationContext.deserialize(jsonElement, clz);
 		} catch (ClassNotFoundException e) {
 			throw new JsonParseException(e);
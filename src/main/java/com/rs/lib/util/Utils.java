@@ -51,6 +51,7 @@ import java.util.regex.Pattern;
 import com.google.common.reflect.ClassPath;
 import com.rs.cache.ArchiveType;
 import com.rs.cache.Cache;
+import com.rs.cache.CacheManifest.IndexManifest;
 import com.rs.cache.IndexType;
 import com.rs.cache.Store;
 import com.rs.cache.loaders.EnumDefinitions;
@@ -83,6 +84,28 @@ public final class Utils {
 			'\u2030', '\u0160', '\u2039', '\u0152', '\0', '\u017d', '\0', '\0', '\u2018', '\u2019', '\u201c', 
 			'\u201d', '\u2022', '\u2013', '\u2014', '\u02dc', '\u2122', '\u0161', '\u203a', '\u0153', 
 			'\0', '\u017e', '\u0178' };
+
+	/*
+	 * cp1252 byte for every char, 63 for chars cp1252 can't represent
+	 */
+	private static final byte[] CHAR_TO_CP1252 = new byte[65536];
+	private static final char[] CP1252_TO_CHAR = new char[256];
+
+	static {
+		Arrays.fill(CHAR_TO_CP1252, (byte) 63);
+		for (int i = 1; i < 256; i++) {
+			char c = (char) i;
+			if (i >= 128 && i < 160) {
+				c = CP_1252_CHARACTERS[i - 128];
+				if (c == 0)
+					c = '?';
+				else
+					CHAR_TO_CP1252[c] = (byte) i;
+			} else
+				CHAR_TO_CP1252[c] = (byte) i;
+			CP1252_TO_CHAR[i] = c;
+		}
+	}
 	
 	public String getLevelDifferenceColor(int hiddenLevel, int displayedLevel) {
 		int levelDifference = displayedLevel - hiddenLevel;
@@ -420,82 +443,13 @@ public final class Utils {
 	}
 	
 	public static char cp1252ToChar(byte i) {
-		int i_35_ = i & 0xff;
-		if (0 == i_35_) {
-			throw new IllegalArgumentException("Non cp1252 character 0x"+Integer.toString(i_35_, 16)+" provided");
-		}
-		if (i_35_ >= 128 && i_35_ < 160) {
-			int i_36_ = CP_1252_CHARACTERS[i_35_ - 128];
-			if (0 == i_36_) {
-				i_36_ = 63;
-			}
-			i_35_ = i_36_;
-		}
-		return (char) i_35_;
+		if (i == 0)
+			throw new IllegalArgumentException("Non cp1252 character 0x0 provided");
+		return CP1252_TO_CHAR[i & 0xff];
 	}
 
 	public static byte charToCp1252(char c) {
-		byte i_18_;
-		if (c > 0 && c < '\u0080' || c >= '\u00a0' && c <= '\u00ff') {
-			i_18_ = (byte) c;
-		} else if ('\u20ac' == c) {
-			i_18_ = (byte) -128;
-		} else if (c == '\u201a') {
-			i_18_ = (byte) -126;
-		} else if (c == '\u0192') {
-			i_18_ = (byte) -125;
-		} else if (c == '\u201e') {
-			i_18_ = (byte) -124;
-		} else if ('\u2026' == c) {
-			i_18_ = (byte) -123;
-		} else if ('\u2020' == c) {
-			i_18_ = (byte) -122;
-		} else if ('\u2021' == c) {
-			i_18_ = (byte) -121;
-		} else if ('\u02c6' == c) {
-			i_18_ = (byte) -120;
-		} else if ('\u2030' == c) {
-			i_18_ = (byte) -119;
-		} else if (c == '\u0160') {
-			i_18_ = (byte) -118;
-		} else if (c == '\u2039') {
-			i_18_ = (byte) -117;
-		} else if ('\u0152' == c) {
-			i_18_ = (byte) -116;
-		} else if (c == '\u017d') {
-			i_18_ = (byte) -114;
-		} else if ('\u2018' == c) {
-			i_18_ = (byte) -111;
-		} else if ('\u2019' == c) {
-			i_18_ = (byte) -110;
-		} else if ('\u201c' == c) {
-			i_18_ = (byte) -109;
-		} else if ('\u201d' == c) {
-			i_18_ = (byte) -108;
-		} else if ('\u2022' == c) {
-			i_18_ = (byte) -107;
-		} else if (c == '\u2013') {
-			i_18_ = (byte) -106;
-		} else if ('\u2014' == c) {
-			i_18_ = (byte) -105;
-		} else if (c == '\u02dc') {
-			i_18_ = (byte) -104;
-		} else if (c == '\u2122') {
-			i_18_ = (byte) -103;
-		} else if ('\u0161' == c) {
-			i_18_ = (byte) -102;
-		} else if (c == '\u203a') {
-			i_18_ = (byte) -101;
-		} else if ('\u0153' == c) {
-			i_18_ = (byte) -100;
-		} else if ('\u017e' == c) {
-			i_18_ = (byte) -98;
-		} else if (c == '\u0178') {
-			i_18_ = (byte) -97;
-		} else {
-			i_18_ = (byte) 63;
-		}
-		return i_18_;
+		return CHAR_TO_CP1252[c];
 	}
 	
 	static int getNumOfChars(CharSequence str, char val) {
@@ -987,62 +941,65 @@ public final class Utils {
 //	}
 
 	public static final int getSpotAnimDefinitionsSize() {
-		int lastArchiveId = Cache.STORE.getIndex(IndexType.SPOT_ANIMS).getLastArchiveId();
-		return lastArchiveId * 256 + Cache.STORE.getIndex(IndexType.SPOT_ANIMS).getValidFilesCount(lastArchiveId);
+		return getDefinitionsSize(Cache.STORE, IndexType.SPOT_ANIMS, 256);
 	}
 
 	public static final int getAnimationDefinitionsSize() {
-		int lastArchiveId = Cache.STORE.getIndex(IndexType.ANIMATIONS).getLastArchiveId();
-		return lastArchiveId * 128 + Cache.STORE.getIndex(IndexType.ANIMATIONS).getValidFilesCount(lastArchiveId);
+		return getDefinitionsSize(Cache.STORE, IndexType.ANIMATIONS, 128);
 	}
 
 	public static final int getBASAnimDefSize() {
-		return Cache.STORE.getIndex(IndexType.CONFIG).getValidFilesCount(ArchiveType.BAS.getId());
+		return Cache.STORE.getManifest().get(IndexType.CONFIG).getValidFilesCount(ArchiveType.BAS.getId());
 	}
 
 	public static final int getConfigDefinitionsSize() {
-		int lastArchiveId = Cache.STORE.getIndex(IndexType.VARBITS).getLastArchiveId();
-		return lastArchiveId * 256 + Cache.STORE.getIndex(IndexType.VARBITS).getValidFilesCount(lastArchiveId);
+		return getDefinitionsSize(Cache.STORE, IndexType.VARBITS, 256);
 	}
 
 	public static final int getObjectDefinitionsSize() {
-		int lastArchiveId = Cache.STORE.getIndex(IndexType.OBJECTS).getLastArchiveId();
-		return lastArchiveId * 256 + Cache.STORE.getIndex(IndexType.OBJECTS).getValidFilesCount(lastArchiveId);
+		return getDefinitionsSize(Cache.STORE, IndexType.OBJECTS, 256);
 	}
 
 	public static final int getNPCDefinitionsSize() {
-		int lastArchiveId = Cache.STORE.getIndex(IndexType.NPCS).getLastArchiveId();
-		return lastArchiveId * 128 + Cache.STORE.getIndex(IndexType.NPCS).getValidFilesCount(lastArchiveId);
+		return getDefinitionsSize(Cache.STORE, IndexType.NPCS, 128);
 	}
 
 	// 22314
 
 	public static final int getItemDefinitionsSize() {
-		int lastArchiveId = Cache.STORE.getIndex(IndexType.ITEMS).getLastArchiveId();
-		return (lastArchiveId * 256 + Cache.STORE.getIndex(IndexType.ITEMS).getValidFilesCount(lastArchiveId));
+		return getDefinitionsSize(Cache.STORE, IndexType.ITEMS, 256);
 	}
 	
 	public static final int getItemDefinitionsSize(Store store) {
-		int lastArchiveId = store.getIndex(IndexType.ITEMS).getLastArchiveId();
-		return (lastArchiveId * 256 + store.getIndex(IndexType.ITEMS).getValidFilesCount(lastArchiveId));
+		return getDefinitionsSize(store, IndexType.ITEMS, 256);
+	}
+
+	/*
+	 * full archives before the last one plus the valid files in the last,
+	 * read from the store's manifest
+	 */
+	private static int getDefinitionsSize(Store store, IndexType type, int filesPerArchive) {
+		IndexManifest index = store.getManifest().get(type);
+		int lastArchiveId = index.getLastArchiveId();
+		return lastArchiveId * filesPerArchive + index.getValidFilesCount(lastArchiveId);
 	}
 	
 	public static final int getVarbitDefinitionsSize() {
-		return Cache.STORE.getIndex(IndexType.VARBITS).getLastArchiveId() * 0x3ff;
+		return Cache.STORE.getManifest().get(IndexType.VARBITS).getLastArchiveId() * 0x3ff;
 	}
 
 	public static boolean itemExists(int id) {
 		if (id >= getItemDefinitionsSize())
 			return false;
-		return Cache.STORE.getIndex(IndexType.ITEMS).fileExists(id >>> 8, 0xff & id);
+		return Cache.STORE.getManifest().get(IndexType.ITEMS).fileExists(id >>> 8, 0xff & id);
 	}
 
 	public static final int getInterfaceDefinitionsSize() {
-		return Cache.STORE.getIndex(IndexType.INTERFACES).getLastArchiveId() + 1;
+		return Cache.STORE.getManifest().get(IndexType.INTERFACES).getLastArchiveId() + 1;
 	}
 
 	public static final int getInterfaceDefinitionsComponentsSize(int interfaceId) {
-		return Cache.STORE.getIndex(IndexType.INTERFACES).getLastFileId(interfaceId) + 1;
+		return Cache.STORE.getManifest().get(IndexType.INTERFACES).getLastFileId(interfaceId) + 1;
 	}
 
 	public static String formatPlayerNameForProtocol(String name) {
@@ -1329,101 +1286,40 @@ public final class Utils {
 
 	public static final String getUnformatedMessage(int messageDataLength, int messageDataOffset, byte[] messageData) {
 		char[] cs = new char[messageDataLength];
-		int i = 0;
-		for (int i_6_ = 0; i_6_ < messageDataLength; i_6_++) {
-			int i_7_ = 0xff & messageData[i_6_ + messageDataOffset];
-			if ((i_7_ ^ 0xffffffff) != -1) {
-				if ((i_7_ ^ 0xffffffff) <= -129 && (i_7_ ^ 0xffffffff) > -161) {
-					int i_8_ = aCharArray6385[i_7_ - 128];
-					if (i_8_ == 0)
-						i_8_ = 63;
-					i_7_ = i_8_;
-				}
-				cs[i++] = (char) i_7_;
-			}
+		return new String(cs, 0, getUnformatedMessage(messageData, messageDataOffset, messageDataLength, cs, 0));
+	}
+
+	/*
+	 * decodes cp1252 bytes into the caller's char array skipping nulls, returns
+	 * the number of chars written
+	 */
+	public static int getUnformatedMessage(byte[] messageData, int messageDataOffset, int messageDataLength, char[] out, int outOffset) {
+		int start = outOffset;
+		for (int i = messageDataOffset; i < messageDataOffset + messageDataLength; i++) {
+			char c = CP1252_TO_CHAR[messageData[i] & 0xff];
+			if (c != 0)
+				out[outOffset++] = c;
 		}
-		return new String(cs, 0, i);
+		return outOffset - start;
 	}
 
 	public static final byte[] getFormatedMessage(String message) {
-		int i_0_ = message.length();
-		byte[] is = new byte[i_0_];
-		for (int i_1_ = 0; (i_1_ ^ 0xffffffff) > (i_0_ ^ 0xffffffff); i_1_++) {
-			int i_2_ = message.charAt(i_1_);
-			if (((i_2_ ^ 0xffffffff) >= -1 || i_2_ >= 128) && (i_2_ < 160 || i_2_ > 255)) {
-				if ((i_2_ ^ 0xffffffff) != -8365) {
-					if ((i_2_ ^ 0xffffffff) == -8219)
-						is[i_1_] = (byte) -126;
-					else if ((i_2_ ^ 0xffffffff) == -403)
-						is[i_1_] = (byte) -125;
-					else if (i_2_ == 8222)
-						is[i_1_] = (byte) -124;
-					else if (i_2_ != 8230) {
-						if ((i_2_ ^ 0xffffffff) != -8225) {
-							if ((i_2_ ^ 0xffffffff) != -8226) {
-								if ((i_2_ ^ 0xffffffff) == -711)
-									is[i_1_] = (byte) -120;
-								else if (i_2_ == 8240)
-									is[i_1_] = (byte) -119;
-								else if ((i_2_ ^ 0xffffffff) == -353)
-									is[i_1_] = (byte) -118;
-								else if ((i_2_ ^ 0xffffffff) != -8250) {
-									if (i_2_ == 338)
-										is[i_1_] = (byte) -116;
-									else if (i_2_ == 381)
-										is[i_1_] = (byte) -114;
-									else if ((i_2_ ^ 0xffffffff) == -8217)
-										is[i_1_] = (byte) -111;
-									else if (i_2_ == 8217)
-										is[i_1_] = (byte) -110;
-									else if (i_2_ != 8220) {
-										if (i_2_ == 8221)
-											is[i_1_] = (byte) -108;
-										else if ((i_2_ ^ 0xffffffff) == -8227)
-											is[i_1_] = (byte) -107;
-										else if ((i_2_ ^ 0xffffffff) != -8212) {
-											if (i_2_ == 8212)
-												is[i_1_] = (byte) -105;
-											else if ((i_2_ ^ 0xffffffff) != -733) {
-												if (i_2_ != 8482) {
-													if (i_2_ == 353)
-														is[i_1_] = (byte) -102;
-													else if (i_2_ != 8250) {
-														if ((i_2_ ^ 0xffffffff) == -340)
-															is[i_1_] = (byte) -100;
-														else if (i_2_ != 382) {
-															if (i_2_ == 376)
-																is[i_1_] = (byte) -97;
-															else
-																is[i_1_] = (byte) 63;
-														} else
-															is[i_1_] = (byte) -98;
-													} else
-														is[i_1_] = (byte) -101;
-												} else
-													is[i_1_] = (byte) -103;
-											} else
-												is[i_1_] = (byte) -104;
-										} else
-											is[i_1_] = (byte) -106;
-									} else
-										is[i_1_] = (byte) -109;
-								} else
-									is[i_1_] = (byte) -117;
-							} else
-								is[i_1_] = (byte) -121;
-						} else
-							is[i_1_] = (byte) -122;
-					} else
-						is[i_1_] = (byte) -123;
-				} else
-					is[i_1_] = (byte) -128;
-			} else
-				is[i_1_] = (byte) i_2_;
-		}
+		byte[] is = new byte[message.length()];
+		getFormatedMessage(message, is, 0);
 		return is;
 	}
 
+	/*
+	 * encodes the message as cp1252 into the caller's buffer, returns the
+	 * number of bytes written which is always the message length
+	 */
+	public static int getFormatedMessage(CharSequence message, byte[] buffer, int offset) {
+		int length = message.length();
+		for (int i = 0; i < length; i++)
+			buffer[offset + i] = CHAR_TO_CP1252[message.charAt(i)];
+		return length;
+	}
+
 	public static int getHashMapSize(int size) {
 		size--;
 		size |= size >>> -1810941663;
@@ -1534,40 +1430,38 @@ public final class Utils {
 	}
 
 	public static String fixChatMessage(String message) {
-		StringBuilder sb = new StringBuilder();
+		char[] cs = message.toCharArray();
+		fixChatMessage(cs, 0, cs.length);
+		return new String(cs);
+	}
+
+	/*
+	 * sentence cases the chars in place in one pass. The first letter after
+	 * the start or a ? ! . : or ; is capitalized, capitals that don't start a
+	 * word are lowered and everything else is kept.
+	 */
+	public static void fixChatMessage(char[] cs, int offset, int length) {
 		boolean space = false;
 		boolean forcedCaps = true;
-		for (int i = 0; i < message.length(); i++) {
+		for (int i = offset; i < offset + length; i++) {
+			char c = cs[i];
 			if (forcedCaps) {
-				if (String.valueOf(message.charAt(i)).equals(" ") || isSymbol(String.valueOf(message.charAt(i)))) {
-					sb.append(message.charAt(i));
-				} else {
-					sb.append(String.valueOf(message.charAt(i)).toUpperCase());
+				if (c != ' ' && c != ':' && c != ';') {
+					cs[i] = Character.toUpperCase(c);
 					forcedCaps = false;
 				}
-			} else {
-				String line = String.valueOf(message.charAt(i));
-				if (line.equals("?") || line.equals("!") || line.equals(".") || line.equals(":") || line.equals(";")) {
-					forcedCaps = true;
-					sb.append(line);
-				} else if (line.equals(" ")) {
-					space = true;
-					sb.append(line);
-				} else if (line.equals(line.toUpperCase())) {
-					if (space) {
-						sb.append(line);
-						space = false;
-					} else {
-						sb.append(line.toLowerCase());
-					}
-				} else {
-					sb.append(line);
+			} else if (c == '?' || c == '!' || c == '.' || c == ':' || c == ';')
+				forcedCaps = true;
+			else if (c == ' ')
+				space = true;
+			else if (c == Character.toUpperCase(c)) {
+				if (space)
 					space = false;
-					forcedCaps = false;
-				}
-			}
+				else
+					cs[i] = Character.toLowerCase(c);
+			} else
+				space = false;
 		}
-		return sb.toString();
 	}
 
 	public static int getProjectileTime(int i, WorldTile startTile, WorldTile endTile, int startHeight, int endHeight, int speed, int delay, int curve, int startDistanceOffset, int creatorSize) {
@@ -0,0 +1,451 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.web.link;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.google.gson.Gson;
+import com.rs.lib.file.JsonFileManager;
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.packets.Packet;
+import com.rs.lib.net.packets.PacketEncoder;
+import com.rs.lib.web.dto.PacketDto;
+import com.rs.lib.web.dto.PacketEncoderDto;
+
+/*
+ * Binary form of PacketDto and PacketEncoderDto. Each element is written as its
+ * registry id followed by its fields in a fixed order, primitives, strings,
+ * enums and primitive arrays natively and anything else as embedded json.
+ */
+public final class PacketDtoCodec {
+
+	public static final int PACKET_DTO = 0;
+	public static final int PACKET_ENCODER_DTO = 1;
+
+	private static final int BOOLEAN = 0, BYTE = 1, SHORT = 2, CHAR = 3, INT = 4, LONG = 5, FLOAT = 6, DOUBLE = 7, STRING = 8, ENUM = 9, INT_ARRAY = 10, BYTE_ARRAY = 11, STRING_ARRAY = 12, JSON = 13;
+
+	private static final ConcurrentHashMap<Class<?>, Layout> LAYOUTS = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<Class<?>, Supplier<?>> FACTORIES = new ConcurrentHashMap<>();
+	private static final Gson FALLBACK_GSON = new Gson();
+
+	/*
+	 * factory is null when the type can't be created here, those dtos are
+	 * sent as json instead
+	 */
+	private record Layout(Field[] fields, int[] kinds, Supplier<?> factory) {}
+
+	/*
+	 * for packet types whose constructors can't be called with default
+	 * arguments, every field is overwritten after the factory runs
+	 */
+	public static <T> void registerFactory(Class<T> type, Supplier<? extends T> factory) {
+		FACTORIES.put(type, factory);
+		LAYOUTS.remove(type);
+	}
+
+	/*
+	 * instance fields of the type and its superclasses, superclass first and
+	 * sorted by name so both ends agree on the order
+	 */
+	static Field[] getFields(Class<?> type) {
+		List<Class<?>> hierarchy = new ArrayList<>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+			hierarchy.add(0, c);
+		List<Field> fields = new ArrayList<>();
+		for (Class<?> c : hierarchy) {
+			Field[] declared = c.getDeclaredFields();
+			Arrays.sort(declared, Comparator.comparing(Field::getName));
+			for (Field field : declared) {
+				if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic())
+					continue;
+				field.setAccessible(true);
+				fields.add(field);
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	private static Layout getLayout(Class<?> type) {
+		Layout layout = LAYOUTS.get(type);
+		if (layout != null)
+			return layout;
+		Field[] fields = getFields(type);
+		int[] kinds = new int[fields.length];
+		for (int i = 0; i < fields.length; i++)
+			kinds[i] = getKind(fields[i].getType());
+		layout = new Layout(fields, kinds, getFactory(type));
+		LAYOUTS.putIfAbsent(type, layout);
+		return layout;
+	}
+
+	/*
+	 * a registered factory, else a no-arg constructor, else the first
+	 * constructor that accepts zeros, false and nulls
+	 */
+	private static Supplier<?> getFactory(Class<?> type) {
+		Supplier<?> factory = FACTORIES.get(type);
+		if (factory != null)
+			return factory;
+		Constructor<?>[] constructors = type.getDeclaredConstructors();
+		Arrays.sort(constructors, Comparator.comparingInt(Constructor::getParameterCount));
+		for (Constructor<?> constructor : constructors) {
+			Object[] args = new Object[constructor.getParameterCount()];
+			Class<?>[] parameters = constructor.getParameterTypes();
+			for (int i = 0; i < args.length; i++)
+				args[i] = getDefault(parameters[i]);
+			try {
+				constructor.setAccessible(true);
+				constructor.newInstance(args);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				continue;
+			}
+			return () -> {
+				try {
+					return constructor.newInstance(args);
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalStateException("Unable to create " + type.getName(), e);
+				}
+			};
+		}
+		return null;
+	}
+
+	private static Object getDefault(Class<?> type) {
+		if (!type.isPrimitive())
+			return null;
+		if (type == boolean.class)
+			return false;
+		if (type == char.class)
+			return (char) 0;
+		if (type == long.class)
+			return 0L;
+		if (type == float.class)
+			return 0f;
+		if (type == double.class)
+			return 0d;
+		if (type == byte.class)
+			return (byte) 0;
+		if (type == short.class)
+			return (short) 0;
+		return 0;
+	}
+
+	private static int getKind(Class<?> type) {
+		if (type == boolean.class)
+			return BOOLEAN;
+		if (type == byte.class)
+			return BYTE;
+		if (type == short.class)
+			return SHORT;
+		if (type == char.class)
+			return CHAR;
+		if (type == int.class)
+			return INT;
+		if (type == long.class)
+			return LONG;
+		if (type == float.class)
+			return FLOAT;
+		if (type == double.class)
+			return DOUBLE;
+		if (type == String.class)
+			return STRING;
+		if (type.isEnum())
+			return ENUM;
+		if (type == int[].class)
+			return INT_ARRAY;
+		if (type == byte[].class)
+			return BYTE_ARRAY;
+		if (type == String[].class)
+			return STRING_ARRAY;
+		return JSON;
+	}
+
+	/*
+	 * true when every element of the dto has a registry id and can be created
+	 * on the other end
+	 */
+	public static boolean supports(Object dto) {
+		Object[] elements;
+		if (dto instanceof PacketDto packets)
+			elements = packets.packets();
+		else if (dto instanceof PacketEncoderDto encoders)
+			elements = encoders.encoders();
+		else
+			return false;
+		if (elements == null)
+			return true;
+		for (Object element : elements) {
+			if (element != null && (PacketTypeRegistry.getId(element.getClass()) == -1 || getLayout(element.getClass()).factory == null))
+				return false;
+		}
+		return true;
+	}
+
+	public static byte[] encode(Object dto) {
+		OutputStream stream = new OutputStream(256);
+		encode(dto, stream);
+		return stream.toByteArray();
+	}
+
+	public static void encode(Object dto, OutputStream stream) {
+		Object[] elements;
+		if (dto instanceof PacketDto packets) {
+			stream.writeByte(PACKET_DTO);
+			writeString(stream, packets.username());
+			elements = packets.packets();
+		} else if (dto instanceof PacketEncoderDto encoders) {
+			stream.writeByte(PACKET_ENCODER_DTO);
+			writeString(stream, encoders.username());
+			elements = encoders.encoders();
+		} else
+			throw new IllegalArgumentException("Unsupported dto " + (dto == null ? null : dto.getClass().getName()));
+		if (elements == null) {
+			writeVarInt(stream, 0);
+			return;
+		}
+		writeVarInt(stream, elements.length + 1);
+		try {
+			for (Object element : elements)
+				writeElement(stream, element);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	public static Object decode(byte[] data) {
+		return decode(new InputStream(data));
+	}
+
+	public static Object decode(InputStream stream) {
+		int type = stream.readUnsignedByte();
+		String username = readString(stream);
+		int count = readLength(stream);
+		try {
+			if (type == PACKET_DTO) {
+				Packet[] packets = count == -1 ? null : new Packet[count];
+				for (int i = 0; i < count; i++)
+					packets[i] = (Packet) readElement(stream);
+				return new PacketDto(username, packets);
+			}
+			if (type == PACKET_ENCODER_DTO) {
+				PacketEncoder[] encoders = count == -1 ? null : new PacketEncoder[count];
+				for (int i = 0; i < count; i++)
+					encoders[i] = (PacketEncoder) readElement(stream);
+				return new PacketEncoderDto(username, encoders);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(e);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Malformed dto.", e);
+		}
+		throw new IllegalArgumentException("Unknown dto type " + type);
+	}
+
+	private static void writeElement(OutputStream stream, Object element) throws IllegalAccessException {
+		if (element == null) {
+			writeVarInt(stream, 0);
+			return;
+		}
+		int id = PacketTypeRegistry.getId(element.getClass());
+		if (id == -1)
+			throw new IllegalArgumentException("Unregistered packet type " + element.getClass().getName());
+		writeVarInt(stream, id + 1);
+		Layout layout = getLayout(element.getClass());
+		for (int i = 0; i < layout.fields.length; i++) {
+			Field field = layout.fields[i];
+			switch (layout.kinds[i]) {
+			case BOOLEAN -> stream.writeByte(field.getBoolean(element) ? 1 : 0);
+			case BYTE -> stream.writeByte(field.getByte(element));
+			case SHORT -> writeVarInt(stream, zigzag(field.getShort(element)));
+			case CHAR -> writeVarInt(stream, field.getChar(element));
+			case INT -> writeVarInt(stream, zigzag(field.getInt(element)));
+			case LONG -> stream.writeLong(field.getLong(element));
+			case FLOAT -> stream.writeInt(Float.floatToIntBits(field.getFloat(element)));
+			case DOUBLE -> stream.writeLong(Double.doubleToLongBits(field.getDouble(element)));
+			case STRING -> writeString(stream, (String) field.get(element));
+			case ENUM -> {
+				Enum<?> value = (Enum<?>) field.get(element);
+				writeVarInt(stream, value == null ? 0 : value.ordinal() + 1);
+			}
+			case INT_ARRAY -> {
+				int[] values = (int[]) field.get(element);
+				writeVarInt(stream, values == null ? 0 : values.length + 1);
+				if (values != null) {
+					for (int value : values)
+						writeVarInt(stream, zigzag(value));
+				}
+			}
+			case BYTE_ARRAY -> {
+				byte[] values = (byte[]) field.get(element);
+				writeVarInt(stream, values == null ? 0 : values.length + 1);
+				if (values != null)
+					stream.writeBytes(values);
+			}
+			case STRING_ARRAY -> {
+				String[] values = (String[]) field.get(element);
+				writeVarInt(stream, values == null ? 0 : values.length + 1);
+				if (values != null) {
+					for (String value : values)
+						writeString(stream, value);
+				}
+			}
+			default -> {
+				Object value = field.get(element);
+				writeString(stream, value == null ? null : getGson().toJson(value, field.getGenericType()));
+			}
+			}
+		}
+	}
+
+	private static Object readElement(InputStream stream) throws ReflectiveOperationException {
+		int id = readVarInt(stream) - 1;
+		if (id == -1)
+			return null;
+		Class<?> type = PacketTypeRegistry.getType(id);
+		if (type == null)
+			throw new IllegalArgumentException("Unknown packet type id " + id);
+		Layout layout = getLayout(type);
+		if (layout.factory == null)
+			throw new InstantiationException("No factory for " + type.getName());
+		Object element = layout.factory.get();
+		for (int i = 0; i < layout.fields.length; i++) {
+			Field field = layout.fields[i];
+			switch (layout.kinds[i]) {
+			case BOOLEAN -> field.setBoolean(element, stream.readUnsignedByte() == 1);
+			case BYTE -> field.setByte(element, (byte) stream.readByte());
+			case SHORT -> field.setShort(element, (short) unzigzag(readVarInt(stream)));
+			case CHAR -> field.setChar(element, (char) readVarInt(stream));
+			case INT -> field.setInt(element, unzigzag(readVarInt(stream)));
+			case LONG -> field.setLong(element, stream.readLong());
+			case FLOAT -> field.setFloat(element, Float.intBitsToFloat(stream.readInt()));
+			case DOUBLE -> field.setDouble(element, Double.longBitsToDouble(stream.readLong()));
+			case STRING -> field.set(element, readString(stream));
+			case ENUM -> {
+				int ordinal = readVarInt(stream) - 1;
+				field.set(element, ordinal == -1 ? null : field.getType().getEnumConstants()[ordinal]);
+			}
+			case INT_ARRAY -> {
+				int length = readLength(stream);
+				int[] values = length == -1 ? null : new int[length];
+				for (int j = 0; j < length; j++)
+					values[j] = unzigzag(readVarInt(stream));
+				field.set(element, values);
+			}
+			case BYTE_ARRAY -> {
+				int length = readLength(stream);
+				byte[] values = length == -1 ? null : new byte[length];
+				if (values != null)
+					stream.readBytes(values);
+				field.set(element, values);
+			}
+			case STRING_ARRAY -> {
+				int length = readLength(stream);
+				String[] values = length == -1 ? null : new String[length];
+				for (int j = 0; j < length; j++)
+					values[j] = readString(stream);
+				field.set(element, values);
+			}
+			default -> {
+				String json = readString(stream);
+				field.set(element, json == null ? null : getGson().fromJson(json, field.getGenericType()));
+			}
+			}
+		}
+		return element;
+	}
+
+	static Gson getGson() {
+		Gson gson = JsonFileManager.getGson();
+		return gson == null ? FALLBACK_GSON : gson;
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeVarInt(OutputStream stream, int value) {
+		while ((value & ~0x7f) != 0) {
+			stream.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		stream.writeByte(value);
+	}
+
+	static int readVarInt(InputStream stream) {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = stream.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0 && shift < 35);
+		return value;
+	}
+
+	/*
+	 * length plus one as written in front of strings, arrays and element
+	 * lists, -1 for null. Every entry takes at least a byte so anything longer
+	 * than what's left is corrupt and rejected before allocating
+	 */
+	private static int readLength(InputStream stream) {
+		int length = readVarInt(stream) - 1;
+		if (length < -1 || length > stream.getRemaining())
+			throw new IllegalArgumentException("Length " + length + " exceeds the " + stream.getRemaining() + " bytes left.");
+		return length;
+	}
+
+	/*
+	 * utf-8 with the length plus one in front, zero for null
+	 */
+	static void writeString(OutputStream stream, String value) {
+		if (value == null) {
+			writeVarInt(stream, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(stream, bytes.length + 1);
+		stream.writeBytes(bytes);
+	}
+
+	static String readString(InputStream stream) {
+		int length = readLength(stream);
+		if (length == -1)
+			return null;
+		byte[] bytes = new byte[length];
+		stream.readBytes(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private PacketDtoCodec() {
+
+	}
+}
@@ -0,0 +1,134 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.web.link;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.rs.lib.net.packets.Packet;
+import com.rs.lib.net.packets.PacketEncoder;
+import com.rs.lib.util.Logger;
+import com.rs.lib.util.Utils;
+
+/*
+ * Numeric ids for every concrete Packet and PacketEncoder, assigned in class
+ * name order so two servers built from the same sources agree on them. The
+ * hash covers names and field layouts and is compared when a link connects.
+ */
+public final class PacketTypeRegistry {
+
+	private static final List<String> PACKAGES = new ArrayList<>(List.of("com.rs.lib.net.packets"));
+
+	private static volatile Registry REGISTRY;
+
+	private record Registry(Class<?>[] types, Map<Class<?>, Integer> ids, int hash) {}
+
+	/*
+	 * adds packets declared outside the lib, must be called before init
+	 */
+	public static synchronized void addPackage(String packageName) {
+		if (REGISTRY != null)
+			throw new IllegalStateException("Packet type registry already built.");
+		PACKAGES.add(packageName);
+	}
+
+	public static synchronized void init() {
+		if (REGISTRY != null)
+			return;
+		long start = System.nanoTime();
+		List<Class<?>> types = new ArrayList<>();
+		for (String packageName : PACKAGES) {
+			try {
+				for (Class<?> type : Utils.getClasses(packageName)) {
+					if (Modifier.isAbstract(type.getModifiers()) || (!Packet.class.isAssignableFrom(type) && !PacketEncoder.class.isAssignableFrom(type)))
+						continue;
+					if (!types.contains(type))
+						types.add(type);
+				}
+			} catch (Exception e) {
+				Logger.handle(e);
+			}
+		}
+		types.sort(Comparator.comparing(Class::getName));
+		Map<Class<?>, Integer> ids = new HashMap<>(types.size() * 2);
+		CRC32 crc = new CRC32();
+		for (int id = 0; id < types.size(); id++) {
+			ids.put(types.get(id), id);
+			crc.update(describe(types.get(id)).getBytes(StandardCharsets.UTF_8));
+		}
+		REGISTRY = new Registry(types.toArray(new Class<?>[types.size()]), ids, (int) crc.getValue());
+		Logger.log("PacketTypeRegistry", "Registered " + types.size() + " packet types in " + ((System.nanoTime() - start) / 1000000L) + "ms, hash " + Integer.toHexString(REGISTRY.hash));
+	}
+
+	private static Registry get() {
+		Registry registry = REGISTRY;
+		if (registry == null) {
+			init();
+			registry = REGISTRY;
+		}
+		return registry;
+	}
+
+	/*
+	 * class name, field names and types, and the constants of any enum field
+	 */
+	private static String describe(Class<?> type) {
+		StringBuilder description = new StringBuilder(type.getName());
+		for (Field field : PacketDtoCodec.getFields(type)) {
+			description.append(';').append(field.getName()).append(':').append(field.getGenericType().getTypeName());
+			if (field.getType().isEnum()) {
+				for (Object constant : field.getType().getEnumConstants())
+					description.append(',').append(((Enum<?>) constant).name());
+			}
+		}
+		return description.append('\n').toString();
+	}
+
+	/*
+	 * id of the type or -1 when it was not registered
+	 */
+	public static int getId(Class<?> type) {
+		Integer id = get().ids.get(type);
+		return id == null ? -1 : id;
+	}
+
+	public static Class<?> getType(int id) {
+		Class<?>[] types = get().types;
+		if (id < 0 || id >= types.length)
+			return null;
+		return types[id];
+	}
+
+	public static int size() {
+		return get().types.length;
+	}
+
+	public static int getHash() {
+		return get().hash;
+	}
+
+	private PacketTypeRegistry() {
+
+	}
+}
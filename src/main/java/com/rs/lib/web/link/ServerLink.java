@@ -0,0 +1,460 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.web.link;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder;
+import org.jboss.netty.handler.codec.frame.LengthFieldPrepender;
+
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.util.Logger;
+import com.rs.lib.web.dto.PacketDto;
+import com.rs.lib.web.dto.PacketEncoderDto;
+
+/*
+ * One persistent connection between two servers carrying any number of
+ * logical channels. Sent dtos are queued and written together as one frame a
+ * couple of milliseconds later. Packet dtos go binary when both ends built
+ * the same packet registry, everything else and any mismatch goes as json,
+ * which is only sent and accepted for types registered with registerType.
+ */
+public final class ServerLink extends SimpleChannelHandler {
+
+	public static int FLUSH_DELAY_MS = 2;
+	public static int MAX_FRAME_BYTES = 256 * 1024;
+	public static int MAX_QUEUED_MESSAGES = 100000;
+	public static int RECONNECT_DELAY_MS = 2000;
+
+	private static final int MAGIC = 0x444c4e4b;
+	private static final int VERSION = 1;
+	private static final int HANDSHAKE = 0, BATCH = 1;
+	private static final int FORMAT_BINARY = 0, FORMAT_JSON = 1;
+	private static final int MAX_BATCH_MESSAGES = 65535;
+	private static final int BATCH_HEADER_BYTES = 3;
+	private static final int MESSAGE_HEADER_BYTES = 11;
+
+	public interface Handler {
+		void handle(ServerLink link, Object dto);
+	}
+
+	private record Outgoing(int channel, Object dto, int format, byte[] payload) {}
+
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "Server Link Flusher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Map<String, Class<?>> JSON_TYPES = new ConcurrentHashMap<>();
+	private static ChannelFactory CLIENT_FACTORY;
+
+	static {
+		registerType(PacketDto.class);
+		registerType(PacketEncoderDto.class);
+	}
+
+	private final String key;
+	private final Map<Integer, Handler> handlers;
+	private final ClientBootstrap bootstrap;
+	private final InetSocketAddress remote;
+	private Handler onConnect;
+	private volatile Channel channel;
+	private volatile boolean handshaken;
+	private volatile boolean remoteBinary;
+	private volatile boolean closed;
+
+	private final ConcurrentLinkedQueue<Outgoing> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final AtomicBoolean reconnectScheduled = new AtomicBoolean();
+
+	private final AtomicLong framesSent = new AtomicLong();
+	private final AtomicLong messagesSent = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private final AtomicLong messagesReceived = new AtomicLong();
+	private final AtomicLong jsonMessages = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/*
+	 * json dtos are only sent and accepted for registered types, both ends
+	 * must register anything other than the packet dtos
+	 */
+	public static void registerType(Class<?> type) {
+		JSON_TYPES.put(type.getName(), type);
+	}
+
+	private ServerLink(String key, Map<Integer, Handler> handlers, ClientBootstrap bootstrap, InetSocketAddress remote) {
+		this.key = key;
+		this.handlers = handlers;
+		this.bootstrap = bootstrap;
+		this.remote = remote;
+	}
+
+	/*
+	 * connects to a peer and keeps reconnecting until closed, dtos sent while
+	 * disconnected are held until the link is back up
+	 */
+	public static synchronized ServerLink connect(String host, int port, String key, Map<Integer, Handler> handlers) {
+		if (CLIENT_FACTORY == null)
+			CLIENT_FACTORY = new NioClientSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool());
+		ClientBootstrap bootstrap = new ClientBootstrap(CLIENT_FACTORY);
+		ServerLink link = new ServerLink(key, handlers, bootstrap, new InetSocketAddress(host, port));
+		bootstrap.setPipelineFactory(() -> pipeline(link));
+		bootstrap.setOption("tcpNoDelay", true);
+		bootstrap.setOption("keepAlive", true);
+		link.reconnect();
+		return link;
+	}
+
+	/*
+	 * accepts links from peers presenting the same key, onConnect is called
+	 * once a peer's handshake is accepted
+	 */
+	public static Channel listen(int port, String key, Map<Integer, Handler> handlers, Handler onConnect) {
+		ServerBootstrap bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+		bootstrap.setPipelineFactory(() -> {
+			ServerLink link = new ServerLink(key, handlers, null, null);
+			if (onConnect != null)
+				link.onConnect = onConnect;
+			return pipeline(link);
+		});
+		bootstrap.setOption("reuseAddress", true);
+		bootstrap.setOption("child.tcpNoDelay", true);
+		bootstrap.setOption("child.keepAlive", true);
+		return bootstrap.bind(new InetSocketAddress(port));
+	}
+
+	private static ChannelPipeline pipeline(ServerLink link) {
+		ChannelPipeline pipeline = Channels.pipeline();
+		pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(MAX_FRAME_BYTES * 4, 0, 4, 0, 4));
+		pipeline.addLast("frameEncoder", new LengthFieldPrepender(4));
+		pipeline.addLast("handler", link);
+		return pipeline;
+	}
+
+	private void reconnect() {
+		reconnectScheduled.set(false);
+		if (closed)
+			return;
+		bootstrap.connect(remote).addListener(future -> {
+			if (!future.isSuccess()) {
+				Logger.log("ServerLink", "Unable to connect to " + remote + ", retrying in " + RECONNECT_DELAY_MS + "ms");
+				scheduleReconnect();
+			}
+		});
+	}
+
+	/*
+	 * a failed connect reports through both the connect future and
+	 * channelClosed, only the first of them schedules the retry
+	 */
+	private void scheduleReconnect() {
+		if (bootstrap != null && !closed && reconnectScheduled.compareAndSet(false, true))
+			SCHEDULER.schedule(this::reconnect, RECONNECT_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * queues the dto for the peer's handler on the given channel, false if the
+	 * link is closed, the queue is full or the dto can't be encoded into a
+	 * single frame
+	 */
+	public boolean send(int channel, Object dto) {
+		if (closed)
+			return false;
+		Outgoing message = encode(channel, dto, remoteBinary);
+		if (message == null) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		if (queued.incrementAndGet() > MAX_QUEUED_MESSAGES) {
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+			return false;
+		}
+		queue.add(message);
+		scheduleFlush(FLUSH_DELAY_MS);
+		return true;
+	}
+
+	/*
+	 * binary when the peer shares the packet registry, otherwise json, null
+	 * when the dto can't be sent
+	 */
+	private static Outgoing encode(int channel, Object dto, boolean binary) {
+		if (binary && PacketDtoCodec.supports(dto)) {
+			try {
+				return checkSize(new Outgoing(channel, dto, FORMAT_BINARY, PacketDtoCodec.encode(dto)));
+			} catch (Exception e) {
+				Logger.log("ServerLink", "Binary encode failed for " + dto.getClass().getName() + ", sending json: " + e);
+			}
+		}
+		if (JSON_TYPES.get(dto.getClass().getName()) != dto.getClass()) {
+			Logger.log("ServerLink", "Refusing to send unregistered type " + dto.getClass().getName() + ".");
+			return null;
+		}
+		try {
+			OutputStream json = new OutputStream(256);
+			PacketDtoCodec.writeString(json, dto.getClass().getName());
+			PacketDtoCodec.writeString(json, PacketDtoCodec.getGson().toJson(dto));
+			return checkSize(new Outgoing(channel, dto, FORMAT_JSON, json.toByteArray()));
+		} catch (Exception e) {
+			Logger.handle(e);
+			return null;
+		}
+	}
+
+	private static Outgoing checkSize(Outgoing message) {
+		if (BATCH_HEADER_BYTES + MESSAGE_HEADER_BYTES + message.payload.length <= MAX_FRAME_BYTES)
+			return message;
+		Logger.log("ServerLink", "Refusing " + message.payload.length + " byte " + message.dto.getClass().getName() + ", larger than a " + MAX_FRAME_BYTES + " byte frame.");
+		return null;
+	}
+
+	private void scheduleFlush(int delay) {
+		if (flushScheduled.compareAndSet(false, true))
+			SCHEDULER.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void flush() {
+		flushScheduled.set(false);
+		Channel channel = this.channel;
+		if (channel == null || !handshaken || !channel.isConnected())
+			return;
+		while (!queue.isEmpty()) {
+			if (!channel.isWritable()) {
+				scheduleFlush(FLUSH_DELAY_MS * 5);
+				return;
+			}
+			OutputStream frame = new OutputStream(4096);
+			frame.writeByte(BATCH);
+			frame.writeShort(0);
+			int count = 0;
+			Outgoing message;
+			while (count < MAX_BATCH_MESSAGES && (message = queue.peek()) != null) {
+				if (message.format == FORMAT_BINARY && !remoteBinary) {
+					Outgoing json = encode(message.channel, message.dto, false);
+					if (json == null) {
+						queue.poll();
+						queued.decrementAndGet();
+						dropped.incrementAndGet();
+						continue;
+					}
+					message = json;
+				}
+				if (count > 0 && frame.getOffset() + MESSAGE_HEADER_BYTES + message.payload.length > MAX_FRAME_BYTES)
+					break;
+				queue.poll();
+				queued.decrementAndGet();
+				writeMessage(frame, message);
+				count++;
+			}
+			if (count == 0)
+				continue;
+			frame.writeByte(count >> 8, 1);
+			frame.writeByte(count, 2);
+			channel.write(ChannelBuffers.wrappedBuffer(frame.getBuffer(), 0, frame.getOffset()));
+			framesSent.incrementAndGet();
+			messagesSent.addAndGet(count);
+			bytesSent.addAndGet(frame.getOffset());
+		}
+	}
+
+	private void writeMessage(OutputStream frame, Outgoing message) {
+		if (message.format == FORMAT_JSON)
+			jsonMessages.incrementAndGet();
+		PacketDtoCodec.writeVarInt(frame, message.channel);
+		frame.writeByte(message.format);
+		PacketDtoCodec.writeVarInt(frame, message.payload.length);
+		frame.writeBytes(message.payload);
+	}
+
+	private void sendHandshake(Channel channel, String key) {
+		OutputStream stream = new OutputStream(64);
+		stream.writeByte(HANDSHAKE);
+		stream.writeInt(MAGIC);
+		stream.writeByte(VERSION);
+		stream.writeInt(PacketTypeRegistry.getHash());
+		PacketDtoCodec.writeString(stream, key);
+		channel.write(ChannelBuffers.wrappedBuffer(stream.getBuffer(), 0, stream.getOffset()));
+	}
+
+	@Override
+	public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+		channel = e.getChannel();
+		if (bootstrap != null)
+			sendHandshake(channel, key);
+	}
+
+	@Override
+	public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) {
+		handshaken = false;
+		channel = null;
+		scheduleReconnect();
+	}
+
+	@Override
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+		if (!(e.getMessage() instanceof ChannelBuffer buffer))
+			return;
+		byte[] data = new byte[buffer.readableBytes()];
+		buffer.readBytes(data);
+		InputStream stream = new InputStream(data);
+		int type = stream.readUnsignedByte();
+		if (type == HANDSHAKE) {
+			handleHandshake(e.getChannel(), stream);
+			return;
+		}
+		if (type != BATCH || !handshaken)
+			return;
+		int count = stream.readUnsignedShort();
+		for (int i = 0; i < count; i++) {
+			int channel = PacketDtoCodec.readVarInt(stream);
+			int format = stream.readUnsignedByte();
+			int length = PacketDtoCodec.readVarInt(stream);
+			int end = stream.getOffset() + length;
+			try {
+				Object dto;
+				if (format == FORMAT_BINARY)
+					dto = PacketDtoCodec.decode(stream);
+				else {
+					String className = PacketDtoCodec.readString(stream);
+					String json = PacketDtoCodec.readString(stream);
+					dto = PacketDtoCodec.getGson().fromJson(json, getJsonType(className));
+				}
+				messagesReceived.incrementAndGet();
+				Handler handler = handlers.get(channel);
+				if (handler != null)
+					handler.handle(this, dto);
+			} catch (Throwable t) {
+				Logger.handle(t);
+			}
+			stream.setOffset(end);
+		}
+	}
+
+	private void handleHandshake(Channel channel, InputStream stream) {
+		if (stream.readInt() != MAGIC || stream.readUnsignedByte() != VERSION) {
+			channel.close();
+			return;
+		}
+		remoteBinary = stream.readInt() == PacketTypeRegistry.getHash();
+		if (bootstrap == null) {
+			String remoteKey = PacketDtoCodec.readString(stream);
+			if (key != null && !key.equals(remoteKey)) {
+				Logger.log("ServerLink", "Rejected link from " + channel.getRemoteAddress() + ", bad key.");
+				channel.close();
+				return;
+			}
+			sendHandshake(channel, null);
+			if (onConnect != null)
+				onConnect.handle(this, null);
+		}
+		handshaken = true;
+		Logger.log("ServerLink", "Link established with " + channel.getRemoteAddress() + (remoteBinary ? "" : ", packet registry differs so packets are sent as json"));
+		scheduleFlush(0);
+	}
+
+	/*
+	 * only registered types, a peer's class name is never loaded
+	 */
+	private static Class<?> getJsonType(String className) {
+		Class<?> type = JSON_TYPES.get(className);
+		if (type == null)
+			throw new IllegalArgumentException("Unregistered json type " + className + ".");
+		return type;
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+		Logger.log("ServerLink", "Link error with " + e.getChannel().getRemoteAddress() + ": " + e.getCause());
+		e.getChannel().close();
+	}
+
+	public void close() {
+		closed = true;
+		Channel channel = this.channel;
+		if (channel != null)
+			channel.close();
+	}
+
+	public boolean isConnected() {
+		Channel channel = this.channel;
+		return handshaken && channel != null && channel.isConnected();
+	}
+
+	public boolean isBinary() {
+		return remoteBinary;
+	}
+
+	public int getQueuedMessages() {
+		return queued.get();
+	}
+
+	public long getFramesSent() {
+		return framesSent.get();
+	}
+
+	public long getMessagesSent() {
+		return messagesSent.get();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived.get();
+	}
+
+	public long getJsonMessages() {
+		return jsonMessages.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "[remote=" + (channel == null ? remote : channel.getRemoteAddress()) + ", connected=" + isConnected() + ", binary=" + remoteBinary + ", queued=" + getQueuedMessages() + ", frames=" + getFramesSent() + ", sent=" + getMessagesSent() + ", bytes=" + getBytesSent() + ", received=" + getMessagesReceived() + ", json=" + getJsonMessages() + ", dropped=" + getDropped() + "]";
+	}
+}
@@ -0,0 +1,90 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import com.sun.management.ThreadMXBean;
+
+/*
+ * Minimal timing loop for the *Benchmark mains under src/test, run with
+ * gradle bench -Pbenchmark=<class>. Each body is warmed up for at least the
+ * warmup rounds and time, then timed for the measured rounds, and the median
+ * time and the lowest allocation per operation are printed.
+ */
+public final class Bench {
+
+	private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static final int WARMUP = Integer.getInteger("bench.warmup", 50);
+	private static final long WARMUP_NANOS = Long.getLong("bench.warmupMillis", 2000) * 1000000L;
+	private static final int ROUNDS = Integer.getInteger("bench.rounds", 50);
+
+	/*
+	 * bodies store their results here so the jit can't drop the work
+	 */
+	public static volatile Object sink;
+
+	public record Result(String name, double nanosPerOp, double bytesPerOp) {
+		@Override
+		public String toString() {
+			return String.format("%-44s %12.1f ns/op %12.1f B/op", name, nanosPerOp, bytesPerOp);
+		}
+	}
+
+	/*
+	 * body performs operations units of work per call
+	 */
+	public static Result run(String name, int operations, Runnable body) {
+		long warmupStart = System.nanoTime();
+		for (int i = 0; i < WARMUP || System.nanoTime() - warmupStart < WARMUP_NANOS; i++)
+			body.run();
+		long[] times = new long[ROUNDS];
+		long bytes = Long.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			long allocated = THREADS.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			body.run();
+			times[i] = System.nanoTime() - start;
+			bytes = Math.min(bytes, THREADS.getCurrentThreadAllocatedBytes() - allocated);
+		}
+		Arrays.sort(times);
+		Result result = new Result(name, (double) times[ROUNDS / 2] / operations, (double) bytes / operations);
+		System.out.println(result);
+		return result;
+	}
+
+	/*
+	 * bytes still reachable after a full gc, for before/after footprints
+	 */
+	public static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private Bench() {
+
+	}
+}
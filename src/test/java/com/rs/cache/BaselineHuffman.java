@@ -0,0 +1,409 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+
+/*
+ * the codec as it was before the nibble decode tables and the scratch
+ * buffers, kept as the reference for HuffmanTest and HuffmanBenchmark. The
+ * table comes in as bytes instead of from a Store, and the Utils message
+ * helpers it used are copied in below as they were.
+ */
+final class BaselineHuffman {
+
+	private int[] huffmanAlgorithm1;
+	private byte[] huffmanAlgorithm2;
+	private int[] huffmanAlgorithm3;
+	
+	BaselineHuffman(byte[] huffmanFile) {
+		loadAlgorithmValues(huffmanFile);
+	}
+	
+	public int sendEncryptMessage(OutputStream stream, String message) {
+		try {
+			int startOffset = stream.getOffset();
+			byte[] messageData = getFormatedMessage(message);
+			stream.writeSmart(messageData.length);
+			stream.checkCapacityPosition(stream.getOffset() + message.length() * 2);
+			stream.skip(encryptMessage(stream.getOffset(), messageData.length, stream.getBuffer(), 0, messageData));
+			return stream.getOffset() - startOffset;
+		} catch (Throwable e) {
+			return -1;
+		}
+	}
+
+	public final String readEncryptedMessage(InputStream stream) {
+		return readEncryptedMessage(32767, stream);
+	}
+
+	public final String readEncryptedMessage(int maxLength, InputStream stream) {
+		try {
+			int messageDataLength = stream.readUnsignedSmart();
+			if (messageDataLength > maxLength)
+				messageDataLength = maxLength;
+			byte[] messageData = new byte[messageDataLength];
+			stream.skip(decryptMessage(messageData, messageDataLength, stream.getBuffer(), stream.getOffset(), 0));
+			String message = getUnformatedMessage(messageDataLength, 0, messageData);
+			return message;
+		} catch (Throwable e) {
+			return "";
+		}
+	}
+
+	public final void loadAlgorithmValues(byte[] huffmanFile) {
+		int fileLength = huffmanFile.length;
+		huffmanAlgorithm2 = huffmanFile;
+		huffmanAlgorithm1 = new int[fileLength];
+		huffmanAlgorithm3 = new int[8];
+		int[] is = new int[33];
+		int i_4_ = 0;
+		for (int i_5_ = 0; (fileLength ^ 0xffffffff) < (i_5_ ^ 0xffffffff); i_5_++) {
+			int i_6_ = huffmanFile[i_5_];
+			if (i_6_ != 0) {
+				int i_7_ = 1 << 32 - i_6_;
+				int i_8_ = is[i_6_];
+				huffmanAlgorithm1[i_5_] = i_8_;
+				int i_9_;
+				if ((i_8_ & i_7_) == 0) {
+					for (int i_10_ = -1 + i_6_; i_10_ >= 1; i_10_--) {
+						int i_11_ = is[i_10_];
+						if (i_8_ != i_11_)
+							break;
+						int i_12_ = 1 << 32 + -i_10_;
+						if ((i_12_ & i_11_ ^ 0xffffffff) != -1) {
+							is[i_10_] = is[-1 + i_10_];
+							break;
+						}
+						is[i_10_] = (i_11_ | i_12_);
+					}
+					i_9_ = i_7_ | i_8_;
+				} else
+					i_9_ = is[i_6_ + -1];
+				is[i_6_] = i_9_;
+				for (int i_13_ = 1 + i_6_; i_13_ <= 32; i_13_++) {
+					if (i_8_ == is[i_13_])
+						is[i_13_] = i_9_;
+				}
+				int i_14_ = 0;
+				for (int i_15_ = 0; (i_6_ ^ 0xffffffff) < (i_15_ ^ 0xffffffff); i_15_++) {
+					int i_16_ = -2147483648 >>> i_15_;
+					if ((i_8_ & i_16_ ^ 0xffffffff) == -1)
+						i_14_++;
+					else {
+						if (huffmanAlgorithm3[i_14_] == 0)
+							huffmanAlgorithm3[i_14_] = i_4_;
+						i_14_ = huffmanAlgorithm3[i_14_];
+					}
+					if ((huffmanAlgorithm3.length ^ 0xffffffff) >= (i_14_ ^ 0xffffffff)) {
+						int[] is_17_ = new int[huffmanAlgorithm3.length * 2];
+						for (int i_18_ = 0; i_18_ < huffmanAlgorithm3.length; i_18_++)
+							is_17_[i_18_] = huffmanAlgorithm3[i_18_];
+						huffmanAlgorithm3 = is_17_;
+					}
+					i_16_ >>>= 1;
+				}
+				huffmanAlgorithm3[i_14_] = i_5_ ^ 0xffffffff;
+				if ((i_4_ ^ 0xffffffff) >= (i_14_ ^ 0xffffffff))
+					i_4_ = 1 + i_14_;
+			}
+		}
+	}
+
+	public final int decryptMessage(byte[] messageData, int messagedDataLength, byte[] streamBuffer, int streamOffset, int messageDataOffset) {
+		if ((messagedDataLength ^ 0xffffffff) == -1)
+			return 0;
+		int i = 0;
+		messagedDataLength += messageDataOffset;
+		int i_1_ = streamOffset;
+		for (;;) {
+			byte i_2_ = streamBuffer[i_1_];
+			if ((i_2_ ^ 0xffffffff) <= -1)
+				i++;
+			else
+				i = huffmanAlgorithm3[i];
+			int i_3_;
+			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if (messagedDataLength <= messageDataOffset)
+					break;
+				i = 0;
+			}
+			if ((i_2_ & 0x40 ^ 0xffffffff) == -1)
+				i++;
+			else
+				i = huffmanAlgorithm3[i];
+			if (((i_3_ = huffmanAlgorithm3[i]) ^ 0xffffffff) > -1) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if (messagedDataLength <= messageDataOffset)
+					break;
+				i = 0;
+			}
+			if ((0x20 & i_2_ ^ 0xffffffff) != -1)
+				i = huffmanAlgorithm3[i];
+			else
+				i++;
+			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if (messagedDataLength <= messageDataOffset)
+					break;
+				i = 0;
+			}
+			if ((0x10 & i_2_ ^ 0xffffffff) != -1)
+				i = huffmanAlgorithm3[i];
+			else
+				i++;
+			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if ((messageDataOffset ^ 0xffffffff) <= (messagedDataLength ^ 0xffffffff))
+					break;
+				i = 0;
+			}
+			if ((i_2_ & 0x8) == 0)
+				i++;
+			else
+				i = huffmanAlgorithm3[i];
+			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if (messageDataOffset >= messagedDataLength)
+					break;
+				i = 0;
+			}
+			if ((0x4 & i_2_ ^ 0xffffffff) != -1)
+				i = huffmanAlgorithm3[i];
+			else
+				i++;
+			if (((i_3_ = huffmanAlgorithm3[i]) ^ 0xffffffff) > -1) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if (messageDataOffset >= messagedDataLength)
+					break;
+				i = 0;
+			}
+			if ((0x2 & i_2_) != 0)
+				i = huffmanAlgorithm3[i];
+			else
+				i++;
+			if (((i_3_ = huffmanAlgorithm3[i]) ^ 0xffffffff) > -1) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if (messagedDataLength <= messageDataOffset)
+					break;
+				i = 0;
+			}
+			if ((0x1 & i_2_ ^ 0xffffffff) != -1)
+				i = huffmanAlgorithm3[i];
+			else
+				i++;
+			if ((i_3_ = huffmanAlgorithm3[i]) < 0) {
+				messageData[messageDataOffset++] = (byte) (i_3_ ^ 0xffffffff);
+				if ((messageDataOffset ^ 0xffffffff) <= (messagedDataLength ^ 0xffffffff))
+					break;
+				i = 0;
+			}
+			i_1_++;
+		}
+		return -streamOffset + i_1_ - -1;
+	}
+
+	public final int encryptMessage(int streamOffset, int messageDataLength, byte[] streamBuffer, int messageDataOffset, byte[] messageData) {
+		int i = 0;
+		messageDataLength += messageDataOffset;
+		int i_19_ = streamOffset << 309760323;
+		for (/**/; messageDataOffset < messageDataLength; messageDataOffset++) {
+			int i_20_ = 0xff & messageData[messageDataOffset];
+			int i_21_ = huffmanAlgorithm1[i_20_];
+			int i_22_ = huffmanAlgorithm2[i_20_];
+			if (i_22_ == 0)
+				throw new RuntimeException("No codeword for data value " + i_20_);
+			int i_23_ = i_19_ >> -976077821;
+			int i_24_ = 0x7 & i_19_;
+			i &= -i_24_ >> -1041773793;
+			int i_25_ = (-1 + i_24_ - -i_22_ >> -2003626461) + i_23_;
+			i_19_ += i_22_;
+			i_24_ += 24;
+			streamBuffer[i_23_] = (byte) (i = (i | (i_21_ >>> i_24_)));
+			if (i_25_ > i_23_) {
+				i_24_ -= 8;
+				i_23_++;
+				streamBuffer[i_23_] = (byte) (i = i_21_ >>> i_24_);
+				if ((i_23_ ^ 0xffffffff) > (i_25_ ^ 0xffffffff)) {
+					i_24_ -= 8;
+					i_23_++;
+					streamBuffer[i_23_] = (byte) (i = i_21_ >>> i_24_);
+					if ((i_23_ ^ 0xffffffff) > (i_25_ ^ 0xffffffff)) {
+						i_24_ -= 8;
+						i_23_++;
+						streamBuffer[i_23_] = (byte) (i = i_21_ >>> i_24_);
+						if ((i_25_ ^ 0xffffffff) < (i_23_ ^ 0xffffffff)) {
+							i_23_++;
+							i_24_ -= 8;
+							streamBuffer[i_23_] = (byte) (i = i_21_ << -i_24_);
+						}
+					}
+				}
+			}
+		}
+		return -streamOffset + (7 + i_19_ >> 1737794179);
+	}
+
+	static char[] aCharArray6385 = { '\u20ac', '\0', '\u201a', '\u0192', '\u201e', '\u2026', '\u2020', '\u2021', '\u02c6', '\u2030', '\u0160', '\u2039', '\u0152', '\0', '\u017d', '\0', '\0', '\u2018', '\u2019', '\u201c', '\u201d', '\u2022', '\u2013', '\u2014', '\u02dc', '\u2122', '\u0161', '\u203a', '\u0153', '\0', '\u017e', '\u0178' };
+
+	static final String getUnformatedMessage(int messageDataLength, int messageDataOffset, byte[] messageData) {
+		char[] cs = new char[messageDataLength];
+		int i = 0;
+		for (int i_6_ = 0; i_6_ < messageDataLength; i_6_++) {
+			int i_7_ = 0xff & messageData[i_6_ + messageDataOffset];
+			if ((i_7_ ^ 0xffffffff) != -1) {
+				if ((i_7_ ^ 0xffffffff) <= -129 && (i_7_ ^ 0xffffffff) > -161) {
+					int i_8_ = aCharArray6385[i_7_ - 128];
+					if (i_8_ == 0)
+						i_8_ = 63;
+					i_7_ = i_8_;
+				}
+				cs[i++] = (char) i_7_;
+			}
+		}
+		return new String(cs, 0, i);
+	}
+
+	static final byte[] getFormatedMessage(String message) {
+		int i_0_ = message.length();
+		byte[] is = new byte[i_0_];
+		for (int i_1_ = 0; (i_1_ ^ 0xffffffff) > (i_0_ ^ 0xffffffff); i_1_++) {
+			int i_2_ = message.charAt(i_1_);
+			if (((i_2_ ^ 0xffffffff) >= -1 || i_2_ >= 128) && (i_2_ < 160 || i_2_ > 255)) {
+				if ((i_2_ ^ 0xffffffff) != -8365) {
+					if ((i_2_ ^ 0xffffffff) == -8219)
+						is[i_1_] = (byte) -126;
+					else if ((i_2_ ^ 0xffffffff) == -403)
+						is[i_1_] = (byte) -125;
+					else if (i_2_ == 8222)
+						is[i_1_] = (byte) -124;
+					else if (i_2_ != 8230) {
+						if ((i_2_ ^ 0xffffffff) != -8225) {
+							if ((i_2_ ^ 0xffffffff) != -8226) {
+								if ((i_2_ ^ 0xffffffff) == -711)
+									is[i_1_] = (byte) -120;
+								else if (i_2_ == 8240)
+									is[i_1_] = (byte) -119;
+								else if ((i_2_ ^ 0xffffffff) == -353)
+									is[i_1_] = (byte) -118;
+								else if ((i_2_ ^ 0xffffffff) != -8250) {
+									if (i_2_ == 338)
+										is[i_1_] = (byte) -116;
+									else if (i_2_ == 381)
+										is[i_1_] = (byte) -114;
+									else if ((i_2_ ^ 0xffffffff) == -8217)
+										is[i_1_] = (byte) -111;
+									else if (i_2_ == 8217)
+										is[i_1_] = (byte) -110;
+									else if (i_2_ != 8220) {
+										if (i_2_ == 8221)
+											is[i_1_] = (byte) -108;
+										else if ((i_2_ ^ 0xffffffff) == -8227)
+											is[i_1_] = (byte) -107;
+										else if ((i_2_ ^ 0xffffffff) != -8212) {
+											if (i_2_ == 8212)
+												is[i_1_] = (byte) -105;
+											else if ((i_2_ ^ 0xffffffff) != -733) {
+												if (i_2_ != 8482) {
+													if (i_2_ == 353)
+														is[i_1_] = (byte) -102;
+													else if (i_2_ != 8250) {
+														if ((i_2_ ^ 0xffffffff) == -340)
+															is[i_1_] = (byte) -100;
+														else if (i_2_ != 382) {
+															if (i_2_ == 376)
+																is[i_1_] = (byte) -97;
+															else
+																is[i_1_] = (byte) 63;
+														} else
+															is[i_1_] = (byte) -98;
+													} else
+														is[i_1_] = (byte) -101;
+												} else
+													is[i_1_] = (byte) -103;
+											} else
+												is[i_1_] = (byte) -104;
+										} else
+											is[i_1_] = (byte) -106;
+									} else
+										is[i_1_] = (byte) -109;
+								} else
+									is[i_1_] = (byte) -117;
+							} else
+								is[i_1_] = (byte) -121;
+						} else
+							is[i_1_] = (byte) -122;
+					} else
+						is[i_1_] = (byte) -123;
+				} else
+					is[i_1_] = (byte) -128;
+			} else
+				is[i_1_] = (byte) i_2_;
+		}
+		return is;
+	}
+
+	static String[] SYMBOLS = { ":", ";" };
+
+	static boolean isSymbol(String line) {
+		for (int i = 0; i < SYMBOLS.length; i++) {
+			if (line.equals(SYMBOLS[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String fixChatMessage(String message) {
+		StringBuilder sb = new StringBuilder();
+		boolean space = false;
+		boolean forcedCaps = true;
+		for (int i = 0; i < message.length(); i++) {
+			if (forcedCaps) {
+				if (String.valueOf(message.charAt(i)).equals(" ") || isSymbol(String.valueOf(message.charAt(i)))) {
+					sb.append(message.charAt(i));
+				} else {
+					sb.append(String.valueOf(message.charAt(i)).toUpperCase());
+					forcedCaps = false;
+				}
+			} else {
+				String line = String.valueOf(message.charAt(i));
+				if (line.equals("?") || line.equals("!") || line.equals(".") || line.equals(":") || line.equals(";")) {
+					forcedCaps = true;
+					sb.append(line);
+				} else if (line.equals(" ")) {
+					space = true;
+					sb.append(line);
+				} else if (line.equals(line.toUpperCase())) {
+					if (space) {
+						sb.append(line);
+						space = false;
+					} else {
+						sb.append(line.toLowerCase());
+					}
+				} else {
+					sb.append(line);
+					space = false;
+					forcedCaps = false;
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
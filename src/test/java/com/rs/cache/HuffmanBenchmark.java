@@ -0,0 +1,85 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import java.util.Random;
+
+import com.rs.bench.Bench;
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+
+/*
+ * encoding and decoding 1,000 chat lines of up to 80 chars through the old
+ * codec and the current one
+ */
+public class HuffmanBenchmark {
+
+	private static final int MESSAGES = 1000;
+
+	public static void main(String[] args) {
+		byte[] table = HuffmanTest.codeLengths(0);
+		Huffman huffman = new Huffman(table);
+		BaselineHuffman baseline = new BaselineHuffman(table);
+		Random random = new Random(0);
+		String[] messages = new String[MESSAGES];
+		byte[][] encoded = new byte[MESSAGES][];
+		for (int i = 0; i < MESSAGES; i++) {
+			messages[i] = HuffmanTest.message(random, 10 + random.nextInt(70));
+			OutputStream stream = new OutputStream(256);
+			huffman.sendEncryptMessage(stream, messages[i]);
+			encoded[i] = stream.toByteArray();
+		}
+		OutputStream out = new OutputStream(MESSAGES * 256);
+
+		Bench.run("send x1000, baseline", MESSAGES, () -> {
+			out.setOffset(0);
+			for (String message : messages)
+				baseline.sendEncryptMessage(out, message);
+			Bench.sink = out.getOffset();
+		});
+		Bench.run("send x1000, current", MESSAGES, () -> {
+			out.setOffset(0);
+			for (String message : messages)
+				huffman.sendEncryptMessage(out, message);
+			Bench.sink = out.getOffset();
+		});
+		Bench.run("read x1000, baseline", MESSAGES, () -> {
+			int total = 0;
+			for (byte[] message : encoded)
+				total += baseline.readEncryptedMessage(new InputStream(message)).length();
+			Bench.sink = total;
+		});
+		Bench.run("read x1000, current", MESSAGES, () -> {
+			int total = 0;
+			for (byte[] message : encoded)
+				total += huffman.readEncryptedMessage(new InputStream(message)).length();
+			Bench.sink = total;
+		});
+		Bench.run("chat x1000, baseline", MESSAGES, () -> {
+			int total = 0;
+			for (byte[] message : encoded)
+				total += BaselineHuffman.fixChatMessage(baseline.readEncryptedMessage(new InputStream(message))).length();
+			Bench.sink = total;
+		});
+		Bench.run("chat x1000, current", MESSAGES, () -> {
+			int total = 0;
+			for (byte[] message : encoded)
+				total += huffman.readChatMessage(32767, new InputStream(message)).length();
+			Bench.sink = total;
+		});
+	}
+}
@@ -0,0 +1,192 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+
+public class HuffmanTest {
+
+	private static final String SPECIALS = "€‚ƒ„…†‡ˆ‰Š‹ŒŽ‘’“”•–—˜™š›œžŸ";
+
+	/*
+	 * code lengths of a huffman code over all 256 values, weighted towards
+	 * printable ascii the way chat is, so lengths run from a few bits up to
+	 * the low twenties like the cache table
+	 */
+	static byte[] codeLengths(long seed) {
+		Random random = new Random(seed);
+		PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+		int[] parents = new int[511];
+		for (int symbol = 0; symbol < 256; symbol++) {
+			long weight = symbol >= 32 && symbol < 127 ? 1000 + random.nextInt(100000) : 1 + random.nextInt(20);
+			queue.add(new long[] { weight, symbol });
+		}
+		int next = 256;
+		while (queue.size() > 1) {
+			long[] a = queue.poll();
+			long[] b = queue.poll();
+			parents[(int) a[1]] = next;
+			parents[(int) b[1]] = next;
+			queue.add(new long[] { a[0] + b[0], next++ });
+		}
+		int root = next - 1;
+		byte[] lengths = new byte[256];
+		for (int symbol = 0; symbol < 256; symbol++) {
+			int depth = 0;
+			for (int node = symbol; node != root; node = parents[node])
+				depth++;
+			lengths[symbol] = (byte) depth;
+		}
+		return lengths;
+	}
+
+	static String message(Random random, int length) {
+		char[] cs = new char[length];
+		for (int i = 0; i < length; i++) {
+			int kind = random.nextInt(20);
+			if (kind == 0)
+				cs[i] = SPECIALS.charAt(random.nextInt(SPECIALS.length()));
+			else if (kind == 1)
+				cs[i] = (char) (160 + random.nextInt(96));
+			else if (kind == 2)
+				cs[i] = "中\u0000\u0081ÿ".charAt(random.nextInt(4));
+			else if (kind < 5)
+				cs[i] = " .?!:;".charAt(random.nextInt(6));
+			else
+				cs[i] = (char) (32 + random.nextInt(95));
+		}
+		return new String(cs);
+	}
+
+	private static byte[] send(Huffman huffman, String message) {
+		OutputStream stream = new OutputStream(16);
+		huffman.sendEncryptMessage(stream, message);
+		return stream.toByteArray();
+	}
+
+	private static byte[] send(BaselineHuffman huffman, String message) {
+		OutputStream stream = new OutputStream(message.length() * 8 + 16);
+		huffman.sendEncryptMessage(stream, message);
+		return stream.toByteArray();
+	}
+
+	/* the next packet's bytes sit after the message */
+	private static byte[] withTrailer(byte[] message) {
+		byte[] buffer = Arrays.copyOf(message, message.length + 8);
+		Arrays.fill(buffer, message.length, buffer.length, (byte) 0x5a);
+		return buffer;
+	}
+
+	private static void assertMatchesBaseline(byte[] table, long seed) {
+		Huffman huffman = new Huffman(table);
+		BaselineHuffman baseline = new BaselineHuffman(table);
+		Random random = new Random(seed);
+		for (int i = 0; i < 2000; i++) {
+			String message = message(random, random.nextInt(i % 10 == 0 ? 400 : 80));
+			byte[] encoded = send(huffman, message);
+			assertArrayEquals(message, send(baseline, message), encoded);
+
+			InputStream stream = new InputStream(withTrailer(encoded));
+			InputStream baselineStream = new InputStream(withTrailer(encoded));
+			String decoded = huffman.readEncryptedMessage(stream);
+			assertEquals(baseline.readEncryptedMessage(baselineStream), decoded);
+			assertEquals(BaselineHuffman.getUnformatedMessage(message.length(), 0, BaselineHuffman.getFormatedMessage(message)), decoded);
+			assertEquals(baselineStream.getOffset(), stream.getOffset());
+			assertEquals(encoded.length, stream.getOffset());
+
+			int maxLength = random.nextInt(100);
+			stream = new InputStream(withTrailer(encoded));
+			baselineStream = new InputStream(withTrailer(encoded));
+			assertEquals(baseline.readEncryptedMessage(maxLength, baselineStream), huffman.readEncryptedMessage(maxLength, stream));
+			assertEquals(baselineStream.getOffset(), stream.getOffset());
+
+			/* sentence casing is only the same without a leading ß, see below */
+			encoded = send(huffman, message.replace('ß', 's'));
+			stream = new InputStream(withTrailer(encoded));
+			baselineStream = new InputStream(withTrailer(encoded));
+			assertEquals(BaselineHuffman.fixChatMessage(baseline.readEncryptedMessage(maxLength, baselineStream)), huffman.readChatMessage(maxLength, stream));
+		}
+	}
+
+	@Test
+	public void matchesBaselineOnSkewedTables() {
+		for (long seed = 0; seed < 4; seed++)
+			assertMatchesBaseline(codeLengths(seed), seed);
+	}
+
+	@Test
+	public void matchesBaselineOnFlatTable() {
+		byte[] table = new byte[256];
+		Arrays.fill(table, (byte) 8);
+		assertMatchesBaseline(table, 7);
+	}
+
+	/*
+	 * the old casing upper cased a sentence's first char as a string, which
+	 * grew a ß into SS. Casing in place keeps the length, so it stays ß.
+	 */
+	@Test
+	public void chatCasingKeepsLength() {
+		byte[] table = codeLengths(2);
+		byte[] encoded = send(new Huffman(table), "ßtraße. ßo");
+		assertEquals("SStraße. SSo", BaselineHuffman.fixChatMessage(new BaselineHuffman(table).readEncryptedMessage(new InputStream(encoded))));
+		assertEquals("ßtraße. ßo", new Huffman(table).readChatMessage(32767, new InputStream(encoded)));
+	}
+
+	@Test
+	public void encodeDecodeRoundTrip() {
+		Huffman huffman = new Huffman(codeLengths(11));
+		Random random = new Random(11);
+		for (int i = 0; i < 1000; i++) {
+			byte[] data = new byte[random.nextInt(300)];
+			random.nextBytes(data);
+			byte[] encoded = new byte[data.length * 4 + 1];
+			int written = huffman.encode(data, 0, data.length, encoded, 0);
+			byte[] decoded = new byte[data.length];
+			assertEquals(written, huffman.decode(encoded, 0, written, decoded, 0, data.length));
+			assertArrayEquals(data, decoded);
+		}
+	}
+
+	@Test
+	public void messageCutByViewEndReadsEmpty() {
+		Huffman huffman = new Huffman(codeLengths(3));
+		byte[] encoded = send(huffman, "the next packet's bytes are not part of this message");
+		byte[] buffer = withTrailer(encoded);
+		assertEquals("", huffman.readEncryptedMessage(new InputStream(buffer, 0, encoded.length - 1)));
+		assertEquals("The next packet's bytes are not part of this message", huffman.readChatMessage(32767, new InputStream(buffer, 0, encoded.length)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void decodeStopsAtSrcEnd() {
+		Huffman huffman = new Huffman(codeLengths(5));
+		byte[] data = "abcdefgh".getBytes();
+		byte[] encoded = new byte[64];
+		int written = huffman.encode(data, 0, data.length, encoded, 0);
+		huffman.decode(encoded, 0, written - 1, new byte[data.length], 0, data.length);
+	}
+}
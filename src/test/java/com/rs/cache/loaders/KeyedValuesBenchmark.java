@@ -0,0 +1,130 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.loaders;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import com.rs.bench.Bench;
+import com.rs.lib.io.InputStream;
+import com.rs.lib.io.OutputStream;
+
+/*
+ * heap held by 40,000 decoded param blocks as the boxed HashMap the
+ * definitions used to keep and as KeyedValues, plus the decode time and a
+ * lookup of a present key in each
+ */
+public class KeyedValuesBenchmark {
+
+	private static final int SETS = 40000;
+
+	/* opcode 249 blocks of 1 to 20 params, about one string in eight */
+	private static byte[][] blocks() {
+		Random random = new Random(0);
+		byte[][] blocks = new byte[SETS][];
+		for (int i = 0; i < SETS; i++) {
+			OutputStream stream = new OutputStream(64);
+			int length = 1 + random.nextInt(20);
+			stream.writeByte(length);
+			for (int key : random.ints(0, 5000).distinct().limit(length).toArray()) {
+				boolean string = random.nextInt(8) == 0;
+				stream.writeByte(string ? 1 : 0);
+				stream.write24BitInt(key);
+				if (string)
+					stream.writeString("param " + random.nextInt(1000));
+				else
+					stream.writeInt(random.nextInt(4) == 0 ? random.nextInt(100) : random.nextInt());
+			}
+			blocks[i] = stream.toByteArray();
+		}
+		return blocks;
+	}
+
+	/* the opcode 249 decode the definitions had before KeyedValues */
+	private static HashMap<Integer, Object> readBoxed(InputStream stream) {
+		int length = stream.readUnsignedByte();
+		HashMap<Integer, Object> params = new HashMap<Integer, Object>(length);
+		for (int index = 0; index < length; index++) {
+			boolean stringInstance = stream.readUnsignedByte() == 1;
+			int key = stream.read24BitInt();
+			Object value = stringInstance ? stream.readString() : stream.readInt();
+			params.put(key, value);
+		}
+		return params;
+	}
+
+	public static void main(String[] args) {
+		byte[][] blocks = blocks();
+
+		long before = Bench.usedHeap();
+		Object[] boxed = new Object[SETS];
+		for (int i = 0; i < SETS; i++)
+			boxed[i] = readBoxed(new InputStream(blocks[i]));
+		long boxedBytes = Bench.usedHeap() - before;
+		Bench.sink = boxed;
+		boxed = null;
+		Bench.sink = null;
+
+		before = Bench.usedHeap();
+		Object[] keyed = new Object[SETS];
+		for (int i = 0; i < SETS; i++)
+			keyed[i] = KeyedValues.readParams(new InputStream(blocks[i]), null);
+		long keyedBytes = Bench.usedHeap() - before;
+		Bench.sink = keyed;
+		keyed = null;
+		Bench.sink = null;
+
+		System.out.printf("heap x%d, boxed HashMap %12d bytes%n", SETS, boxedBytes);
+		System.out.printf("heap x%d, KeyedValues   %12d bytes%n", SETS, keyedBytes);
+
+		Bench.run("decode x40000, boxed HashMap", SETS, () -> {
+			int total = 0;
+			for (byte[] block : blocks)
+				total += readBoxed(new InputStream(block)).size();
+			Bench.sink = total;
+		});
+		Bench.run("decode x40000, KeyedValues", SETS, () -> {
+			int total = 0;
+			for (byte[] block : blocks)
+				total += KeyedValues.readParams(new InputStream(block), null).size();
+			Bench.sink = total;
+		});
+
+		HashMap<?, ?>[] maps = new HashMap<?, ?>[SETS];
+		KeyedValues[] values = new KeyedValues[SETS];
+		int[] keys = new int[SETS];
+		for (int i = 0; i < SETS; i++) {
+			maps[i] = readBoxed(new InputStream(blocks[i]));
+			values[i] = KeyedValues.readParams(new InputStream(blocks[i]), null);
+			keys[i] = values[i].getKey(i % values[i].size());
+		}
+		Bench.run("getInt x40000, boxed HashMap", SETS, () -> {
+			long total = 0;
+			for (int i = 0; i < SETS; i++) {
+				Object value = maps[i].get(keys[i]);
+				total += value instanceof Integer intValue ? intValue : -1;
+			}
+			Bench.sink = total;
+		});
+		Bench.run("getInt x40000, KeyedValues", SETS, () -> {
+			long total = 0;
+			for (int i = 0; i < SETS; i++)
+				total += values[i].getInt(keys[i], -1);
+			Bench.sink = total;
+		});
+	}
+}
@@ -0,0 +1,123 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class CompressionUtilsTest {
+
+	private static byte[] sample(int length, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : i % 17);
+		return data;
+	}
+
+	private static byte[] jdkGzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		try (GZIPOutputStream os = new GZIPOutputStream(bout)) {
+			os.write(data);
+		}
+		return bout.toByteArray();
+	}
+
+	@Test
+	public void gunzipReadsJdkGzip() throws IOException {
+		for (int length : new int[] { 0, 1, 100, 65536, 300000 }) {
+			byte[] data = sample(length, length);
+			assertArrayEquals(data, CompressionUtils.gunzip(jdkGzip(data)));
+		}
+	}
+
+	@Test
+	public void gzipReadsBackThroughJdk() throws IOException {
+		byte[] data = sample(50000, 7);
+		byte[] gzip = CompressionUtils.gzip(data);
+		try (GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+			assertArrayEquals(data, is.readAllBytes());
+		}
+		assertArrayEquals(data, CompressionUtils.gunzip(gzip));
+	}
+
+	@Test
+	public void gunzipIntoRange() throws IOException {
+		byte[] data = sample(4000, 3);
+		byte[] gzip = jdkGzip(data);
+		byte[] src = new byte[gzip.length + 20];
+		System.arraycopy(gzip, 0, src, 9, gzip.length);
+		byte[] dst = new byte[data.length];
+		assertEquals(data.length, CompressionUtils.gunzip(src, 9, gzip.length, dst));
+		assertArrayEquals(data, dst);
+		assertEquals(-1, CompressionUtils.gunzip(src, 9, gzip.length, new byte[data.length - 1]));
+	}
+
+	@Test
+	public void gunzipRejectsBadCrc() throws IOException {
+		byte[] data = sample(2000, 11);
+		byte[] gzip = jdkGzip(data);
+		gzip[gzip.length - 8] ^= 1;
+		assertEquals(-1, CompressionUtils.gunzip(gzip, 0, gzip.length, new byte[data.length]));
+		assertNull(CompressionUtils.gunzip(gzip));
+	}
+
+	@Test
+	public void gunzipRejectsBadSize() throws IOException {
+		byte[] data = sample(2000, 13);
+		byte[] gzip = jdkGzip(data);
+		gzip[gzip.length - 4]++;
+		assertEquals(-1, CompressionUtils.gunzip(gzip, 0, gzip.length, new byte[data.length + 1]));
+		assertNull(CompressionUtils.gunzip(gzip));
+	}
+
+	@Test
+	public void gunzipRejectsOversizeTrailer() throws IOException {
+		byte[] gzip = jdkGzip(sample(100, 17));
+		gzip[gzip.length - 1] = (byte) 0x80;
+		assertNull(CompressionUtils.gunzip(gzip));
+		gzip[gzip.length - 1] = 0x10;
+		assertNull(CompressionUtils.gunzip(gzip));
+	}
+
+	@Test
+	public void gunzipLengthReadsBoundedTrailer() throws IOException {
+		byte[] gzip = jdkGzip(sample(3000, 23));
+		assertEquals(3000, CompressionUtils.gunzipLength(gzip, 0, gzip.length));
+		gzip[gzip.length - 2] = 0x7f;
+		assertEquals(-1, CompressionUtils.gunzipLength(gzip, 0, gzip.length));
+		gzip[0] = 0;
+		assertEquals(-1, CompressionUtils.gunzipLength(gzip, 0, gzip.length));
+	}
+
+	@Test
+	public void gunzipRejectsTruncated() throws IOException {
+		byte[] data = sample(2000, 19);
+		byte[] gzip = jdkGzip(data);
+		assertEquals(-1, CompressionUtils.gunzip(gzip, 0, gzip.length - 3, new byte[data.length]));
+	}
+}
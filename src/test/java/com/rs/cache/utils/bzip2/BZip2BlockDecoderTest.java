@@ -0,0 +1,144 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.cache.utils.bzip2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.rs.cache.utils.CompressionUtils;
+
+public class BZip2BlockDecoderTest {
+
+	private static byte[] sample(int length, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (byte) (random.nextInt(3) == 0 ? random.nextInt(256) : i / 64 % 31);
+		return data;
+	}
+
+	/*
+	 * same container layout CompressionUtils.bzip2 produces, the 'h' and
+	 * block size bytes are dropped
+	 */
+	private static byte[] compress(byte[] data, int blockSize) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		try (CBZip2OutputStream os = new CBZip2OutputStream(bout, blockSize)) {
+			os.write(data);
+		}
+		byte[] bytes = bout.toByteArray();
+		return Arrays.copyOfRange(bytes, 2, bytes.length);
+	}
+
+	private static void assertRoundTrip(byte[] data, int blockSize) throws IOException {
+		byte[] packed = compress(data, blockSize);
+		byte[] dst = new byte[data.length];
+		assertEquals(data.length, BZip2BlockDecoder.decompress(packed, 0, packed.length, dst));
+		assertArrayEquals(data, dst);
+	}
+
+	@Test
+	public void roundTripsSmallInputs() throws IOException {
+		assertRoundTrip(new byte[0], 1);
+		assertRoundTrip(new byte[] { 42 }, 1);
+		assertRoundTrip("the quick brown fox jumps over the lazy dog".getBytes(), 1);
+	}
+
+	@Test
+	public void roundTripsRuns() throws IOException {
+		byte[] data = new byte[70000];
+		Arrays.fill(data, 0, 40000, (byte) 7);
+		Arrays.fill(data, 40000, data.length, (byte) -3);
+		assertRoundTrip(data, 1);
+	}
+
+	@Test
+	public void roundTripsRandomData() throws IOException {
+		for (long seed = 0; seed < 8; seed++)
+			assertRoundTrip(sample(1000 + (int) seed * 9000, seed), 1);
+		byte[] noise = new byte[50000];
+		new Random(99).nextBytes(noise);
+		assertRoundTrip(noise, 1);
+	}
+
+	@Test
+	public void roundTripsMultipleBlocks() throws IOException {
+		assertRoundTrip(sample(350000, 5), 1);
+		assertRoundTrip(sample(1000000, 6), 9);
+	}
+
+	@Test
+	public void matchesStreamDecoder() throws IOException {
+		byte[] data = sample(120000, 21);
+		byte[] packed = CompressionUtils.bzip2(data);
+		byte[] dst = new byte[data.length];
+		assertEquals(data.length, CompressionUtils.bunzip2(packed, 0, packed.length, dst));
+		assertArrayEquals(CompressionUtils.bunzip2(packed), dst);
+	}
+
+	@Test
+	public void decodesFromOffset() throws IOException {
+		byte[] data = sample(5000, 8);
+		byte[] packed = compress(data, 1);
+		byte[] src = new byte[packed.length + 13];
+		System.arraycopy(packed, 0, src, 9, packed.length);
+		byte[] dst = new byte[data.length];
+		assertEquals(data.length, BZip2BlockDecoder.decompress(src, 9, packed.length, dst));
+		assertArrayEquals(data, dst);
+	}
+
+	@Test
+	public void boundCoversRuns() throws IOException {
+		byte[] data = new byte[2000000];
+		byte[] packed = compress(data, 9);
+		assertTrue(BZip2BlockDecoder.maxDecodedLength(packed, 0, packed.length) >= data.length);
+		assertEquals(-1, BZip2BlockDecoder.maxDecodedLength(new byte[] { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0 }, 0, 7));
+		assertEquals(-1, BZip2BlockDecoder.maxDecodedLength(packed, 0, 5));
+	}
+
+	@Test
+	public void rejectsSmallDestination() throws IOException {
+		byte[] data = sample(5000, 9);
+		byte[] packed = compress(data, 1);
+		assertEquals(-1, BZip2BlockDecoder.decompress(packed, 0, packed.length, new byte[data.length - 1]));
+	}
+
+	@Test
+	public void rejectsCorruptStreams() throws IOException {
+		byte[] data = sample(20000, 10);
+		byte[] packed = compress(data, 1);
+		Random random = new Random(1);
+		for (int i = 0; i < 200; i++) {
+			byte[] corrupt = packed.clone();
+			int position = 1 + random.nextInt(corrupt.length - 1);
+			corrupt[position] ^= 1 << random.nextInt(8);
+			byte[] dst = new byte[data.length];
+			int read = BZip2BlockDecoder.decompress(corrupt, 0, corrupt.length, dst);
+			if (read != -1)
+				assertArrayEquals(data, Arrays.copyOf(dst, read));
+		}
+		assertEquals(-1, BZip2BlockDecoder.decompress(packed, 0, packed.length / 2, new byte[data.length]));
+	}
+}
@@ -0,0 +1,120 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.rs.bench.Bench;
+import com.rs.lib.util.MapUtils;
+import com.rs.lib.util.MapUtils.Structure;
+
+/*
+ * allocation and time of the scene math zone encoders run per event, through
+ * MapUtils.decode as WorldTile used to and through PackedTile, and of 2,000
+ * players walking between chunks in a map of lists and in ChunkSpatialHash
+ */
+public class ChunkSpatialHashBenchmark {
+
+	private static final int EVENTS = 10000;
+	private static final int PLAYERS = 2000;
+
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		int[] xs = new int[EVENTS];
+		int[] ys = new int[EVENTS];
+		int[] bases = new int[EVENTS];
+		for (int i = 0; i < EVENTS; i++) {
+			xs[i] = 3000 + random.nextInt(400);
+			ys[i] = 3000 + random.nextInt(400);
+			bases[i] = new WorldTile(xs[i] - 48 + random.nextInt(8), ys[i] - 48 + random.nextInt(8), 0).getChunkId();
+		}
+
+		Bench.run("scene math, MapUtils.decode", EVENTS, () -> {
+			int total = 0;
+			for (int i = 0; i < EVENTS; i++) {
+				total += xs[i] - MapUtils.decode(Structure.CHUNK, bases[i])[0] * 8;
+				total += ys[i] - MapUtils.decode(Structure.CHUNK, bases[i])[1] * 8;
+			}
+			Bench.sink = total;
+		});
+		Bench.run("scene math, PackedTile", EVENTS, () -> {
+			int total = 0;
+			for (int i = 0; i < EVENTS; i++) {
+				total += PackedTile.getXInScene(xs[i], bases[i]);
+				total += PackedTile.getYInScene(ys[i], bases[i]);
+			}
+			Bench.sink = total;
+		});
+
+		int[] tiles = new int[PLAYERS];
+		int[][] steps = new int[PLAYERS][2];
+		for (int i = 0; i < PLAYERS; i++) {
+			tiles[i] = PackedTile.of(3000 + random.nextInt(400), 3000 + random.nextInt(400), 0);
+			steps[i][0] = random.nextInt(3) - 1;
+			steps[i][1] = random.nextInt(3) - 1;
+		}
+		Integer[] players = new Integer[PLAYERS];
+		Map<Integer, List<Integer>> lists = new HashMap<>();
+		ChunkSpatialHash<Integer> hash = new ChunkSpatialHash<>();
+		for (int i = 0; i < PLAYERS; i++) {
+			players[i] = i;
+			lists.computeIfAbsent(PackedTile.getChunkId(tiles[i]), k -> new ArrayList<>()).add(players[i]);
+			hash.add(PackedTile.getChunkId(tiles[i]), players[i]);
+		}
+		int[] listTiles = tiles.clone();
+		Bench.run("walk x2000, map of lists", PLAYERS, () -> {
+			for (int i = 0; i < PLAYERS; i++) {
+				int from = PackedTile.getChunkId(listTiles[i]);
+				listTiles[i] = walk(listTiles[i], steps[i]);
+				int to = PackedTile.getChunkId(listTiles[i]);
+				if (from == to)
+					continue;
+				List<Integer> list = lists.get(from);
+				list.remove(players[i]);
+				if (list.isEmpty())
+					lists.remove(from);
+				lists.computeIfAbsent(to, k -> new ArrayList<>()).add(players[i]);
+			}
+			Bench.sink = lists;
+		});
+		Bench.run("walk x2000, ChunkSpatialHash", PLAYERS, () -> {
+			for (int i = 0; i < PLAYERS; i++) {
+				int from = PackedTile.getChunkId(tiles[i]);
+				tiles[i] = walk(tiles[i], steps[i]);
+				hash.move(from, PackedTile.getChunkId(tiles[i]), players[i]);
+			}
+			Bench.sink = hash;
+		});
+	}
+
+	/*
+	 * back and forth across a 400 tile square
+	 */
+	private static int walk(int tile, int[] step) {
+		int x = PackedTile.getX(tile) + step[0];
+		int y = PackedTile.getY(tile) + step[1];
+		if (x < 3000 || x >= 3400)
+			step[0] = -step[0];
+		if (y < 3000 || y >= 3400)
+			step[1] = -step[1];
+		return PackedTile.of(Math.max(3000, Math.min(3399, x)), Math.max(3000, Math.min(3399, y)), 0);
+	}
+}
@@ -0,0 +1,139 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.game;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ChunkSpatialHashTest {
+
+	private static final WorldTile WEST = new WorldTile(3199, 3200, 0);
+	private static final WorldTile EAST = new WorldTile(3200, 3200, 0);
+	private static final WorldTile NORTH = new WorldTile(3199, 3208, 0);
+	private static final WorldTile ABOVE = new WorldTile(3199, 3200, 1);
+
+	private static int chunk(WorldTile tile) {
+		return PackedTile.getChunkId(PackedTile.of(tile));
+	}
+
+	private static List<String> values(ChunkSpatialHash<String> hash, int chunkId) {
+		List<String> values = new ArrayList<>();
+		hash.forEach(chunkId, values::add);
+		Collections.sort(values);
+		return values;
+	}
+
+	@Test
+	public void neighbouringTilesLandInTheirOwnChunks() {
+		ChunkSpatialHash<String> hash = new ChunkSpatialHash<>();
+		hash.add(WEST, "west");
+		hash.add(EAST, "east");
+		hash.add(NORTH, "north");
+		hash.add(ABOVE, "above");
+		assertEquals(4, hash.getChunkCount());
+		assertEquals(List.of("west"), values(hash, chunk(WEST)));
+		assertEquals(List.of("east"), values(hash, chunk(EAST)));
+		assertEquals(List.of("north"), values(hash, chunk(NORTH)));
+		assertEquals(List.of("above"), values(hash, chunk(ABOVE)));
+		List<String> around = new ArrayList<>();
+		hash.forEachAround(chunk(WEST), 1, around::add);
+		Collections.sort(around);
+		assertEquals(List.of("east", "north", "west"), around);
+	}
+
+	@Test
+	public void removeEmptiesChunk() {
+		ChunkSpatialHash<String> hash = new ChunkSpatialHash<>();
+		hash.add(WEST, "a");
+		hash.add(WEST, "b");
+		assertFalse(hash.remove(EAST, "a"));
+		assertTrue(hash.remove(WEST, "a"));
+		assertEquals(List.of("b"), values(hash, chunk(WEST)));
+		assertTrue(hash.remove(WEST, "b"));
+		assertFalse(hash.remove(WEST, "b"));
+		assertEquals(0, hash.count(chunk(WEST)));
+		assertEquals(0, hash.getChunkCount());
+		assertEquals(0, hash.size());
+	}
+
+	@Test
+	public void moveAcrossChunkBoundaries() {
+		ChunkSpatialHash<String> hash = new ChunkSpatialHash<>();
+		hash.add(WEST, "player");
+		hash.add(WEST, "item");
+		hash.move(chunk(WEST), chunk(EAST), "player");
+		assertEquals(List.of("item"), values(hash, chunk(WEST)));
+		assertEquals(List.of("player"), values(hash, chunk(EAST)));
+		hash.move(chunk(EAST), chunk(ABOVE), "player");
+		assertEquals(0, hash.count(chunk(EAST)));
+		assertEquals(List.of("player"), values(hash, chunk(ABOVE)));
+		hash.move(chunk(ABOVE), chunk(ABOVE), "player");
+		assertEquals(List.of("player"), values(hash, chunk(ABOVE)));
+		assertEquals(2, hash.size());
+		assertArrayEquals(new String[] { "player", null }, hash.toArray(chunk(ABOVE), new String[2]));
+	}
+
+	/*
+	 * players walking over a few hundred chunks, checked against a plain map
+	 * so growth and removals inside probe runs are both covered
+	 */
+	@Test
+	public void randomWalkMatchesMap() {
+		ChunkSpatialHash<Integer> hash = new ChunkSpatialHash<>(4);
+		Map<Integer, List<Integer>> expected = new HashMap<>();
+		int[] tiles = new int[300];
+		Random random = new Random(5);
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = PackedTile.of(3100 + random.nextInt(200), 3100 + random.nextInt(200), random.nextInt(2));
+			hash.add(PackedTile.getChunkId(tiles[i]), i);
+			expected.computeIfAbsent(PackedTile.getChunkId(tiles[i]), k -> new ArrayList<>()).add(i);
+		}
+		for (int step = 0; step < 20000; step++) {
+			int i = random.nextInt(tiles.length);
+			int from = PackedTile.getChunkId(tiles[i]);
+			tiles[i] = PackedTile.translate(tiles[i], random.nextInt(17) - 8, random.nextInt(17) - 8, 0);
+			int to = PackedTile.getChunkId(tiles[i]);
+			hash.move(from, to, i);
+			if (from != to) {
+				expected.get(from).remove((Integer) i);
+				if (expected.get(from).isEmpty())
+					expected.remove(from);
+				expected.computeIfAbsent(to, k -> new ArrayList<>()).add(i);
+			}
+		}
+		assertEquals(tiles.length, hash.size());
+		assertEquals(expected.size(), hash.getChunkCount());
+		for (Map.Entry<Integer, List<Integer>> entry : expected.entrySet()) {
+			List<Integer> actual = new ArrayList<>();
+			hash.forEach(entry.getKey(), actual::add);
+			Collections.sort(actual);
+			Collections.sort(entry.getValue());
+			assertEquals(entry.getValue(), actual);
+		}
+	}
+}
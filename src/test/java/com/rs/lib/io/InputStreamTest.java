@@ -0,0 +1,64 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.io;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class InputStreamTest {
+
+	/* "ab" then the next packet's "cd\0" sharing the same array */
+	private static final byte[] SHARED = { 9, 'a', 'b', 'c', 'd', 0 };
+
+	@Test(expected = IllegalStateException.class)
+	public void unterminatedStringStopsAtViewEnd() {
+		new InputStream(SHARED, 1, 3).readString();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unterminatedGJStringStopsAtViewEnd() {
+		byte[] buffer = { 0, 'a', 'b', 0 };
+		new InputStream(buffer, 0, 3).readGJString();
+	}
+
+	@Test
+	public void terminatedStringInView() {
+		InputStream stream = new InputStream(SHARED, 3, 6);
+		assertEquals("cd", stream.readString());
+		assertEquals(6, stream.getOffset());
+		assertEquals(0, stream.getRemaining());
+	}
+
+	@Test
+	public void peeksStopAtViewEnd() {
+		byte[] buffer = { (byte) 0x80, 0x01 };
+		InputStream stream = new InputStream(buffer, 0, 0);
+		assertEquals(0, stream.readUnsignedSmart());
+		assertEquals(-64, stream.readSignedSmart());
+		assertEquals(0, stream.readBigSmart());
+		assertEquals(0, stream.read24BitUnsignedInteger());
+	}
+
+	@Test
+	public void bitsPastViewEndReadAsZero() {
+		byte[] buffer = { (byte) 0xff, (byte) 0xff };
+		InputStream stream = new InputStream(buffer, 0, 1);
+		stream.initBitAccess();
+		assertEquals(0xff0, stream.readBits(12));
+	}
+}
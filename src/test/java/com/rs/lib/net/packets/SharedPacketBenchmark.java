@@ -0,0 +1,76 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.net.packets;
+
+import com.rs.bench.Bench;
+import com.rs.cache.loaders.ObjectType;
+import com.rs.lib.game.WorldObject;
+import com.rs.lib.game.WorldTile;
+import com.rs.lib.io.IsaacKeyPair;
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.Session;
+import com.rs.lib.net.packets.encoders.updatezone.AddObject;
+import com.rs.lib.net.packets.encoders.updatezone.UpdateZoneFullFollows;
+import com.rs.lib.net.packets.encoders.updatezone.partial.UpdateZoneEvent;
+import com.rs.lib.net.packets.encoders.updatezone.partial.UpdateZonePacket;
+import com.rs.lib.net.packets.encoders.updatezone.partial.UpdateZonePartialEnclosed;
+
+/*
+ * one zone update fanned out to 2,000 sessions, encoded per session the way
+ * callers did before SharedPacket against encoded once and shared
+ */
+public class SharedPacketBenchmark {
+
+	private static final int SESSIONS = 2000;
+
+	public static void main(String[] args) {
+		WorldTile tile = new WorldTile(3222, 3218, 0);
+		UpdateZoneEvent[] events = new UpdateZoneEvent[8];
+		for (int i = 0; i < events.length; i++)
+			events[i] = new UpdateZoneEvent(UpdateZonePacket.CREATE_OBJECT, new AddObject(new WorldObject(1276 + i, ObjectType.SCENERY_INTERACT, i & 3, 3216 + i, 3216 + i, 0)));
+		Session[] sessions = new Session[SESSIONS];
+		OutputStream[] streams = new OutputStream[SESSIONS];
+		int[] sceneBases = new int[SESSIONS];
+		for (int i = 0; i < SESSIONS; i++) {
+			sessions[i] = new Session(null, null);
+			sessions[i].setIsaac(new IsaacKeyPair(new int[] { i, i * 31, i * 17, i ^ 0x5a5a }));
+			streams[i] = new OutputStream(4096);
+			sceneBases[i] = new WorldTile(3168 + (i % 7) * 8, 3168 + (i % 5) * 8, 0).getChunkId();
+		}
+
+		Bench.run("zone update x2000, encoded per session", SESSIONS, () -> {
+			for (int i = 0; i < SESSIONS; i++) {
+				OutputStream stream = streams[i];
+				stream.reset();
+				new UpdateZoneFullFollows(tile, sceneBases[i]).writeToStream(stream, sessions[i]);
+				new UpdateZonePartialEnclosed(tile, sceneBases[i], events).writeToStream(stream, sessions[i]);
+			}
+			Bench.sink = streams;
+		});
+		Bench.run("zone update x2000, shared", SESSIONS, () -> {
+			SharedPacket full = new UpdateZoneFullFollows(tile, 0).encodeShared();
+			SharedPacket partial = new UpdateZonePartialEnclosed(tile, 0, events).encodeShared();
+			for (int i = 0; i < SESSIONS; i++) {
+				OutputStream stream = streams[i];
+				stream.reset();
+				full.writeToStream(stream, sessions[i], sceneBases[i]);
+				partial.writeToStream(stream, sessions[i], sceneBases[i]);
+			}
+			Bench.sink = streams;
+		});
+	}
+}
@@ -0,0 +1,114 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.net.packets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+import com.rs.cache.loaders.ObjectType;
+import com.rs.lib.game.WorldObject;
+import com.rs.lib.game.WorldTile;
+import com.rs.lib.io.IsaacKeyPair;
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.Session;
+import com.rs.lib.net.packets.encoders.RunEnergy;
+import com.rs.lib.net.packets.encoders.updatezone.AddObject;
+import com.rs.lib.net.packets.encoders.updatezone.RemoveObject;
+import com.rs.lib.net.packets.encoders.updatezone.UpdateZoneFullFollows;
+import com.rs.lib.net.packets.encoders.updatezone.partial.UpdateZoneEvent;
+import com.rs.lib.net.packets.encoders.updatezone.partial.UpdateZonePacket;
+import com.rs.lib.net.packets.encoders.updatezone.partial.UpdateZonePartialEnclosed;
+
+public class SharedPacketTest {
+
+	private static final WorldTile TILE = new WorldTile(3222, 3218, 0);
+	private static final int[] SCENE_BASES = { new WorldTile(3200, 3200, 0).getChunkId(), new WorldTile(3168, 3176, 0).getChunkId(), new WorldTile(3216, 3216, 0).getChunkId() };
+
+	private static Session session(int seed) {
+		Session session = new Session(null, null);
+		session.setIsaac(new IsaacKeyPair(new int[] { seed, seed * 31, seed * 17, seed ^ 0x5a5a }));
+		return session;
+	}
+
+	private static UpdateZoneEvent[] events() {
+		WorldObject object = new WorldObject(1276, ObjectType.SCENERY_INTERACT, 1, 3222, 3218, 0);
+		return new UpdateZoneEvent[] { new UpdateZoneEvent(UpdateZonePacket.CREATE_OBJECT, new AddObject(object)), new UpdateZoneEvent(UpdateZonePacket.DESTROY_OBJECT, new RemoveObject(object)) };
+	}
+
+	private static byte[] bytes(OutputStream stream) {
+		return Arrays.copyOf(stream.getBuffer(), stream.getOffset());
+	}
+
+	/*
+	 * the shared copy must write what the encoder writes for every recipient,
+	 * with each recipient's isaac stream advanced the same way
+	 */
+	private static void assertSameAsPerSession(PacketEncoder shared, SharedPacket packet, IntFunction<PacketEncoder> perSession) {
+		for (int i = 0; i < SCENE_BASES.length; i++) {
+			OutputStream expected = new OutputStream();
+			OutputStream actual = new OutputStream();
+			Session expectedSession = session(i + 1);
+			Session actualSession = session(i + 1);
+			for (int round = 0; round < 3; round++) {
+				perSession.apply(SCENE_BASES[i]).writeToStream(expected, expectedSession);
+				packet.writeToStream(actual, actualSession, SCENE_BASES[i]);
+			}
+			assertArrayEquals(shared.getPacket() + " for scene base " + SCENE_BASES[i], bytes(expected), bytes(actual));
+		}
+	}
+
+	@Test
+	public void partialEnclosedMatchesPerSession() {
+		UpdateZoneEvent[] events = events();
+		UpdateZonePartialEnclosed encoder = new UpdateZonePartialEnclosed(TILE, 0, events);
+		SharedPacket packet = encoder.encodeShared();
+		assertTrue(packet.isSceneRelative());
+		assertSameAsPerSession(encoder, packet, base -> new UpdateZonePartialEnclosed(TILE, base, events));
+	}
+
+	@Test
+	public void fullFollowsMatchesPerSession() {
+		UpdateZoneFullFollows encoder = new UpdateZoneFullFollows(TILE, 0);
+		SharedPacket packet = encoder.encodeShared();
+		assertTrue(packet.isSceneRelative());
+		assertSameAsPerSession(encoder, packet, base -> new UpdateZoneFullFollows(TILE, base));
+	}
+
+	@Test
+	public void plainPacketMatchesPerSession() {
+		RunEnergy encoder = new RunEnergy(73);
+		SharedPacket packet = encoder.encodeShared();
+		assertFalse(packet.isSceneRelative());
+		assertSameAsPerSession(encoder, packet, base -> encoder);
+		OutputStream expected = new OutputStream();
+		OutputStream actual = new OutputStream();
+		encoder.writeToStream(expected, session(9));
+		packet.writeToStream(actual, session(9));
+		assertArrayEquals(bytes(expected), bytes(actual));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void sceneRelativeNeedsSceneBase() {
+		new UpdateZoneFullFollows(TILE, 0).encodeShared().writeToStream(new OutputStream(), null);
+	}
+}
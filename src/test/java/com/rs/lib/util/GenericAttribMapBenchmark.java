@@ -0,0 +1,156 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.rs.bench.Bench;
+
+/*
+ * the attribute traffic of one game tick for 2,000 players, through the
+ * baseline string map, the current string api and typed keys
+ */
+public class GenericAttribMapBenchmark {
+
+	private static final int PLAYERS = 2000;
+	private static final String[] NAMES = { "combatLevel", "lastHit", "poisonTicks", "skullTimer", "runEnergy", "specialBar" };
+
+	private static final AttribKey<Integer>[] KEYS = keys();
+	private static final AttribKey<Boolean> FROZEN = AttribKey.boolKey("frozen");
+	private static final AttribKey<Integer> TICKS = AttribKey.intKey("ticks");
+	private static final AttribKey<String> TARGET = AttribKey.objectKey("target");
+
+	@SuppressWarnings("unchecked")
+	private static AttribKey<Integer>[] keys() {
+		AttribKey<Integer>[] keys = new AttribKey[NAMES.length];
+		for (int i = 0; i < NAMES.length; i++)
+			keys[i] = AttribKey.intKey(NAMES[i]);
+		return keys;
+	}
+
+	public static void main(String[] args) {
+		BaselineAttribMap[] baseline = new BaselineAttribMap[PLAYERS];
+		GenericAttribMap[] maps = new GenericAttribMap[PLAYERS];
+		for (int p = 0; p < PLAYERS; p++) {
+			baseline[p] = new BaselineAttribMap();
+			maps[p] = new GenericAttribMap();
+			for (int i = 0; i < 40; i++) {
+				baseline[p].setI("filler" + i, i);
+				maps[p].setI(AttribKey.intKey("filler" + i), i);
+			}
+			for (int i = 0; i < NAMES.length; i++) {
+				baseline[p].setI(NAMES[i], p + i);
+				maps[p].setI(KEYS[i], p + i);
+			}
+			baseline[p].setO("target", "player" + p);
+			maps[p].setO(TARGET, "player" + p);
+		}
+
+		Bench.run("tick x2000, baseline string map", PLAYERS, () -> {
+			long total = 0;
+			for (BaselineAttribMap map : baseline) {
+				for (String name : NAMES)
+					total += map.getI(name);
+				if (!map.getB("frozen"))
+					map.setI("poisonTicks", map.getI("poisonTicks") - 1);
+				map.incI("ticks");
+				total += map.<String>getO("target").length();
+			}
+			Bench.sink = total;
+		});
+		Bench.run("tick x2000, string api", PLAYERS, () -> {
+			long total = 0;
+			for (GenericAttribMap map : maps) {
+				for (String name : NAMES)
+					total += map.getI(name);
+				if (!map.getB("frozen"))
+					map.setI("poisonTicks", map.getI("poisonTicks") - 1);
+				map.incI("ticks");
+				total += map.<String>getO("target").length();
+			}
+			Bench.sink = total;
+		});
+		for (GenericAttribMap map : maps) {
+			for (int i = 0; i < NAMES.length; i++)
+				map.setI(KEYS[i], map.getI(NAMES[i]));
+			map.setI(TICKS, map.getI("ticks"));
+		}
+		Bench.run("tick x2000, typed keys", PLAYERS, () -> {
+			long total = 0;
+			for (GenericAttribMap map : maps) {
+				for (AttribKey<Integer> key : KEYS)
+					total += map.getI(key);
+				if (!map.getB(FROZEN))
+					map.setI(KEYS[2], map.getI(KEYS[2]) - 1);
+				map.incI(TICKS);
+				total += map.getO(TARGET).length();
+			}
+			Bench.sink = total;
+		});
+	}
+
+	/*
+	 * GenericAttribMap as it was before typed keys, trimmed to what the tick
+	 * uses
+	 */
+	private static final class BaselineAttribMap {
+		private ConcurrentHashMap<String, Object> attribs = new ConcurrentHashMap<>();
+
+		@SuppressWarnings("unchecked")
+		public <T> T setO(String name, Object value) {
+			if (value == null) {
+				Object old = attribs.remove(name);
+				return old == null ? null : (T) old;
+			}
+			Object old = attribs.put("O"+name, value);
+			return old == null ? null : (T) old;
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T> T getO(String name) {
+			if (attribs.get("O"+name) == null)
+				return null;
+			return (T) attribs.get("O"+name);
+		}
+
+		public void setI(String name, int value) {
+			attribs.put("I"+name, value);
+		}
+
+		public boolean getB(String name) {
+			if (attribs.get("B"+name) == null)
+				return false;
+			return (Boolean) attribs.get("B"+name);
+		}
+
+		public int getI(String name, int def) {
+			Object val = attribs.get("I"+name);
+			if (val == null)
+				return def;
+			return (int) (val instanceof Integer ? (int) val : (double) val);
+		}
+
+		public int getI(String name) {
+			return getI(name, 0);
+		}
+
+		public void incI(String name) {
+			int newVal = getI(name) + 1;
+			setI(name, newVal);
+		}
+	}
+}
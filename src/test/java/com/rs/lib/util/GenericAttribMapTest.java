@@ -0,0 +1,170 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class GenericAttribMapTest {
+
+	private static AttribKey<Integer>[] intKeys(String prefix, int count) {
+		@SuppressWarnings("unchecked")
+		AttribKey<Integer>[] keys = new AttribKey[count];
+		for (int i = 0; i < count; i++)
+			keys[i] = AttribKey.intKey(prefix + i);
+		return keys;
+	}
+
+	@Test
+	public void typedValuesSurviveResize() {
+		GenericAttribMap map = new GenericAttribMap();
+		AttribKey<Integer>[] keys = intKeys("resize", 500);
+		for (int i = 0; i < keys.length; i++)
+			map.setI(keys[i], i * 3);
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(i * 3, map.getI(keys[i]));
+			assertEquals(i * 3, map.getI(keys[i].getName()));
+		}
+		assertEquals(-1, map.getI(AttribKey.intKey("resizeMissing"), -1));
+	}
+
+	@Test
+	public void everyTypeRoundTrips() {
+		GenericAttribMap map = new GenericAttribMap();
+		AttribKey<Long> longKey = AttribKey.longKey("typesLong");
+		AttribKey<Double> doubleKey = AttribKey.doubleKey("typesDouble");
+		AttribKey<Boolean> boolKey = AttribKey.boolKey("typesBool");
+		AttribKey<int[]> objectKey = AttribKey.objectKey("typesObject");
+		int[] object = { 1, 2 };
+		map.setL(longKey, Long.MIN_VALUE);
+		map.setD(doubleKey, -0.25);
+		map.setB(boolKey, true);
+		map.setO(objectKey, object);
+		assertEquals(Long.MIN_VALUE, map.getL(longKey));
+		assertEquals(-0.25, map.getD(doubleKey), 0);
+		assertTrue(map.getB(boolKey));
+		assertEquals(object, map.getO(objectKey));
+		assertEquals(object, map.setO(objectKey, null));
+		assertFalse(map.has(objectKey));
+		assertTrue(map.removeB(boolKey));
+		assertFalse(map.getB(boolKey));
+	}
+
+	/*
+	 * random sets and removes over keys that share buckets, checked against a
+	 * plain map after every step so a removal that breaks a probe run shows up
+	 */
+	@Test
+	public void removalKeepsProbeRunsIntact() {
+		GenericAttribMap map = new GenericAttribMap();
+		AttribKey<Integer>[] keys = intKeys("probe", 40);
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(3);
+		for (int step = 0; step < 20000; step++) {
+			int key = random.nextInt(keys.length);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.getOrDefault(key, -1).intValue(), map.removeI(keys[key], -1));
+				expected.remove(key);
+			} else {
+				int value = random.nextInt();
+				map.setI(keys[key], value);
+				expected.put(key, value);
+			}
+			for (int i = 0; i < keys.length; i++)
+				assertEquals(expected.getOrDefault(i, -1).intValue(), map.getI(keys[i], -1));
+		}
+	}
+
+	@Test
+	public void stringWritesAreSeenByTypedReads() {
+		GenericAttribMap map = new GenericAttribMap();
+		AttribKey<Integer> key = AttribKey.intKey("stringThenTyped");
+		map.setI(key, 1);
+		map.setI("stringThenTyped", 2);
+		assertEquals(2, map.getI(key));
+		map.incI("stringThenTyped");
+		assertEquals(3, map.getI(key));
+		assertEquals(3, map.incI(key, 0));
+		map.removeI("stringThenTyped");
+		assertEquals(-1, map.getI(key, -1));
+		assertFalse(map.has(key));
+	}
+
+	@Test
+	public void looseNamesAreReadOnceInterned() {
+		GenericAttribMap map = new GenericAttribMap();
+		map.setI("looseInt", 5);
+		map.setB("looseBool", true);
+		map.setO("looseObject", "value");
+		assertNull(AttribKey.find(AttribKey.Type.INT, "looseInt"));
+		AttribKey<Integer> intKey = AttribKey.intKey("looseInt");
+		AttribKey<Boolean> boolKey = AttribKey.boolKey("looseBool");
+		AttribKey<String> objectKey = AttribKey.objectKey("looseObject");
+		assertEquals(5, map.getI(intKey));
+		assertTrue(map.getB(boolKey));
+		assertEquals("value", map.getO(objectKey));
+		assertTrue(map.has(intKey));
+		assertEquals(6, map.incI(intKey));
+		assertEquals(6, map.getI("looseInt"));
+	}
+
+	@Test
+	public void gsonReloadRebuildsTable() {
+		AttribKey<Integer> intKey = AttribKey.intKey("gsonInt");
+		AttribKey<Long> longKey = AttribKey.longKey("gsonLong");
+		AttribKey<Boolean> boolKey = AttribKey.boolKey("gsonBool");
+		AttribKey<Double> doubleKey = AttribKey.doubleKey("gsonDouble");
+		GenericAttribMap map = new GenericAttribMap();
+		map.setI(intKey, 42);
+		map.setL(longKey, 1L << 40);
+		map.setB(boolKey, true);
+		map.setD(doubleKey, 2.5);
+		map.setI("gsonLoose", 7);
+		Gson gson = new Gson();
+		GenericAttribMap loaded = gson.fromJson(gson.toJson(map), GenericAttribMap.class);
+		assertEquals(42, loaded.getI(intKey));
+		assertEquals(1L << 40, loaded.getL(longKey));
+		assertTrue(loaded.getB(boolKey));
+		assertEquals(2.5, loaded.getD(doubleKey), 0);
+		assertEquals(7, loaded.getI("gsonLoose"));
+		assertEquals(7, loaded.getI(AttribKey.intKey("gsonLoose")));
+		loaded.setI(intKey, 43);
+		assertEquals(43, loaded.getI("gsonInt"));
+		assertEquals(42, map.getI(intKey));
+	}
+
+	@Test
+	public void clearEmptiesBothViews() {
+		GenericAttribMap map = new GenericAttribMap();
+		AttribKey<Integer> key = AttribKey.intKey("cleared");
+		map.setI(key, 9);
+		map.setI("clearedLoose", 9);
+		map.clear();
+		assertEquals(0, map.getI(key));
+		assertEquals(0, map.getI("clearedLoose"));
+	}
+}
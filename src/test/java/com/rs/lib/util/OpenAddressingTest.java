@@ -0,0 +1,70 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OpenAddressingTest {
+
+	/*
+	 * a 64 bucket table kept close to half full with keys from a small range,
+	 * so probe runs are long and wrap past the end of the array
+	 */
+	@Test
+	public void removalsKeepEveryKeyReachable() {
+		int[] keys = new int[64];
+		int[] values = new int[64];
+		OpenAddressing.Mover mover = (from, to) -> {
+			values[to] = values[from];
+			values[from] = 0;
+		};
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(11);
+		for (int step = 0; step < 50000; step++) {
+			int key = random.nextInt(96);
+			int index = OpenAddressing.indexOf(keys, key);
+			if (index != -1) {
+				values[index] = 0;
+				OpenAddressing.removeAt(keys, index, mover);
+				expected.remove(key);
+			} else if (expected.size() < 32) {
+				values[OpenAddressing.place(keys, key)] = step;
+				expected.put(key, step);
+			}
+			for (int k = 0; k < 96; k++) {
+				index = OpenAddressing.indexOf(keys, k);
+				assertEquals(expected.getOrDefault(k, -1).intValue(), index == -1 ? -1 : values[index]);
+			}
+		}
+		assertEquals(expected.size(), Arrays.stream(keys).filter(k -> k != 0).count());
+	}
+
+	@Test
+	public void negativeKeys() {
+		int[] keys = new int[16];
+		int index = OpenAddressing.place(keys, -5);
+		assertEquals(index, OpenAddressing.indexOf(keys, -5));
+		assertEquals(-1, OpenAddressing.indexOf(keys, 5));
+	}
+}
@@ -0,0 +1,163 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.web.link;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.packets.Packet;
+import com.rs.lib.net.packets.PacketEncoder;
+import com.rs.lib.web.dto.PacketDto;
+import com.rs.lib.web.dto.PacketEncoderDto;
+import com.rs.lib.web.link.fixtures.AllKindsEncoder;
+import com.rs.lib.web.link.fixtures.NamedEncoder;
+import com.rs.lib.web.link.fixtures.TextPacket;
+
+public class PacketDtoCodecTest {
+
+	@BeforeClass
+	public static void register() {
+		PacketTypeRegistry.addPackage("com.rs.lib.web.link.fixtures");
+	}
+
+	private static AllKindsEncoder sample() {
+		AllKindsEncoder encoder = new AllKindsEncoder();
+		encoder.flag = true;
+		encoder.tiny = -7;
+		encoder.small = -12345;
+		encoder.letter = '€';
+		encoder.number = Integer.MIN_VALUE;
+		encoder.big = 0x123456789abcdefL;
+		encoder.ratio = -1.5f;
+		encoder.precise = Math.PI;
+		encoder.text = "zürich 😀";
+		encoder.shape = AllKindsEncoder.Shape.SQUARE;
+		encoder.ints = new int[] { 0, -1, 1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		encoder.bytes = new byte[] { 0, -128, 127 };
+		encoder.strings = new String[] { "a", null, "" };
+		encoder.list = Arrays.asList(3, 1, 2);
+		return encoder;
+	}
+
+	private static PacketEncoder[] roundTrip(PacketEncoder... encoders) {
+		PacketEncoderDto dto = new PacketEncoderDto("player", encoders);
+		assertTrue(PacketDtoCodec.supports(dto));
+		PacketEncoderDto decoded = (PacketEncoderDto) PacketDtoCodec.decode(PacketDtoCodec.encode(dto));
+		assertEquals("player", decoded.username());
+		return decoded.encoders();
+	}
+
+	@Test
+	public void roundTripsEveryFieldKind() {
+		AllKindsEncoder expected = sample();
+		AllKindsEncoder actual = (AllKindsEncoder) roundTrip(expected)[0];
+		assertEquals(expected.getPacket(), actual.getPacket());
+		assertEquals(expected.flag, actual.flag);
+		assertEquals(expected.tiny, actual.tiny);
+		assertEquals(expected.small, actual.small);
+		assertEquals(expected.letter, actual.letter);
+		assertEquals(expected.number, actual.number);
+		assertEquals(expected.big, actual.big);
+		assertEquals(Float.floatToIntBits(expected.ratio), Float.floatToIntBits(actual.ratio));
+		assertEquals(Double.doubleToLongBits(expected.precise), Double.doubleToLongBits(actual.precise));
+		assertEquals(expected.text, actual.text);
+		assertEquals(expected.shape, actual.shape);
+		assertArrayEquals(expected.ints, actual.ints);
+		assertArrayEquals(expected.bytes, actual.bytes);
+		assertArrayEquals(expected.strings, actual.strings);
+		assertEquals(expected.list, actual.list);
+	}
+
+	@Test
+	public void roundTripsNullsAndDefaults() {
+		AllKindsEncoder actual = (AllKindsEncoder) roundTrip(new AllKindsEncoder(), null)[0];
+		assertFalse(actual.flag);
+		assertEquals(0, actual.number);
+		assertNull(actual.text);
+		assertNull(actual.shape);
+		assertNull(actual.ints);
+		assertNull(actual.bytes);
+		assertNull(actual.strings);
+		assertNull(actual.list);
+		assertNull(roundTrip(new AllKindsEncoder(), null)[1]);
+	}
+
+	@Test
+	public void roundTripsPackets() {
+		PacketDto dto = new PacketDto("player", new TextPacket("hello"));
+		assertTrue(PacketDtoCodec.supports(dto));
+		Packet[] packets = ((PacketDto) PacketDtoCodec.decode(PacketDtoCodec.encode(dto))).packets();
+		assertEquals("hello", ((TextPacket) packets[0]).getText());
+	}
+
+	@Test
+	public void usesRegisteredFactory() {
+		PacketEncoderDto dto = new PacketEncoderDto("player", new NamedEncoder(" bob "));
+		assertFalse(PacketDtoCodec.supports(dto));
+		PacketDtoCodec.registerFactory(NamedEncoder.class, () -> new NamedEncoder(""));
+		assertEquals("bob", ((NamedEncoder) roundTrip(dto.encoders())[0]).getName());
+	}
+
+	@Test
+	public void rejectsLengthsPastTheInput() {
+		OutputStream stream = new OutputStream(16);
+		stream.writeByte(PacketDtoCodec.PACKET_ENCODER_DTO);
+		PacketDtoCodec.writeVarInt(stream, Integer.MAX_VALUE);
+		stream.writeByte(0);
+		assertMalformed(stream.toByteArray());
+
+		stream = new OutputStream(16);
+		stream.writeByte(PacketDtoCodec.PACKET_ENCODER_DTO);
+		PacketDtoCodec.writeVarInt(stream, 0);
+		PacketDtoCodec.writeVarInt(stream, 1 << 28);
+		assertMalformed(stream.toByteArray());
+
+		AllKindsEncoder encoder = new AllKindsEncoder();
+		encoder.ints = new int[1000];
+		byte[] data = PacketDtoCodec.encode(new PacketEncoderDto("player", encoder));
+		for (int cut = 30; cut < 1000; cut += 37)
+			assertMalformed(Arrays.copyOf(data, data.length - cut));
+	}
+
+	private static void assertMalformed(byte[] data) {
+		try {
+			PacketDtoCodec.decode(data);
+			fail("Decoded " + data.length + " malformed bytes.");
+		} catch (IllegalArgumentException e) {
+
+		}
+	}
+
+	@Test
+	public void jsonFieldKeepsGenericType() {
+		AllKindsEncoder encoder = new AllKindsEncoder();
+		encoder.list = List.of(7);
+		Object value = ((AllKindsEncoder) roundTrip(encoder)[0]).list.get(0);
+		assertEquals(Integer.class, value.getClass());
+	}
+}
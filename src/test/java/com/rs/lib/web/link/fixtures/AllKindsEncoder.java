@@ -0,0 +1,55 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.web.link.fixtures;
+
+import java.util.List;
+
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.ServerPacket;
+import com.rs.lib.net.packets.PacketEncoder;
+
+/*
+ * one field of every kind PacketDtoCodec writes
+ */
+public class AllKindsEncoder extends PacketEncoder {
+
+	public enum Shape { CIRCLE, SQUARE }
+
+	public boolean flag;
+	public byte tiny;
+	public short small;
+	public char letter;
+	public int number;
+	public long big;
+	public float ratio;
+	public double precise;
+	public String text;
+	public Shape shape;
+	public int[] ints;
+	public byte[] bytes;
+	public String[] strings;
+	public List<Integer> list;
+
+	public AllKindsEncoder() {
+		super(ServerPacket.IF_SETPLAYERHEAD);
+	}
+
+	@Override
+	public void encodeBody(OutputStream stream) {
+
+	}
+}
@@ -0,0 +1,43 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+//  Copyright © 2021 Trenton Kress
+//  This file is part of project: Darkan
+//
+package com.rs.lib.web.link.fixtures;
+
+import com.rs.lib.io.OutputStream;
+import com.rs.lib.net.ServerPacket;
+import com.rs.lib.net.packets.PacketEncoder;
+
+/*
+ * can't be built from default arguments, needs a registered factory
+ */
+public class NamedEncoder extends PacketEncoder {
+
+	private final String name;
+
+	public NamedEncoder(String name) {
+		super(ServerPacket.IF_SETPLAYERHEAD);
+		this.name = name.trim();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void encodeBody(OutputStream stream) {
+
+	}
+}